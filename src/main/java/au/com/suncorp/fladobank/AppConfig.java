@@ -1,10 +1,257 @@
 package au.com.suncorp;
 
+import au.com.suncorp.fladobank.data.BankDataSource;
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.JournalBankDataSource;
+import au.com.suncorp.fladobank.data.LedgerSpiller;
+import au.com.suncorp.fladobank.data.journal.Journal;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.BaseEntity;
+import au.com.suncorp.fladobank.data.model.ContentionTracker;
+import au.com.suncorp.fladobank.data.model.IdGenerator;
+import au.com.suncorp.fladobank.data.model.LedgerArchive;
+import au.com.suncorp.fladobank.data.model.TimeOrderedIdGenerator;
+import au.com.suncorp.fladobank.service.AccountImporter;
+import au.com.suncorp.fladobank.service.AsyncFladoBankServiceImpl;
+import au.com.suncorp.fladobank.service.FladoBankService;
+import au.com.suncorp.fladobank.service.InstrumentedFladoBankService;
+import au.com.suncorp.fladobank.service.ShardedFladoBankService;
+import au.com.suncorp.fladobank.service.StatementExporter;
+import au.com.suncorp.fladobank.service.metrics.FladoBankMetrics;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @ComponentScan(basePackages = {"au.com.suncorp.fladobank"})
 public class AppConfig {
-}
 
+    @Autowired
+    private Environment env;
+
+    /**
+     * Generator of the entity ids. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.node} - id of this node, 0 to {@value TimeOrderedIdGenerator#MAX_NODE}, unique among the nodes creating entities (default 0) </li>
+     * </ul>
+     */
+    @Bean
+    public IdGenerator idGenerator() {
+        IdGenerator generator = new TimeOrderedIdGenerator(env.getProperty("fladobank.node", Integer.class, 0));
+        BaseEntity.setIdGenerator(generator);
+        return generator;
+    }
+
+    /**
+     * In-memory datastore. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.account.engine} - {@code LOCKING} or {@code LOCK_FREE} account operations (default {@code LOCKING}) </li>
+     * </ul>
+     */
+    @Bean
+    public InMemoryBankDataSource inMemoryBankDataSource() {
+        return new InMemoryBankDataSource(env.getProperty("fladobank.account.engine", Account.Engine.class, Account.Engine.LOCKING));
+    }
+
+    /**
+     * Non-blocking FladoBank services. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.async.threads} - number of threads when virtual threads are not available (default 4 per available processor) </li>
+     *     <li> {@code fladobank.async.accountParallelism} - operations of an account running at the same time, 0 for no limit (default 1) </li>
+     * </ul>
+     */
+    @Bean(destroyMethod = "close")
+    public AsyncFladoBankServiceImpl asyncFladoBankService(FladoBankService fladoBankService) {
+        return new AsyncFladoBankServiceImpl(fladoBankService,
+                AsyncFladoBankServiceImpl.newExecutor(env.getProperty("fladobank.async.threads", Integer.class, 4 * Runtime.getRuntime().availableProcessors())),
+                env.getProperty("fladobank.async.accountParallelism", Integer.class, 1));
+    }
+
+    /**
+     * Statement exports of the accounts. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.export.parallelism} - number of accounts exported at the same time (default number of available processors) </li>
+     * </ul>
+     */
+    @Bean(destroyMethod = "close")
+    public StatementExporter statementExporter(BankDataSource bankDataSource) {
+        return new StatementExporter(bankDataSource,
+                env.getProperty("fladobank.export.parallelism", Integer.class, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Bulk imports of customers and accounts. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.import.parallelism} - number of file chunks parsed at the same time (default number of available processors) </li>
+     * </ul>
+     */
+    @Bean(destroyMethod = "close")
+    public AccountImporter accountImporter(BankDataSource bankDataSource) {
+        return new AccountImporter(bankDataSource,
+                env.getProperty("fladobank.import.parallelism", Integer.class, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * In-memory datastore of the accounts owned by the shards, enabled by the {@code sharded} profile (not to be
+     * combined with the {@code journal} profile). The other beans using the datastore, such as the imports, the
+     * statement exports and the ledger spills, share the accounts of the shards.
+     */
+    @Bean
+    @Primary
+    @Profile("sharded")
+    public InMemoryBankDataSource shardedBankDataSource() {
+        return new InMemoryBankDataSource(Account.Engine.SINGLE_WRITER);
+    }
+
+    /**
+     * FladoBank services executed by shards owning the accounts, enabled by the {@code sharded} profile.
+     * The accounts are kept in memory. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.shards} - number of shards (default number of available processors) </li>
+     *     <li> {@code fladobank.shards.queueCapacity} - capacity of each shard queue, a power of 2 (default 4096) </li>
+     * </ul>
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    @Profile("sharded")
+    public ShardedFladoBankService shardedFladoBankService(InMemoryBankDataSource shardedBankDataSource) {
+        return new ShardedFladoBankService(shardedBankDataSource,
+                env.getProperty("fladobank.shards", Integer.class, Runtime.getRuntime().availableProcessors()),
+                env.getProperty("fladobank.shards.queueCapacity", Integer.class, ShardedFladoBankService.DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * Latency and outcome metrics of the FladoBank services, enabled by the {@code metrics} profile.
+     * The metrics are exported through the platform JMX server.
+     */
+    @Bean(destroyMethod = "close")
+    @Profile("metrics")
+    public FladoBankMetrics fladoBankMetrics() {
+        FladoBankMetrics metrics = new FladoBankMetrics();
+        metrics.register(ManagementFactory.getPlatformMBeanServer());
+        return metrics;
+    }
+
+    /**
+     * Wraps the FladoBank services to record their operations in the metrics, enabled by the {@code metrics} profile
+     */
+    @Bean
+    @Profile("metrics")
+    public static BeanPostProcessor fladoBankServiceInstrumentation(BeanFactory beanFactory) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof FladoBankService && !(bean instanceof InstrumentedFladoBankService)) {
+                    return new InstrumentedFladoBankService((FladoBankService) bean, beanFactory.getBean(FladoBankMetrics.class));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Tracks the waits for the account locks and the hottest accounts, enabled by the {@code contention} profile. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.contention.capacity} - number of accounts kept in the hot accounts sketch (default 100) </li>
+     * </ul>
+     */
+    @Bean
+    @Profile("contention")
+    public ContentionTracker contentionTracker() {
+        ContentionTracker tracker = new ContentionTracker(env.getProperty("fladobank.contention.capacity", Integer.class, 100));
+        Account.setContentionTracker(tracker);
+        return tracker;
+    }
+
+    /**
+     * Durable datastore, enabled by the {@code journal} profile. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.journal.dir} - journal directory (default {@code journal}) </li>
+     *     <li> {@code fladobank.journal.segmentSize} - journal segment file size </li>
+     *     <li> {@code fladobank.journal.commit.batchSize} - operations per group commit, 0 to disable group commit (default 64) </li>
+     *     <li> {@code fladobank.journal.commit.maxWaitMicros} - maximum wait for a group commit batch to fill (default 100) </li>
+     *     <li> {@code fladobank.journal.snapshotIntervalSeconds} - delay between background snapshots, 0 to disable (default 300) </li>
+     * </ul>
+     * With the {@code tiered} profile, the snapshots refer to the transactions spilled to the ledger archive instead of
+     * keeping them in the journal.
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    @Profile("journal")
+    public JournalBankDataSource journalBankDataSource(ObjectProvider<LedgerArchive> ledgerArchive) throws IOException {
+        Path directory = Paths.get(env.getProperty("fladobank.journal.dir", "journal"));
+        int segmentSize = env.getProperty("fladobank.journal.segmentSize", Integer.class, Journal.DEFAULT_SEGMENT_SIZE);
+        int commitBatchSize = env.getProperty("fladobank.journal.commit.batchSize", Integer.class, 64);
+        JournalBankDataSource dataSource = commitBatchSize == 0
+                ? new JournalBankDataSource(directory, segmentSize, ledgerArchive.getIfAvailable())
+                : new JournalBankDataSource(directory, segmentSize, commitBatchSize,
+                        env.getProperty("fladobank.journal.commit.maxWaitMicros", Long.class, 100L), TimeUnit.MICROSECONDS,
+                        ledgerArchive.getIfAvailable());
+        long snapshotInterval = env.getProperty("fladobank.journal.snapshotIntervalSeconds", Long.class, 300L);
+        if (snapshotInterval > 0) {
+            dataSource.scheduleSnapshots(snapshotInterval, TimeUnit.SECONDS);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Tiered ledger storage, enabled by the {@code tiered} profile: the older transactions of the accounts are spilled
+     * in the background to memory-mapped segment files. <br>
+     * Properties:
+     * <ul>
+     *     <li> {@code fladobank.ledger.dir} - segment files directory, kept on startup with the {@code journal} profile and
+     *     cleared otherwise (default {@code ledger}) </li>
+     *     <li> {@code fladobank.ledger.shards} - number of shards, each with its own segment files (default number of available processors) </li>
+     *     <li> {@code fladobank.ledger.segmentSize} - segment file size </li>
+     *     <li> {@code fladobank.ledger.format} - {@code COMPRESSED} or {@code FIXED} archived blocks (default {@code FIXED}): compressed blocks take about 5 times less
+     *     space but are scanned about twice slower, they only save storage </li>
+     *     <li> {@code fladobank.ledger.hotTransactions} - latest transactions of an account kept in memory (default 4096) </li>
+     *     <li> {@code fladobank.ledger.hotDays} - days of transactions of an account kept in memory, 0 for no limit (default 0) </li>
+     *     <li> {@code fladobank.ledger.spillIntervalSeconds} - delay between background spills (default 60) </li>
+     * </ul>
+     */
+    @Bean
+    @Profile("tiered")
+    public LedgerArchive ledgerArchive() throws IOException {
+        return new LedgerArchive(Paths.get(env.getProperty("fladobank.ledger.dir", "ledger")),
+                env.getProperty("fladobank.ledger.shards", Integer.class, Runtime.getRuntime().availableProcessors()),
+                env.getProperty("fladobank.ledger.segmentSize", Integer.class, LedgerArchive.DEFAULT_SEGMENT_SIZE),
+                env.getProperty("fladobank.ledger.format", LedgerArchive.Format.class, LedgerArchive.Format.FIXED),
+                env.acceptsProfiles(Profiles.of("journal")));
+    }
+
+    /**
+     * Background spills of the account ledgers to the {@link #ledgerArchive() ledger archive}
+     */
+    @Bean(destroyMethod = "close")
+    @Profile("tiered")
+    public LedgerSpiller ledgerSpiller(BankDataSource bankDataSource, LedgerArchive archive) {
+        LedgerSpiller spiller = new LedgerSpiller(bankDataSource, archive,
+                env.getProperty("fladobank.ledger.hotTransactions", Integer.class, 4096),
+                env.getProperty("fladobank.ledger.hotDays", Integer.class, 0));
+        spiller.schedule(env.getProperty("fladobank.ledger.spillIntervalSeconds", Long.class, 60L), TimeUnit.SECONDS);
+        return spiller;
+    }
+}
@@ -0,0 +1,236 @@
+package au.com.suncorp.fladobank.data;
+
+import au.com.suncorp.fladobank.data.model.Account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Accounts by id, in an open-addressing hash table of primitive keys. <br>
+ * The ids are stored in a {@code long[]} next to an {@code Account[]} of the same length and looked up by linear
+ * probing, so a lookup neither boxes the id nor follows a node per entry. Ids must be positive, {@code 0} marks
+ * an empty slot. <br>
+ * Lookups do not lock: a writer stores the account before publishing its id with release semantics, and a table
+ * that is grown is copied and replaced as a whole, the old table stays valid for the readers still using it.
+ * Writers are serialized, accounts are created far less often than they are read. Accounts are never removed.
+ */
+final class AccountIndex {
+
+    private static final VarHandle IDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    private volatile int size;
+
+    /**
+     * @return account with the id or null
+     */
+    Account get(long id) {
+        Table current = table;
+        long[] ids = current.ids;
+        int mask = ids.length - 1;
+        for (int slot = current.slot(id); ; slot = (slot + 1) & mask) {
+            long slotId = (long) IDS.getAcquire(ids, slot);
+            if (slotId == id) {
+                return current.accounts[slot];
+            }
+            if (slotId == 0L) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Add an account unless there is already an account with the same id
+     *
+     * @return the existing account with the same id or null if the account was added
+     */
+    synchronized Account putIfAbsent(Account account) {
+        long id = account.getId();
+        if (id <= 0L) {
+            throw new IllegalArgumentException();
+        }
+        Table current = table;
+        int slot = current.find(id);
+        if (current.ids[slot] == id) {
+            return current.accounts[slot];
+        }
+        if (size + 1 > current.threshold) {
+            current = grow(current);
+            slot = current.find(id);
+        }
+        current.accounts[slot] = account;
+        IDS.setRelease(current.ids, slot, id);
+        size = size + 1;
+        return null;
+    }
+
+    /**
+     * Add accounts in bulk, growing the table at most once. All the ids are checked first, none of the accounts is
+     * added if one of the ids is already used or repeated in the batch.
+     *
+     * @return the account already using the id of one of the accounts (a previous account of the batch for a repeated
+     *         id) or null if all the accounts were added
+     */
+    synchronized Account putAllIfAbsent(Account[] accounts) {
+        Table current = table;
+        long[] ids = new long[accounts.length];
+        for (int i = 0; i < accounts.length; i++) {
+            long id = accounts[i].getId();
+            if (id <= 0L) {
+                throw new IllegalArgumentException();
+            }
+            int slot = current.find(id);
+            if (current.ids[slot] == id) {
+                return current.accounts[slot];
+            }
+            ids[i] = id;
+        }
+        Arrays.sort(ids);
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] == ids[i - 1]) {
+                return firstWithId(accounts, ids[i]);
+            }
+        }
+        while (size + accounts.length > current.threshold) {
+            current = grow(current);
+        }
+        for (Account account : accounts) {
+            long id = account.getId();
+            int slot = current.find(id);
+            current.accounts[slot] = account;
+            IDS.setRelease(current.ids, slot, id);
+            size = size + 1;
+        }
+        return null;
+    }
+
+    private static Account firstWithId(Account[] accounts, long id) {
+        for (Account account : accounts) {
+            if (account.getId() == id) {
+                return account;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Remove all the accounts
+     */
+    synchronized void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return weakly consistent view of the accounts, accounts added while iterating may not be returned
+     */
+    AbstractCollection<Account> values() {
+        return new AbstractCollection<Account>() {
+            @Override
+            public Iterator<Account> iterator() {
+                return new Values(table);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private Table grow(Table current) {
+        Table grown = new Table(current.ids.length * 2);
+        for (int i = 0; i < current.ids.length; i++) {
+            long id = current.ids[i];
+            if (id != 0L) {
+                int slot = grown.find(id);
+                grown.ids[slot] = id;
+                grown.accounts[slot] = current.accounts[i];
+            }
+        }
+        table = grown;
+        return grown;
+    }
+
+    /**
+     * Slots of the index, filled up to 3/4 of the capacity so that probe sequences stay short
+     */
+    private static final class Table {
+
+        final long[] ids;
+        final Account[] accounts;
+        final int shift;
+        final int threshold;
+
+        Table(int capacity) {
+            ids = new long[capacity];
+            accounts = new Account[capacity];
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+            threshold = capacity / 4 * 3;
+        }
+
+        /**
+         * Fibonacci hashing, the ids are time-ordered so their low bits are not well distributed
+         */
+        int slot(long id) {
+            return (int) ((id * MIX) >>> shift);
+        }
+
+        /**
+         * @return slot of the id or the empty slot where it should be added, only called by the writer
+         */
+        int find(long id) {
+            int mask = ids.length - 1;
+            int slot = slot(id);
+            while (ids[slot] != id && ids[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    private static final class Values implements Iterator<Account> {
+
+        private final Table table;
+        private int next = -1;
+
+        Values(Table table) {
+            this.table = table;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < table.ids.length;
+        }
+
+        @Override
+        public Account next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Account account = table.accounts[next];
+            advance();
+            return account;
+        }
+
+        private void advance() {
+            do {
+                next++;
+            } while (next < table.ids.length && (long) IDS.getAcquire(table.ids, next) == 0L);
+        }
+    }
+}
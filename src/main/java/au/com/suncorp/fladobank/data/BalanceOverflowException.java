@@ -0,0 +1,11 @@
+package au.com.suncorp.fladobank.data;
+
+/**
+ * Runtime exception when a transaction would overflow the balance of an account
+ */
+public class BalanceOverflowException extends IllegalArgumentException {
+
+    public BalanceOverflowException() {
+        super("Balance overflow");
+    }
+}
@@ -1,12 +1,18 @@
 package au.com.suncorp.fladobank.data;
 
 import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.AccountLookup;
 import au.com.suncorp.fladobank.data.model.Customer;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Basic datastore interface to support the FladoBank operations.
  */
-public interface BankDataSource {
+public interface BankDataSource extends AccountLookup {
 
     /**
      * Create a new account for the specified customer
@@ -16,6 +22,30 @@ public interface BankDataSource {
      */
     Account createAccount(Customer customer, Account.AccountType type);
 
+    /**
+     * Create accounts in bulk (eg. when migrating a customer book), each with an opening balance. <br>
+     * The arrays are only read during the call and can be reused.
+     *
+     * @param customers the customers
+     * @param types the account types
+     * @param openingBalances opening balances in minor units, {@code 0} for none
+     * @param count number of accounts to create, from the start of the arrays
+     * @return new accounts as references from the datastore
+     */
+    default Account[] createAccounts(Customer[] customers, Account.AccountType[] types, long[] openingBalances, int count) {
+        if (count < 0 || count > customers.length || count > types.length || count > openingBalances.length) {
+            throw new IllegalArgumentException();
+        }
+        Account[] accounts = new Account[count];
+        for (int i = 0; i < count; i++) {
+            accounts[i] = createAccount(customers[i], types[i]);
+            if (openingBalances[i] > 0) {
+                accounts[i].deposit(openingBalances[i], Optional.empty());
+            }
+        }
+        return accounts;
+    }
+
     /**
      * Retrieve all the account details
      *
@@ -24,4 +54,38 @@ public interface BankDataSource {
      */
     Account getAccount(Long accountId);
 
+    /**
+     * Retrieve all the account details, without boxing the id
+     *
+     * @param accountId
+     * @return existing account or null if account is not found
+     */
+    @Override
+    default Account getAccount(long accountId) {
+        return getAccount(Long.valueOf(accountId));
+    }
+
+    /**
+     * Find the customer with the same details (names compared ignoring case and surrounding spaces) or create one
+     *
+     * @param firstName
+     * @param lastName
+     * @param dob
+     * @return existing or new customer
+     */
+    Customer findOrCreateCustomer(String firstName, String lastName, LocalDate dob);
+
+    /**
+     * Retrieve the accounts of a customer
+     *
+     * @param customerId
+     * @return accounts of the customer in creation order or null if customer is not found
+     */
+    List<Account> findAccountsByCustomer(long customerId);
+
+    /**
+     * @return weakly consistent view of all the accounts, accounts created while iterating may not be returned
+     */
+    Collection<Account> getAccounts();
+
 }
@@ -0,0 +1,119 @@
+package au.com.suncorp.fladobank.data;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index of the accounts by customer. <br>
+ * The customers are indexed by id and by their normalised details (trimmed, case-insensitive names and date of
+ * birth), so that the same person opening several accounts is a single customer. Both maps are concurrent hash maps,
+ * adding the accounts of different customers does not contend. The accounts of a customer are kept in a
+ * copy-on-write array, read without locking. <br>
+ * The details are normalised when the customer is first indexed, later changes to the customer are not reindexed.
+ */
+final class CustomerIndex {
+
+    private final Map<Long, CustomerAccounts> byId = new ConcurrentHashMap<>();
+
+    private final Map<Key, Customer> byDetails = new ConcurrentHashMap<>();
+
+    /**
+     * @return the indexed customer with the same details or a new customer, indexed without accounts
+     */
+    Customer findOrCreate(String firstName, String lastName, LocalDate dob) {
+        Key key = new Key(firstName, lastName, dob);
+        Customer customer = byDetails.get(key);
+        if (customer == null) {
+            customer = byDetails.computeIfAbsent(key, details -> new Customer(firstName, lastName, dob));
+            byId.computeIfAbsent(customer.getId(), id -> new CustomerAccounts());
+        }
+        return customer;
+    }
+
+    /**
+     * Index an account under its customer
+     */
+    void add(Account account) {
+        Customer customer = account.getCustomer();
+        if (customer == null) {
+            return;
+        }
+        CustomerAccounts accounts = byId.get(customer.getId());
+        if (accounts == null) {
+            byDetails.putIfAbsent(new Key(customer.getFirstName(), customer.getLastName(), customer.getDob()), customer);
+            accounts = byId.computeIfAbsent(customer.getId(), id -> new CustomerAccounts());
+        }
+        accounts.add(account);
+    }
+
+    /**
+     * @return accounts of the customer in creation order, null if the customer is not indexed
+     */
+    List<Account> accounts(long customerId) {
+        CustomerAccounts accounts = byId.get(customerId);
+        return accounts == null ? null : Collections.unmodifiableList(Arrays.asList(accounts.accounts));
+    }
+
+    void clear() {
+        byId.clear();
+        byDetails.clear();
+    }
+
+    private static final class CustomerAccounts {
+
+        private volatile Account[] accounts = new Account[0];
+
+        synchronized void add(Account account) {
+            Account[] grown = Arrays.copyOf(accounts, accounts.length + 1);
+            grown[accounts.length] = account;
+            accounts = grown;
+        }
+    }
+
+    /**
+     * Normalised customer details
+     */
+    private static final class Key {
+
+        private final String firstName;
+        private final String lastName;
+        private final LocalDate dob;
+
+        Key(String firstName, String lastName, LocalDate dob) {
+            this.firstName = normalise(firstName);
+            this.lastName = normalise(lastName);
+            this.dob = dob;
+        }
+
+        private static String normalise(String name) {
+            return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(firstName, key.firstName) && Objects.equals(lastName, key.lastName)
+                    && Objects.equals(dob, key.dob);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastName, firstName, dob);
+        }
+    }
+}
@@ -2,33 +2,112 @@ package au.com.suncorp.fladobank.data;
 
 import au.com.suncorp.fladobank.data.model.Account;
 import au.com.suncorp.fladobank.data.model.Customer;
-import org.springframework.stereotype.Component;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * An in-memory datastore implementation for the bank accounts storage. <br>
  */
-@Component
 public class InMemoryBankDataSource implements BankDataSource {
 
     /**
      * The accounts store to keep account details available for fast retrieval
      */
-    private final Map<Long, Account> accountsStore = new ConcurrentHashMap<>();
+    private final AccountIndex accountsStore = new AccountIndex();
+
+    /**
+     * The accounts by customer
+     */
+    private final CustomerIndex customerIndex = new CustomerIndex();
+
+    /**
+     * Engine of the accounts created by this datastore
+     */
+    private final Account.Engine engine;
+
+    public InMemoryBankDataSource() {
+        this(Account.Engine.LOCKING);
+    }
+
+    /**
+     * @param engine how the operations of the accounts created by this datastore are synchronized
+     */
+    public InMemoryBankDataSource(Account.Engine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException();
+        }
+        this.engine = engine;
+    }
 
     @Override
     public Account createAccount(Customer customer, Account.AccountType type) {
-        Account account = new Account(customer, type);
-        accountsStore.put(account.getId(), account);
+        Account account = new Account(customer, type, engine);
+        register(account);
         return account;
     }
 
+    /**
+     * The accounts are created with their opening balance in the ledger and added to the index in one step
+     */
+    @Override
+    public Account[] createAccounts(Customer[] customers, Account.AccountType[] types, long[] openingBalances, int count) {
+        if (count < 0 || count > customers.length || count > types.length || count > openingBalances.length) {
+            throw new IllegalArgumentException();
+        }
+        Account[] accounts = new Account[count];
+        for (int i = 0; i < count; i++) {
+            accounts[i] = new Account(customers[i], types[i], engine, openingBalances[i]);
+            accounts[i].attach(this);
+        }
+        Account existing = accountsStore.putAllIfAbsent(accounts);
+        if (existing != null) {
+            throw new IllegalStateException("Duplicate account id " + existing.getId());
+        }
+        for (Account account : accounts) {
+            customerIndex.add(account);
+        }
+        return accounts;
+    }
+
     @Override
     public Account getAccount(Long accountId) {
+        return accountId == null ? null : accountsStore.get(accountId);
+    }
+
+    @Override
+    public Account getAccount(long accountId) {
         return accountsStore.get(accountId);
     }
 
+    @Override
+    public Customer findOrCreateCustomer(String firstName, String lastName, LocalDate dob) {
+        return customerIndex.findOrCreate(firstName, lastName, dob);
+    }
+
+    @Override
+    public List<Account> findAccountsByCustomer(long customerId) {
+        return customerIndex.accounts(customerId);
+    }
+
+    /**
+     * Make an account available in the datastore
+     * @param account new or restored account
+     * @throws IllegalStateException if there is already an account with the same id
+     */
+    void register(Account account) {
+        account.attach(this);
+        if (accountsStore.putIfAbsent(account) != null) {
+            throw new IllegalStateException("Duplicate account id " + account.getId());
+        }
+        customerIndex.add(account);
+    }
+
+    @Override
+    public Collection<Account> getAccounts() {
+        return accountsStore.values();
+    }
+
     /**
      * To be used in unit tests only
      * @return total number of accounts
@@ -42,5 +121,6 @@ public class InMemoryBankDataSource implements BankDataSource {
      */
     void reset() {
         this.accountsStore.clear();
+        this.customerIndex.clear();
     }
 }
@@ -0,0 +1,390 @@
+package au.com.suncorp.fladobank.data;
+
+import au.com.suncorp.fladobank.data.journal.GroupCommit;
+import au.com.suncorp.fladobank.data.journal.Journal;
+import au.com.suncorp.fladobank.data.journal.JournalReplayHandler;
+import au.com.suncorp.fladobank.data.journal.SnapshotHandler;
+import au.com.suncorp.fladobank.data.journal.Snapshots;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.AccountJournal;
+import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.LedgerArchive;
+import au.com.suncorp.fladobank.data.model.Transaction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A durable datastore implementation. <br>
+ * Accounts are kept in memory (same read speed as {@link InMemoryBankDataSource}) while every account creation,
+ * deposit, withdrawal and transfer is written to an append-only {@link Journal} before being applied.
+ * The journal is replayed on startup to restore all the accounts and their transactions. <br>
+ * With group commit enabled, every operation returns only after its journal entry was forced to disk. <br>
+ *
+ * Snapshots of the accounts are written in the background while the accounts are being updated. They only keep the
+ * balance and the ledger tail pointers of each account: the transactions spilled to a durable {@link LedgerArchive}
+ * are read back from its segments and the other ones from the journal, which is kept from the entry of the oldest
+ * transaction not archived. Startup loads the last snapshot and replays only that journal suffix.
+ */
+public class JournalBankDataSource extends InMemoryBankDataSource implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(JournalBankDataSource.class.getName());
+
+    /**
+     * Journal and snapshots directory
+     */
+    private final Path directory;
+
+    private final Journal journal;
+
+    /**
+     * Durable archive of the spilled ledger chunks, null if the ledgers are not spilled
+     */
+    private final LedgerArchive archive;
+
+    /**
+     * Group commit stage, null if the journal is not forced on every operation
+     */
+    private final GroupCommit groupCommit;
+
+    /**
+     * Journal used by the accounts: the plain journal or the group commit stage
+     */
+    private final AccountJournal accountJournal;
+
+    /**
+     * Account creations hold the read lock from the journal entry until the account is registered,
+     * so an account logged before a snapshot starts is always included in that snapshot
+     */
+    private final ReadWriteLock creationBarrier = new ReentrantReadWriteLock();
+
+    /**
+     * Serializes the snapshots
+     */
+    private final Lock snapshotLock = new ReentrantLock();
+
+    /**
+     * Background snapshots scheduler, null if snapshots are not scheduled
+     */
+    private ScheduledExecutorService snapshotScheduler;
+
+    /**
+     * Open the datastore and restore its state from the journal. <br>
+     * The journal entries are not forced to disk, so they survive a JVM crash but not an OS crash or power loss.
+     *
+     * @param directory journal directory
+     * @param segmentSize size of the journal segment files
+     * @throws IOException if the journal can not be read
+     */
+    public JournalBankDataSource(Path directory, int segmentSize) throws IOException {
+        this(directory, segmentSize, (LedgerArchive) null);
+    }
+
+    /**
+     * Open the datastore and restore its state from the journal and from the ledger archive.
+     *
+     * @param directory journal directory
+     * @param segmentSize size of the journal segment files
+     * @param archive durable archive the account ledgers are spilled to, or null
+     * @throws IOException if the journal can not be read
+     */
+    public JournalBankDataSource(Path directory, int segmentSize, LedgerArchive archive) throws IOException {
+        this(directory, new Journal(directory, segmentSize), null, archive);
+    }
+
+    /**
+     * Open the datastore with group commit enabled and restore its state from the journal.
+     *
+     * @param directory journal directory
+     * @param segmentSize size of the journal segment files
+     * @param commitBatchSize number of waiting operations triggering a journal force
+     * @param commitMaxWait maximum time an operation waits for its batch to fill
+     * @param unit {@code commitMaxWait} time unit
+     * @throws IOException if the journal can not be read
+     */
+    public JournalBankDataSource(Path directory, int segmentSize, int commitBatchSize, long commitMaxWait, TimeUnit unit) throws IOException {
+        this(directory, segmentSize, commitBatchSize, commitMaxWait, unit, null);
+    }
+
+    /**
+     * Open the datastore with group commit enabled and restore its state from the journal and from the ledger archive.
+     *
+     * @param directory journal directory
+     * @param segmentSize size of the journal segment files
+     * @param commitBatchSize number of waiting operations triggering a journal force
+     * @param commitMaxWait maximum time an operation waits for its batch to fill
+     * @param unit {@code commitMaxWait} time unit
+     * @param archive durable archive the account ledgers are spilled to, or null
+     * @throws IOException if the journal can not be read
+     */
+    public JournalBankDataSource(Path directory, int segmentSize, int commitBatchSize, long commitMaxWait, TimeUnit unit,
+                                 LedgerArchive archive) throws IOException {
+        this(directory, new Journal(directory, segmentSize), commitBatchSize, commitMaxWait, unit, archive);
+    }
+
+    private JournalBankDataSource(Path directory, Journal journal, int commitBatchSize, long commitMaxWait, TimeUnit unit,
+                                  LedgerArchive archive) throws IOException {
+        this(directory, journal, new GroupCommit(journal, commitBatchSize, commitMaxWait, unit), archive);
+    }
+
+    private JournalBankDataSource(Path directory, Journal journal, GroupCommit groupCommit, LedgerArchive archive) throws IOException {
+        if (archive != null && !archive.isDurable()) {
+            journal.close();
+            throw new IllegalArgumentException("The ledger archive does not survive a restart");
+        }
+        this.directory = directory;
+        this.journal = journal;
+        this.archive = archive;
+        this.groupCommit = groupCommit;
+        this.accountJournal = groupCommit == null ? journal : groupCommit;
+        try {
+            Recovery recovery = new Recovery();
+            Path snapshot = Snapshots.latest(directory);
+            long replayPosition = snapshot == null ? 0L : Snapshots.read(snapshot, recovery);
+            this.journal.recover(recovery, replayPosition);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Account createAccount(Customer customer, Account.AccountType type) {
+        Account account = new Account(customer, type, accountJournal);
+        long position;
+        creationBarrier.readLock().lock();
+        try {
+            position = journal.logAccountCreated(account);
+            account.logged(position);
+            register(account);
+        } finally {
+            creationBarrier.readLock().unlock();
+        }
+        accountJournal.awaitDurable(position);
+        return account;
+    }
+
+    /**
+     * The accounts are created with their opening balance in the ledger. The account creations and the opening
+     * credits are logged together and awaited once for the whole batch.
+     */
+    @Override
+    public Account[] createAccounts(Customer[] customers, Account.AccountType[] types, long[] openingBalances, int count) {
+        if (count < 0 || count > customers.length || count > types.length || count > openingBalances.length) {
+            throw new IllegalArgumentException();
+        }
+        Account[] accounts = new Account[count];
+        long position = 0L;
+        creationBarrier.readLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                accounts[i] = new Account(customers[i], types[i], accountJournal, openingBalances[i]);
+                position = journal.logAccountCreated(accounts[i]);
+                if (openingBalances[i] > 0) {
+                    // replayed as a credit from outside the bank, the same ledger entry
+                    Transaction opening = accounts[i].getTransactions().get(0);
+                    position = journal.logDeposit(accounts[i], opening.getId(), opening.getAmountMinorUnits(), opening.getTimestamp(), 0L);
+                }
+                accounts[i].logged(position);
+                register(accounts[i]);
+            }
+        } finally {
+            creationBarrier.readLock().unlock();
+        }
+        accountJournal.awaitDurable(position);
+        return accounts;
+    }
+
+    /**
+     * Write a snapshot of all the accounts, then delete the previous snapshots and the journal segments preceding the
+     * entry of the oldest transaction not archived.
+     * The accounts can be updated while the snapshot is taken.
+     *
+     * @return the snapshot file
+     * @throws IOException if the snapshot can not be written
+     */
+    public Path snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            long startPosition;
+            creationBarrier.writeLock().lock();
+            try {
+                startPosition = journal.position();
+            } finally {
+                creationBarrier.writeLock().unlock();
+            }
+            Path snapshot = Snapshots.write(directory, startPosition, getAccounts(), archive);
+            Snapshots.deleteOlderThan(directory, snapshot);
+            journal.truncate(Snapshots.replayPosition(snapshot));
+            return snapshot;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Take a snapshot periodically in a background thread
+     *
+     * @param period delay between the end of a snapshot and the start of the next one
+     * @param unit {@code period} time unit
+     */
+    public synchronized void scheduleSnapshots(long period, TimeUnit unit) {
+        if (snapshotScheduler != null || period <= 0) {
+            throw new IllegalStateException();
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "fladobank-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Snapshot failed", e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * @return group commit statistics or null if group commit is not enabled
+     */
+    public GroupCommit.Stats getCommitStats() {
+        return groupCommit == null ? null : groupCommit.getStats();
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = snapshotScheduler;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (groupCommit != null) {
+            groupCommit.close();
+        }
+        journal.close();
+    }
+
+    /**
+     * Rebuild the accounts from the last snapshot and the journal records appended after it
+     */
+    private final class Recovery implements SnapshotHandler, JournalReplayHandler {
+
+        /**
+         * Customers owning more than one account are restored as a single instance
+         */
+        private final Map<Long, Customer> customers = new HashMap<>();
+
+        @Override
+        public void onAccount(long accountId, LocalDateTime creationDate, Account.AccountType type,
+                              long customerId, String firstName, String lastName, LocalDate dob,
+                              long balance, long transactionCount, long journalPosition,
+                              long archivedTransactions, long archivedPosition, long disorder) {
+            if (archivedTransactions > 0 && archive == null) {
+                throw new IllegalStateException("Account " + accountId + " has archived transactions but no ledger archive is configured");
+            }
+            Account account = new Account(accountId, customer(customerId, firstName, lastName, dob), type, creationDate,
+                    balance, journalPosition, accountJournal);
+            account.restore(archive, archivedTransactions, archivedPosition, disorder);
+            register(account);
+        }
+
+        @Override
+        public void onTransaction(long accountId, long txnId, Transaction.TransactionType type, long amount, long timestamp,
+                                  long counterpartyId) {
+            existingAccount(accountId).restore(txnId, type, amount, timestamp, counterpartyId);
+        }
+
+        @Override
+        public void onAccountCreated(long accountId, LocalDateTime creationDate, Account.AccountType type,
+                                     long customerId, String firstName, String lastName, LocalDate dob, long position) {
+            if (getAccount(accountId) == null) { // not restored from the snapshot
+                register(new Account(accountId, customer(customerId, firstName, lastName, dob), type, creationDate, accountJournal));
+            }
+        }
+
+        @Override
+        public void onDeposit(long accountId, long txnId, long amount, long timestamp, long fromAccountId, long position) {
+            Account account = existingAccount(accountId);
+            if (position > account.getLedgerPosition()) {
+                apply(account, new Transaction(txnId, amount, Transaction.TransactionType.CREDIT, fromAccountId, accountId, timestamp, account),
+                        position, position > account.getJournalPosition());
+            }
+        }
+
+        @Override
+        public void onWithdrawal(long accountId, long txnId, long amount, long timestamp, long toAccountId, long position) {
+            Account account = existingAccount(accountId);
+            if (position > account.getLedgerPosition()) {
+                apply(account, new Transaction(txnId, amount, Transaction.TransactionType.DEBIT, accountId, toAccountId, timestamp, account),
+                        position, position > account.getJournalPosition());
+            }
+        }
+
+        @Override
+        public void onTransfer(long fromAccountId, long debitTxnId, long toAccountId, long creditTxnId, long amount, long timestamp, long position) {
+            Account fromAccount = existingAccount(fromAccountId);
+            Account toAccount = existingAccount(toAccountId);
+            // both sides are checked before applying, the accounts may be the same one
+            boolean debit = position > fromAccount.getJournalPosition();
+            boolean debitRow = position > fromAccount.getLedgerPosition();
+            boolean credit = position > toAccount.getJournalPosition();
+            boolean creditRow = position > toAccount.getLedgerPosition();
+            if (debitRow) {
+                apply(fromAccount, new Transaction(debitTxnId, amount, Transaction.TransactionType.DEBIT, fromAccountId, toAccountId, timestamp, fromAccount),
+                        position, debit);
+            }
+            if (creditRow) {
+                apply(toAccount, new Transaction(creditTxnId, amount, Transaction.TransactionType.CREDIT, fromAccountId, toAccountId, timestamp, toAccount),
+                        position, credit);
+            }
+        }
+
+        /**
+         * Apply a transaction missing from the ledger restored from the snapshot and the archive
+         *
+         * @param balance true if the entry follows the snapshot of the account and must also update its balance
+         */
+        private void apply(Account account, Transaction txn, long position, boolean balance) {
+            if (balance) {
+                account.replay(txn, position);
+            } else {
+                account.restore(txn, position);
+            }
+        }
+
+        private Customer customer(long customerId, String firstName, String lastName, LocalDate dob) {
+            return customers.computeIfAbsent(customerId, id -> new Customer(id, firstName, lastName, dob));
+        }
+
+        private Account existingAccount(long accountId) {
+            Account account = getAccount(accountId);
+            if (account == null) {
+                throw new IllegalStateException("Journal references unknown account " + accountId);
+            }
+            return account;
+        }
+    }
+}
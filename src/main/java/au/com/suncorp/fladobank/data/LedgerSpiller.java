@@ -0,0 +1,116 @@
+package au.com.suncorp.fladobank.data;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.LedgerArchive;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tiered ledger storage: keeps the hot tail of the account ledgers in memory and spills the older transactions to
+ * a {@link LedgerArchive} from a background thread, so the heap grows with the active data rather than with the
+ * history. The spilled transactions are still returned by {@link Account#getTransactions()} and the ledger queries,
+ * read back from the memory-mapped archive segments.
+ */
+public final class LedgerSpiller implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(LedgerSpiller.class.getName());
+
+    private final BankDataSource dataSource;
+
+    private final LedgerArchive archive;
+
+    private final int hotTransactions;
+
+    private final int hotDays;
+
+    /**
+     * Background spill scheduler, null if the spills are not scheduled
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param dataSource datastore of the accounts
+     * @param archive archive receiving the spilled transactions
+     * @param hotTransactions number of latest transactions of an account kept in memory
+     * @param hotDays number of days of transactions of an account kept in memory, 0 for no limit
+     */
+    public LedgerSpiller(BankDataSource dataSource, LedgerArchive archive, int hotTransactions, int hotDays) {
+        if (Objects.isNull(dataSource) || Objects.isNull(archive) || hotTransactions < 0 || hotDays < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.dataSource = dataSource;
+        this.archive = archive;
+        this.hotTransactions = hotTransactions;
+        this.hotDays = hotDays;
+    }
+
+    /**
+     * Spill the transactions outside the hot tail of every account
+     *
+     * @return number of transactions spilled
+     */
+    public long spill() {
+        long hotSince = hotDays == 0 ? Long.MIN_VALUE : System.currentTimeMillis() - TimeUnit.DAYS.toMillis(hotDays);
+        long spilled = 0L;
+        for (Account account : dataSource.getAccounts()) {
+            spilled += account.spillLedger(archive, hotTransactions, hotSince);
+        }
+        return spilled;
+    }
+
+    /**
+     * Start spilling in the background
+     *
+     * @param period delay between the end of a spill and the start of the next one
+     * @param unit {@code period} time unit
+     */
+    public synchronized void schedule(long period, TimeUnit unit) {
+        if (scheduler != null || period <= 0) {
+            throw new IllegalStateException();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "fladobank-ledger-spill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                spill();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Ledger spill failed", e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * @return the archive receiving the spilled transactions
+     */
+    public LedgerArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Stop spilling, the spilled transactions stay readable
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = this.scheduler;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package au.com.suncorp.fladobank.data.journal;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.AccountJournal;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Group commit stage in front of the {@link Journal}. <br>
+ *
+ * Entries are appended to the journal as usual, then the callers wait in {@link #awaitDurable(long)}
+ * for a background flusher thread to force the journal. The flusher starts a commit as soon as {@code batchSize}
+ * callers are waiting or {@code maxWait} after the first caller joined the batch, so a single {@code force()}
+ * makes a whole batch of concurrent operations durable. A caller returns only after the batch it joined is durable.
+ */
+public final class GroupCommit implements AccountJournal, Closeable {
+
+    private final Journal journal;
+
+    private final int batchSize;
+
+    private final long maxWaitNanos;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a caller joins the batch
+     */
+    private final Condition pending = lock.newCondition();
+
+    /**
+     * Signalled when a batch is durable
+     */
+    private final Condition committed = lock.newCondition();
+
+    private final Thread flusher;
+
+    /**
+     * Journal position up to which all entries are durable (written under lock)
+     */
+    private volatile long durablePosition;
+
+    /**
+     * Highest position callers are waiting for
+     */
+    private long requestedPosition;
+
+    /**
+     * Callers that joined the current batch
+     */
+    private int waiters;
+
+    private boolean closed;
+
+    private RuntimeException failure;
+
+    // stats, updated by the flusher thread only
+    private volatile long commits;
+    private volatile long committedOperations;
+    private volatile int maxBatchSize;
+    private volatile long totalCommitNanos;
+    private volatile long maxCommitNanos;
+
+    /**
+     * @param journal journal to commit
+     * @param batchSize number of waiting callers triggering a commit
+     * @param maxWait maximum time a caller waits for the batch to fill before the commit starts
+     * @param unit {@code maxWait} time unit
+     */
+    public GroupCommit(Journal journal, int batchSize, long maxWait, TimeUnit unit) {
+        if (Objects.isNull(journal) || Objects.isNull(unit) || batchSize <= 0 || maxWait < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.flusher = new Thread(this::flush, "fladobank-group-commit");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public long logDeposit(Account account, long txnId, long amount, long timestamp, long fromAccountId) {
+        return journal.logDeposit(account, txnId, amount, timestamp, fromAccountId);
+    }
+
+    @Override
+    public long logWithdrawal(Account account, long txnId, long amount, long timestamp, long toAccountId) {
+        return journal.logWithdrawal(account, txnId, amount, timestamp, toAccountId);
+    }
+
+    @Override
+    public long logTransfer(Account fromAccount, long debitTxnId, Account toAccount, long creditTxnId, long amount, long timestamp) {
+        return journal.logTransfer(fromAccount, debitTxnId, toAccount, creditTxnId, amount, timestamp);
+    }
+
+    /**
+     * Join the current batch and wait for it to be durable
+     *
+     * @param position journal position returned when an entry was logged
+     * @throws IllegalStateException if the group commit is closed or the journal could not be forced
+     */
+    @Override
+    public void awaitDurable(long position) {
+        if (position <= durablePosition) {
+            return;
+        }
+        lock.lock();
+        try {
+            requestedPosition = Math.max(requestedPosition, position);
+            if (++waiters == 1 || waiters >= batchSize) {
+                pending.signal();
+            }
+            while (durablePosition < position) {
+                if (failure != null) {
+                    throw new IllegalStateException("Journal commit failed", failure);
+                }
+                if (closed) {
+                    throw new IllegalStateException("Group commit is closed");
+                }
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return group commit statistics since startup
+     */
+    public Stats getStats() {
+        return new Stats(commits, committedOperations, maxBatchSize, totalCommitNanos, maxCommitNanos);
+    }
+
+    /**
+     * Commit the pending entries and stop the flusher thread
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flusher thread loop
+     */
+    private void flush() {
+        lock.lock();
+        try {
+            while (true) {
+                while (!closed && requestedPosition <= durablePosition) {
+                    pending.awaitUninterruptibly();
+                }
+                if (requestedPosition <= durablePosition) {
+                    return;
+                }
+                long remaining = maxWaitNanos;
+                while (!closed && waiters < batchSize && remaining > 0) {
+                    remaining = pending.awaitNanos(remaining);
+                }
+                int batch = waiters;
+                waiters = 0;
+
+                lock.unlock();
+                long start = System.nanoTime();
+                long position;
+                try {
+                    position = journal.force();
+                } catch (RuntimeException e) {
+                    lock.lock();
+                    failure = e;
+                    committed.signalAll();
+                    return;
+                }
+                long latency = System.nanoTime() - start;
+                lock.lock();
+
+                durablePosition = Math.max(durablePosition, position);
+                commits++;
+                committedOperations += batch;
+                maxBatchSize = Math.max(maxBatchSize, batch);
+                totalCommitNanos += latency;
+                maxCommitNanos = Math.max(maxCommitNanos, latency);
+                committed.signalAll();
+            }
+        } catch (InterruptedException e) {
+            failure = new IllegalStateException(e);
+            committed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Immutable snapshot of the group commit statistics
+     */
+    public static final class Stats {
+
+        private final long commits;
+        private final long committedOperations;
+        private final int maxBatchSize;
+        private final long totalCommitNanos;
+        private final long maxCommitNanos;
+
+        Stats(long commits, long committedOperations, int maxBatchSize, long totalCommitNanos, long maxCommitNanos) {
+            this.commits = commits;
+            this.committedOperations = committedOperations;
+            this.maxBatchSize = maxBatchSize;
+            this.totalCommitNanos = totalCommitNanos;
+            this.maxCommitNanos = maxCommitNanos;
+        }
+
+        /**
+         * @return number of journal forces
+         */
+        public long getCommits() {
+            return commits;
+        }
+
+        /**
+         * @return number of callers that waited for a commit
+         */
+        public long getCommittedOperations() {
+            return committedOperations;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public double getAverageBatchSize() {
+            return commits == 0 ? 0 : (double) committedOperations / commits;
+        }
+
+        public long getMaxCommitLatency(TimeUnit unit) {
+            return unit.convert(maxCommitNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getAverageCommitLatency(TimeUnit unit) {
+            return commits == 0 ? 0 : unit.convert(totalCommitNanos / commits, TimeUnit.NANOSECONDS);
+        }
+    }
+}
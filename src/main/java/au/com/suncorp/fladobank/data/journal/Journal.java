@@ -0,0 +1,409 @@
+package au.com.suncorp.fladobank.data.journal;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.AccountJournal;
+import au.com.suncorp.fladobank.data.model.Customer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import static au.com.suncorp.fladobank.data.journal.JournalRecords.*;
+
+/**
+ * Append-only binary journal of all the operations performed on the accounts. <br>
+ *
+ * The journal is a sequence of fixed size memory-mapped segment files named after the journal position
+ * of their first record. Records are encoded into a reusable direct buffer and copied into the current segment
+ * so appending is sequential and does not allocate. Appends are serialized by the journal lock. <br>
+ *
+ * Writes to the mapped segments survive a JVM crash; use {@link #force()} to make them durable on disk
+ * or wrap the journal into a {@link GroupCommit} so the account operations wait for their entries to be forced. <br>
+ * The journal must be {@link #recover(JournalReplayHandler) recovered} before any record can be appended.
+ */
+public final class Journal implements AccountJournal, Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    /**
+     * Serializes the appends
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Reusable buffer used to encode a record before it is copied into the segment
+     */
+    private final ByteBuffer record = ByteBuffer.allocateDirect(MAX_RECORD_SIZE);
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Current segment, positioned where the next record will be written
+     */
+    private MappedByteBuffer segment;
+
+    /**
+     * Journal position of the current segment first byte
+     */
+    private long segmentStart;
+
+    private boolean closed;
+
+    /**
+     * @param directory directory of the journal segment files
+     * @param segmentSize size in bytes of a new segment file
+     */
+    public Journal(Path directory, int segmentSize) {
+        if (Objects.isNull(directory) || segmentSize < MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException();
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Replay all the records found in the journal and open it for appending. <br>
+     * A torn record at the end of the last segment (eg. JVM crash during an append) is discarded.
+     *
+     * @param handler callback receiving the journal records
+     * @throws IOException if the journal can not be read
+     * @throws IllegalStateException if a segment other than the last one is corrupted
+     */
+    public void recover(JournalReplayHandler handler) throws IOException {
+        recover(handler, 0L);
+    }
+
+    /**
+     * Replay the records appended after {@code fromPosition} and open the journal for appending. <br>
+     * Segments entirely before {@code fromPosition} are not read.
+     *
+     * @param handler callback receiving the journal records
+     * @param fromPosition journal position from which the records are replayed (eg. the start of a snapshot)
+     * @throws IOException if the journal can not be read
+     * @throws IllegalStateException if a segment other than the last one is corrupted
+     */
+    public void recover(JournalReplayHandler handler, long fromPosition) throws IOException {
+        lock.lock();
+        try {
+            if (segment != null || closed) {
+                throw new IllegalStateException("Journal already opened");
+            }
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            for (int i = 0; i < segments.size(); i++) {
+                boolean last = i == segments.size() - 1;
+                Path file = segments.get(i);
+                if (!last && segmentStart(segments.get(i + 1)) <= fromPosition) {
+                    continue;
+                }
+                MappedByteBuffer buffer = map(file, last ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, Files.size(file));
+                replay(file, segmentStart(file), buffer, handler, fromPosition, last);
+                if (last) {
+                    this.segment = buffer;
+                    this.segmentStart = segmentStart(file);
+                }
+            }
+            if (segment == null) {
+                this.segment = map(segmentFile(fromPosition), FileChannel.MapMode.READ_WRITE, segmentSize);
+                this.segmentStart = fromPosition;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Log a new account together with its customer details
+     *
+     * @param account newly created account
+     * @return journal position right after the logged entry
+     */
+    public long logAccountCreated(Account account) {
+        Customer customer = account.getCustomer();
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(ACCOUNT_CREATED);
+            buffer.putLong(account.getId());
+            putDateTime(buffer, account.getCreationDate());
+            buffer.put((byte) account.getType().ordinal());
+            buffer.putLong(customer.getId());
+            putString(buffer, customer.getFirstName());
+            putString(buffer, customer.getLastName());
+            putDate(buffer, customer.getDob());
+            return append();
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long logDeposit(Account account, long txnId, long amount, long timestamp, long fromAccountId) {
+        return logTransaction(DEPOSIT, account, txnId, amount, timestamp, fromAccountId);
+    }
+
+    @Override
+    public long logWithdrawal(Account account, long txnId, long amount, long timestamp, long toAccountId) {
+        return logTransaction(WITHDRAWAL, account, txnId, amount, timestamp, toAccountId);
+    }
+
+    @Override
+    public long logTransfer(Account fromAccount, long debitTxnId, Account toAccount, long creditTxnId, long amount, long timestamp) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(TRANSFER);
+            buffer.putLong(fromAccount.getId());
+            buffer.putLong(debitTxnId);
+            buffer.putLong(toAccount.getId());
+            buffer.putLong(creditTxnId);
+            buffer.putLong(amount);
+            buffer.putLong(timestamp);
+            return append();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The plain journal does not wait for the entries to be forced to disk
+     */
+    @Override
+    public void awaitDurable(long position) {
+    }
+
+    private long logTransaction(byte type, Account account, long txnId, long amount, long timestamp, long counterpartyId) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(type);
+            buffer.putLong(account.getId());
+            buffer.putLong(txnId);
+            buffer.putLong(amount);
+            buffer.putLong(timestamp);
+            buffer.putLong(counterpartyId);
+            return append();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return journal position where the next record will be written
+     */
+    public long position() {
+        lock.lock();
+        try {
+            return segmentStart + segment.position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flush all the appended records to the storage device. <br>
+     * The journal lock is only held to read the current segment, so appends are not blocked while forcing.
+     *
+     * @return journal position up to which all records are durable
+     */
+    public long force() {
+        MappedByteBuffer current;
+        long position;
+        lock.lock();
+        try {
+            if (segment == null) {
+                return 0L;
+            }
+            current = segment;
+            position = segmentStart + segment.position();
+        } finally {
+            lock.unlock();
+        }
+        // previous segments were forced when rolled over
+        current.force();
+        return position;
+    }
+
+    /**
+     * Delete the segments containing only records before {@code position}. The current segment is never deleted.
+     *
+     * @param position journal position before which the records are no longer needed (eg. the start of a snapshot)
+     * @return number of deleted segments
+     * @throws IOException if a segment can not be deleted
+     */
+    public int truncate(long position) throws IOException {
+        long currentStart;
+        lock.lock();
+        try {
+            currentStart = segmentStart;
+        } finally {
+            lock.unlock();
+        }
+        List<Path> segments = listSegments();
+        int deleted = 0;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            long nextStart = segmentStart(segments.get(i + 1));
+            if (nextStart > position || segmentStart(segments.get(i)) >= currentStart) {
+                break;
+            }
+            Files.delete(segments.get(i));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (segment != null && !closed) {
+                segment.force();
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the journal lock
+     */
+    private ByteBuffer begin(byte type) {
+        if (closed || segment == null) {
+            throw new IllegalStateException("Journal is not open");
+        }
+        record.clear();
+        record.position(HEADER_SIZE);
+        record.put(type);
+        return record;
+    }
+
+    /**
+     * Complete the record header and copy the record into the current segment. <br>
+     * Must be called while holding the journal lock.
+     *
+     * @return journal position right after the record
+     */
+    private long append() {
+        record.flip();
+        record.position(HEADER_SIZE);
+        crc.reset();
+        crc.update(record);
+        record.putInt(0, record.limit() - HEADER_SIZE);
+        record.putInt(4, (int) crc.getValue());
+        record.position(0);
+        if (segment.remaining() < record.limit()) {
+            roll();
+        }
+        segment.put(record);
+        return segmentStart + segment.position();
+    }
+
+    /**
+     * Seal the current segment and continue into a new one. <br>
+     * Must be called while holding the journal lock.
+     */
+    private void roll() {
+        try {
+            segment.force();
+            long nextStart = segmentStart + segment.position();
+            this.segment = map(segmentFile(nextStart), FileChannel.MapMode.READ_WRITE, segmentSize);
+            this.segmentStart = nextStart;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void replay(Path file, long start, MappedByteBuffer buffer, JournalReplayHandler handler, long fromPosition, boolean last) {
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int offset = buffer.position();
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.remaining() - HEADER_SIZE || buffer.getInt(offset + 4) != checksum(buffer, offset + HEADER_SIZE, length)) {
+                if (!last) {
+                    throw new IllegalStateException("Corrupted journal segment " + file);
+                }
+                discardTail(buffer, offset);
+                break;
+            }
+            int end = offset + HEADER_SIZE + length;
+            if (start + end > fromPosition) {
+                ByteBuffer payload = buffer.duplicate();
+                payload.limit(end);
+                payload.position(offset + HEADER_SIZE);
+                dispatch(payload, start + end, handler);
+            }
+            buffer.position(end);
+        }
+    }
+
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(offset + length);
+        payload.position(offset);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Zero a partially written record so the segment can be appended from {@code offset}
+     */
+    private static void discardTail(ByteBuffer buffer, int offset) {
+        for (int i = offset; i < buffer.limit(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.position(offset);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentFile(long start) {
+        return directory.resolve(String.format("%020d%s", start, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentStart(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static MappedByteBuffer map(Path file, FileChannel.MapMode mode, long size) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            return channel.map(mode, 0, size);
+        }
+    }
+}
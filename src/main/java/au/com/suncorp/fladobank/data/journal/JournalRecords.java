@@ -0,0 +1,127 @@
+package au.com.suncorp.fladobank.data.journal;
+
+import au.com.suncorp.fladobank.data.model.Account;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary layout of the journal records. <br>
+ *
+ * Every record is written as {@code [int payload length][int payload crc32][payload]}, where the payload
+ * starts with the record type. A zero length marks the end of the data in a segment.
+ * Amounts are stored as {@code long} minor units and transaction dates as epoch millis.
+ */
+final class JournalRecords {
+
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * Upper bound for a record size (header included), customer names being the only variable length fields
+     */
+    static final int MAX_RECORD_SIZE = 4096;
+
+    static final byte ACCOUNT_CREATED = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAWAL = 3;
+    static final byte TRANSFER = 4;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final short NO_STRING = -1;
+
+    private JournalRecords() {
+    }
+
+    static void putDateTime(ByteBuffer buffer, LocalDateTime date) {
+        buffer.putLong(date.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(date.getNano());
+    }
+
+    static LocalDateTime getDateTime(ByteBuffer buffer) {
+        long epochSecond = buffer.getLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, buffer.getInt(), ZoneOffset.UTC);
+    }
+
+    static void putDate(ByteBuffer buffer, LocalDate date) {
+        buffer.putLong(date == null ? NO_DATE : date.toEpochDay());
+    }
+
+    static LocalDate getDate(ByteBuffer buffer) {
+        long epochDay = buffer.getLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort(NO_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length == NO_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode a record payload and deliver it to the replay handler
+     *
+     * @param payload buffer positioned at the start of the record payload
+     * @param position journal position right after the record
+     * @param handler replay callback
+     */
+    static void dispatch(ByteBuffer payload, long position, JournalReplayHandler handler) {
+        byte type = payload.get();
+        switch (type) {
+            case ACCOUNT_CREATED: {
+                long accountId = payload.getLong();
+                LocalDateTime creationDate = getDateTime(payload);
+                Account.AccountType accountType = Account.AccountType.values()[payload.get()];
+                long customerId = payload.getLong();
+                String firstName = getString(payload);
+                String lastName = getString(payload);
+                handler.onAccountCreated(accountId, creationDate, accountType, customerId, firstName, lastName, getDate(payload), position);
+                break;
+            }
+            case DEPOSIT:
+            case WITHDRAWAL: {
+                long accountId = payload.getLong();
+                long txnId = payload.getLong();
+                long amount = payload.getLong();
+                long timestamp = payload.getLong();
+                long counterpartyId = payload.getLong();
+                if (type == DEPOSIT) {
+                    handler.onDeposit(accountId, txnId, amount, timestamp, counterpartyId, position);
+                } else {
+                    handler.onWithdrawal(accountId, txnId, amount, timestamp, counterpartyId, position);
+                }
+                break;
+            }
+            case TRANSFER: {
+                long fromAccountId = payload.getLong();
+                long debitTxnId = payload.getLong();
+                long toAccountId = payload.getLong();
+                long creditTxnId = payload.getLong();
+                long amount = payload.getLong();
+                handler.onTransfer(fromAccountId, debitTxnId, toAccountId, creditTxnId, amount, payload.getLong(), position);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal record type: " + type);
+        }
+    }
+}
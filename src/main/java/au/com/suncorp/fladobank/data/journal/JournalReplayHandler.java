@@ -0,0 +1,24 @@
+package au.com.suncorp.fladobank.data.journal;
+
+import au.com.suncorp.fladobank.data.model.Account;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Callback used to rebuild the datastore state from the journal on startup. <br>
+ * Records are delivered in the same order they were appended, together with the journal position right after
+ * the record. Amounts are in minor units. A {@code 0} counterparty account id means the operation was not done
+ * from/to another account. Transaction dates are in epoch millis.
+ */
+public interface JournalReplayHandler {
+
+    void onAccountCreated(long accountId, LocalDateTime creationDate, Account.AccountType type,
+                          long customerId, String firstName, String lastName, LocalDate dob, long position);
+
+    void onDeposit(long accountId, long txnId, long amount, long timestamp, long fromAccountId, long position);
+
+    void onWithdrawal(long accountId, long txnId, long amount, long timestamp, long toAccountId, long position);
+
+    void onTransfer(long fromAccountId, long debitTxnId, long toAccountId, long creditTxnId, long amount, long timestamp, long position);
+}
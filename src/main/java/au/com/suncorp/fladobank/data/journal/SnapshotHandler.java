@@ -0,0 +1,36 @@
+package au.com.suncorp.fladobank.data.journal;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Transaction;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Callback used to restore the accounts from a snapshot on startup.
+ */
+public interface SnapshotHandler {
+
+    /**
+     * @param transactionCount number of transactions performed on the account before the snapshot
+     * @param journalPosition journal position right after the last entry included in the snapshot for this account
+     * @param archivedTransactions number of leading transactions kept in the ledger archive (ledger tail pointer)
+     * @param archivedPosition journal position after which the entries append the transactions following the
+     *                         archived ones, the entries up to {@code journalPosition} are already in the balance
+     * @param disorder how far back an archived transaction was dated before a preceding one
+     */
+    void onAccount(long accountId, LocalDateTime creationDate, Account.AccountType type,
+                   long customerId, String firstName, String lastName, LocalDate dob,
+                   long balance, long transactionCount, long journalPosition,
+                   long archivedTransactions, long archivedPosition, long disorder);
+
+    /**
+     * A transaction of the last account passed to {@link #onAccount}, in ledger order, only found in the version 3
+     * snapshots which copied the transactions
+     *
+     * @param type credit or debit of the account
+     * @param counterpartyId id of the other account involved in the transaction or {@code 0}
+     */
+    void onTransaction(long accountId, long txnId, Transaction.TransactionType type, long amount, long timestamp,
+                       long counterpartyId);
+}
@@ -0,0 +1,354 @@
+package au.com.suncorp.fladobank.data.journal;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.AccountSnapshot;
+import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.LedgerArchive;
+import au.com.suncorp.fladobank.data.model.Transaction;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import static au.com.suncorp.fladobank.data.journal.JournalRecords.*;
+
+/**
+ * Point-in-time snapshots of the account store. <br>
+ *
+ * A snapshot stores, for every account, its details, customer, balance and ledger tail pointers: the transaction
+ * count, the journal position of the last applied entry, the number of transactions kept in the durable
+ * {@link LedgerArchive} and the journal position after which the entries append the following ones. The history is
+ * not copied: it is read back from the archive and from the journal, which is kept from the oldest entry of the
+ * transactions not archived (the replay position). <br>
+ * The snapshot is taken while the accounts are being updated: each account is read atomically and the journal is
+ * replayed from the replay position, skipping the entries already archived and restoring the ledger only for the
+ * entries already included in the balance of each account. <br>
+ *
+ * File layout: {@code [int magic][int version][long journal start position]}, one record per account,
+ * {@code [byte END][long number of accounts][long replay position][int crc32 of all previous bytes]}. The version 2
+ * snapshots, which did not keep the history, and the version 3 ones, which copied the transactions after each
+ * account record, are still read. Snapshots are written to a
+ * temporary file which is renamed once complete and forced to disk.
+ */
+public final class Snapshots {
+
+    private static final Logger LOGGER = Logger.getLogger(Snapshots.class.getName());
+
+    private static final String SUFFIX = ".snapshot";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x464C4442;
+
+    private static final int VERSION = 4;
+
+    /**
+     * Without the transactions preceding the snapshot
+     */
+    private static final int VERSION_WITHOUT_HISTORY = 2;
+
+    /**
+     * With a copy of the transactions after each account record
+     */
+    private static final int VERSION_WITH_TRANSACTIONS = 3;
+
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte ACCOUNT = 1;
+
+    private static final int TRANSACTION_SIZE = 4 * Long.BYTES + Byte.BYTES;
+
+    private static final byte END = 0;
+
+    private Snapshots() {
+    }
+
+    /**
+     * Write a new snapshot of accounts without archived transactions
+     *
+     * @see #write(Path, long, Iterable, LedgerArchive)
+     */
+    public static Path write(Path directory, long startPosition, Iterable<Account> accounts) throws IOException {
+        return write(directory, startPosition, accounts, null);
+    }
+
+    /**
+     * Write a new snapshot of the accounts
+     *
+     * @param directory snapshots directory
+     * @param startPosition journal position captured before any account is read
+     * @param accounts all the accounts of the datastore
+     * @param archive durable archive of the accounts transactions, forced before the snapshot is complete, or null
+     * @return the snapshot file
+     * @throws IOException if the snapshot can not be written
+     */
+    public static Path write(Path directory, long startPosition, Iterable<Account> accounts, LedgerArchive archive) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", startPosition, SUFFIX));
+        Path temp = directory.resolve(file.getFileName() + TEMP_SUFFIX);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        long count = 0;
+        long replayPosition = startPosition;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(startPosition);
+            for (Account account : accounts) {
+                if (buffer.remaining() < MAX_RECORD_SIZE) {
+                    flush(channel, buffer, crc);
+                }
+                AccountSnapshot state = account.snapshot();
+                Customer customer = account.getCustomer();
+                buffer.put(ACCOUNT);
+                buffer.putLong(account.getId());
+                putDateTime(buffer, account.getCreationDate());
+                buffer.put((byte) account.getType().ordinal());
+                buffer.putLong(customer.getId());
+                putString(buffer, customer.getFirstName());
+                putString(buffer, customer.getLastName());
+                putDate(buffer, customer.getDob());
+                buffer.putLong(state.getBalanceMinorUnits());
+                buffer.putLong(state.getTransactionCount());
+                buffer.putLong(state.getJournalPosition());
+                buffer.putLong(state.getArchivedTransactions());
+                buffer.putLong(state.getArchivedPosition());
+                buffer.putLong(state.getDisorder());
+                if (state.getArchivedTransactions() > 0 && archive == null) {
+                    throw new IllegalArgumentException("Archived transactions without an archive");
+                }
+                if (state.getArchivedTransactions() < state.getTransactionCount()) {
+                    replayPosition = Math.min(replayPosition, state.getArchivedPosition());
+                }
+                count++;
+            }
+            if (archive != null) {
+                // the blocks the snapshot refers to are durable before the snapshot
+                archive.force();
+            }
+            if (buffer.remaining() < Byte.BYTES + 2 * Long.BYTES) {
+                flush(channel, buffer, crc);
+            }
+            buffer.put(END);
+            buffer.putLong(count);
+            buffer.putLong(replayPosition);
+            flush(channel, buffer, crc);
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * @param file snapshot file written by {@link #write}
+     * @return journal position from which the journal must be replayed, the preceding segments can be deleted
+     * @throws IOException if the snapshot can not be read
+     */
+    public static long replayPosition(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            long position = channel.size() - TRAILER_SIZE;
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer, position + trailer.position()) < 0) {
+                    throw new IllegalStateException("Corrupted snapshot file " + file);
+                }
+            }
+            return trailer.getLong(0);
+        }
+    }
+
+    /**
+     * Restore the accounts from a snapshot
+     *
+     * @param file snapshot file
+     * @param handler callback receiving the accounts
+     * @return journal position from which the journal must be replayed
+     * @throws IOException if the snapshot can not be read
+     * @throws IllegalStateException if the snapshot is corrupted
+     */
+    public static long read(Path file, SnapshotHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input input = new Input(channel);
+            input.refill();
+            ByteBuffer buffer = input.buffer;
+            int version = buffer.getInt() == MAGIC ? buffer.getInt() : 0;
+            if (version != VERSION && version != VERSION_WITH_TRANSACTIONS && version != VERSION_WITHOUT_HISTORY) {
+                throw new IllegalStateException("Not a snapshot file " + file);
+            }
+            if (version == VERSION_WITHOUT_HISTORY) {
+                LOGGER.warning("Snapshot " + file + " did not keep the transactions preceding it, the accounts are restored without them");
+            }
+            long startPosition = buffer.getLong();
+            long count = 0;
+            while (true) {
+                if (buffer.remaining() < MAX_RECORD_SIZE) {
+                    input.refill();
+                }
+                byte type = buffer.get();
+                if (type == END) {
+                    long expectedCount = buffer.getLong();
+                    long replayPosition = version == VERSION ? buffer.getLong() : startPosition;
+                    input.checksum();
+                    if (buffer.getInt() != (int) input.crc.getValue() || expectedCount != count) {
+                        throw new IllegalStateException("Corrupted snapshot file " + file);
+                    }
+                    return replayPosition;
+                }
+                if (type != ACCOUNT) {
+                    throw new IllegalStateException("Corrupted snapshot file " + file);
+                }
+                long accountId = buffer.getLong();
+                LocalDateTime creationDate = getDateTime(buffer);
+                Account.AccountType accountType = Account.AccountType.values()[buffer.get()];
+                long customerId = buffer.getLong();
+                String firstName = getString(buffer);
+                String lastName = getString(buffer);
+                LocalDate dob = getDate(buffer);
+                long balance = buffer.getLong();
+                long transactionCount = buffer.getLong();
+                if (transactionCount < 0 || transactionCount > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Corrupted snapshot file " + file);
+                }
+                long journalPosition = buffer.getLong();
+                if (version != VERSION) {
+                    // the transactions of the snapshot are all in the ledger, restored below or lost
+                    handler.onAccount(accountId, creationDate, accountType, customerId, firstName, lastName, dob,
+                            balance, transactionCount, journalPosition, 0L, journalPosition, 0L);
+                } else {
+                    long archivedTransactions = buffer.getLong();
+                    long archivedPosition = buffer.getLong();
+                    long disorder = buffer.getLong();
+                    if (archivedTransactions < 0 || archivedTransactions > transactionCount || disorder < 0) {
+                        throw new IllegalStateException("Corrupted snapshot file " + file);
+                    }
+                    handler.onAccount(accountId, creationDate, accountType, customerId, firstName, lastName, dob,
+                            balance, transactionCount, journalPosition, archivedTransactions, archivedPosition, disorder);
+                }
+                for (long i = 0; version == VERSION_WITH_TRANSACTIONS && i < transactionCount; i++) {
+                    if (buffer.remaining() < TRANSACTION_SIZE) {
+                        input.refill();
+                    }
+                    long txnId = buffer.getLong();
+                    Transaction.TransactionType txnType = Transaction.TransactionType.values()[buffer.get()];
+                    handler.onTransaction(accountId, txnId, txnType, buffer.getLong(), buffer.getLong(), buffer.getLong());
+                }
+                count++;
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalStateException("Corrupted snapshot file " + file, e);
+        }
+    }
+
+    /**
+     * @param directory snapshots directory
+     * @return the most recent snapshot or null if there is none
+     * @throws IOException if the directory can not be read
+     */
+    public static Path latest(Path directory) throws IOException {
+        List<Path> snapshots = list(directory, "*" + SUFFIX);
+        return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+    }
+
+    /**
+     * Delete the snapshots older than {@code snapshot} and any incomplete snapshot
+     *
+     * @param directory snapshots directory
+     * @param snapshot most recent snapshot to keep
+     * @throws IOException if a snapshot can not be deleted
+     */
+    public static void deleteOlderThan(Path directory, Path snapshot) throws IOException {
+        for (Path file : list(directory, "*" + SUFFIX)) {
+            if (file.getFileName().compareTo(snapshot.getFileName()) < 0) {
+                Files.delete(file);
+            }
+        }
+        for (Path file : list(directory, "*" + SUFFIX + TEMP_SUFFIX)) {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Path> list(Path directory, String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Buffered snapshot input computing the checksum of the bytes consumed
+     */
+    private static final class Input {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * Buffer position up to which the bytes are included in the checksum
+         */
+        private int checksummed;
+
+        private Input(FileChannel channel) {
+            this.channel = channel;
+            this.buffer.flip();
+        }
+
+        /**
+         * Move the remaining bytes to the buffer start and read more. The buffer is left in read mode.
+         */
+        private void refill() throws IOException {
+            checksum();
+            buffer.compact();
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // fill the buffer
+            }
+            buffer.flip();
+            checksummed = 0;
+        }
+
+        /**
+         * Add the bytes consumed since the last call to the checksum
+         */
+        private void checksum() {
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.limit(buffer.position());
+            consumed.position(checksummed);
+            crc.update(consumed);
+            checksummed = buffer.position();
+        }
+    }
+}
@@ -1,36 +1,136 @@
 package au.com.suncorp.fladobank.data.model;
 
+import au.com.suncorp.fladobank.data.BalanceOverflowException;
 import au.com.suncorp.fladobank.data.InsufficientFundsAccountException;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.locks.Lock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The bank account entity. <br>
- * This is a thread-safe class using {@code ReentrantLock} to handle synchronization when internal state is mutated. <br>
+ * This is a thread-safe class using {@code ReentrantLock} to handle synchronization when internal state is mutated,
+ * or compare-and-set operations when the account uses the {@link Engine#LOCK_FREE} engine. <br>
+ * An account using the {@link Engine#SINGLE_WRITER} engine is not synchronized, it must only be updated by its owner thread. <br>
+ * Deposits to a hot {@link Engine#LOCKING} account can be spread over striped sub-balances (see {@link #enableStripedCredits()}),
+ * and its deposits and withdrawals can be applied in batches by the lock holder (see {@link #enableCombining()}).
  */
 
-public final class Account extends BaseEntity {
+public final class Account extends BaseEntity implements AccountLookup {
 
     public enum AccountType {
         DEPOSIT, SAVINGS
     }
 
+    /**
+     * How the account operations are synchronized
+     */
+    public enum Engine {
+        /**
+         * Operations hold the account lock(s), transfers lock both accounts
+         */
+        LOCKING,
+        /**
+         * Balances are updated with compare-and-set, a withdrawal retries until it succeeds or runs out of funds
+         * and a transfer debits the source then credits the destination account without locking them. <br>
+         * Not journaled: the journal requires the operations to be logged in the order they are applied to each account.
+         */
+        LOCK_FREE,
+        /**
+         * Operations are not synchronized, the account is owned by a single thread (eg. a shard) which is the only
+         * one allowed to update it, a transfer must only be done between accounts owned by the same thread. The balance
+         * and the transactions can be read from any thread. <br>
+         * Not journaled: a transfer between accounts owned by different threads is not a single operation.
+         */
+        SINGLE_WRITER
+    }
+
+    /**
+     * Outcome of each transfer of a {@link #transferBatch}
+     */
+    public enum TransferStatus {
+        APPLIED,
+        /**
+         * The source account does not have enough funds
+         */
+        INSUFFICIENT_FUNDS,
+        /**
+         * The balance of the destination account would overflow
+         */
+        BALANCE_OVERFLOW
+    }
+
+    /**
+     * Maximum number of transfers applied by {@link #transferBatch} while holding the locks of their accounts
+     */
+    static final int TRANSFER_BATCH_WINDOW = 1024;
+
+    /**
+     * Maximum time in millis a striped credit stays pending before it is drained to the balance and the ledger
+     */
+    static final long STRIPED_CREDITS_MAX_PENDING = 10L;
+
+    /**
+     * Number of times a combining operation tries the account lock before waiting for it
+     */
+    private static final int COMBINING_SPINS = 64;
+
+    /**
+     * Number of optimistic balance reads overlapping a drain of the credit stripes before reading under the lock
+     */
+    private static final int OPTIMISTIC_READS = 16;
+
+    private static final AtomicLongFieldUpdater<Account> BALANCE = AtomicLongFieldUpdater.newUpdater(Account.class, "balance");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Account, Map> COUNTERPARTIES =
+            AtomicReferenceFieldUpdater.newUpdater(Account.class, Map.class, "counterparties");
+
     /**
      * Account lock to be used in synchronizing the account operations
      */
-    private final Lock lock = new ReentrantLock();
+    private final ReentrantLock lock = new ReentrantLock();
 
     /**
-     * Default balance on account opening before any transaction has occurred
+     * Records the waits for the account locks, null when contention is not tracked
      */
-    private BigDecimal balance = BigDecimal.ZERO;
+    private static volatile ContentionTracker contentionTracker;
+
+    /**
+     * Striped sub-balances receiving the deposits of a hot account, null until striped credits are enabled
+     */
+    private volatile CreditStripes creditStripes;
+
+    /**
+     * Deposits and withdrawals waiting for the lock holder, null until combining is enabled
+     */
+    private volatile CombiningQueue combiningQueue;
+
+    /**
+     * Balance in minor units (see {@link Money}), ZERO on account opening before any transaction has occurred
+     */
+    private volatile long balance;
+
+    /**
+     * Incremented before and after the credit stripes are drained into the balance (odd while draining), so that
+     * the balance can be read without locking (see {@link #getBalanceMinorUnits()}). Only written while holding
+     * the account lock
+     */
+    private volatile long drains;
+
+    private final Engine engine;
 
     /**
      * Account creation date
@@ -48,9 +148,38 @@ public final class Account extends BaseEntity {
     private final AccountType type;
 
     /**
-     * Immutable reference for list of transactions performed on this account
+     * Immutable reference for the ledger of transactions performed on this account
+     */
+    private final Ledger ledger = new Ledger(getId());
+
+    /**
+     * Datastore of this account, resolves the ledger counterparty ids once the account is registered. <br>
+     * Set before the account is published by the datastore.
      */
-    private final List<Transaction> transactions = new ArrayList<>();
+    private AccountLookup datastore;
+
+    /**
+     * Accounts involved in the transactions of this account, by id, used to resolve the ledger counterparty ids
+     * while the account is not registered in a datastore. Created with the first counterparty, the accounts of a
+     * datastore never allocate it.
+     */
+    private volatile Map<Long, Account> counterparties;
+
+    /**
+     * Last registered counterparty, saves a lookup when an account keeps transacting with the same counterparty.
+     * Racy with the {@link Engine#LOCK_FREE} engine, which only costs an extra lookup
+     */
+    private Account lastCounterparty;
+
+    /**
+     * Write-ahead journal for the operations on this account
+     */
+    private final AccountJournal journal;
+
+    /**
+     * Journal position right after the last entry applied to this account
+     */
+    private long journalPosition;
 
     /**
      * Create a new account instance for provided customer
@@ -59,12 +188,126 @@ public final class Account extends BaseEntity {
      * @param type
      */
     public Account(Customer customer, AccountType type) {
+        this(customer, type, AccountJournal.NONE);
+    }
+
+    /**
+     * Create a new account instance for provided customer with all the operations logged in the journal
+     *
+     * @param customer old or existing customer - an existing customer must have the Id value
+     * @param type
+     * @param journal write-ahead journal for the account operations
+     */
+    public Account(Customer customer, AccountType type, AccountJournal journal) {
+        this(customer, type, journal, Engine.LOCKING);
+    }
+
+    /**
+     * Create a new account instance for provided customer, not journaled
+     *
+     * @param customer old or existing customer - an existing customer must have the Id value
+     * @param type
+     * @param engine how the account operations are synchronized
+     */
+    public Account(Customer customer, AccountType type, Engine engine) {
+        this(customer, type, AccountJournal.NONE, engine);
+    }
+
+    /**
+     * Create a new account instance with an opening balance (eg. when migrating accounts), not journaled. <br>
+     * The opening balance is appended to the ledger as a credit from outside the bank, without a deposit.
+     *
+     * @param customer old or existing customer - an existing customer must have the Id value
+     * @param type
+     * @param engine how the account operations are synchronized
+     * @param openingBalance opening balance in minor units, {@code 0} for none
+     */
+    public Account(Customer customer, AccountType type, Engine engine, long openingBalance) {
+        this(customer, type, AccountJournal.NONE, engine);
+        open(openingBalance);
+    }
+
+    /**
+     * Create a new account instance with an opening balance, with all the later operations logged in the journal. <br>
+     * The opening balance is appended to the ledger as a credit from outside the bank, without a deposit: the caller
+     * logs the opening credit, the first transaction of the account, after the account creation.
+     *
+     * @param customer old or existing customer - an existing customer must have the Id value
+     * @param type
+     * @param journal write-ahead journal for the account operations
+     * @param openingBalance opening balance in minor units, {@code 0} for none
+     */
+    public Account(Customer customer, AccountType type, AccountJournal journal, long openingBalance) {
+        this(customer, type, journal, Engine.LOCKING);
+        open(openingBalance);
+    }
+
+    private void open(long openingBalance) {
+        if (openingBalance < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (openingBalance > 0) {
+            // not published yet, no need to lock
+            this.balance = openingBalance;
+            ledger.append(getIdGenerator().nextId(), Transaction.TransactionType.CREDIT, openingBalance, creationDate, 0L);
+        }
+    }
+
+    private Account(Customer customer, AccountType type, AccountJournal journal, Engine engine) {
         super();
+        if (Objects.isNull(journal) || Objects.isNull(engine) || (engine != Engine.LOCKING && journal != AccountJournal.NONE)) {
+            throw new IllegalArgumentException();
+        }
         this.customer = customer;
         this.type = type;
+        this.journal = journal;
+        this.engine = engine;
         this.creationDate = LocalDateTime.now();
     }
 
+    /**
+     * Restore an existing account with no transactions (eg. when recovering the datastore). <br>
+     * The transactions are restored afterwards through {@link #replay(Transaction)}.
+     *
+     * @param id existing account id
+     * @param customer the account owner
+     * @param type
+     * @param creationDate original account creation date
+     * @param journal write-ahead journal for the account operations
+     */
+    public Account(Long id, Customer customer, AccountType type, LocalDateTime creationDate, AccountJournal journal) {
+        this(id, customer, type, creationDate, 0L, 0L, journal);
+    }
+
+    /**
+     * Restore an existing account from a snapshot (eg. when recovering the datastore). <br>
+     * The transactions included in the snapshot are restored afterwards through {@link #restore},
+     * the transactions performed after the snapshot through {@link #replay(Transaction, long)}.
+     *
+     * @param id existing account id
+     * @param customer the account owner
+     * @param type
+     * @param creationDate original account creation date
+     * @param balance account balance in minor units when the snapshot was taken
+     * @param journalPosition journal position right after the last entry included in the snapshot
+     * @param journal write-ahead journal for the account operations
+     */
+    public Account(Long id, Customer customer, AccountType type, LocalDateTime creationDate,
+                   long balance, long journalPosition, AccountJournal journal) {
+        super(id);
+        if (Objects.isNull(creationDate) || Objects.isNull(journal)) {
+            throw new IllegalArgumentException();
+        }
+        this.customer = customer;
+        this.type = type;
+        this.journal = journal;
+        this.engine = Engine.LOCKING;
+        this.creationDate = creationDate;
+        this.balance = balance;
+        this.journalPosition = journalPosition;
+        this.ledger.journaled(journalPosition);
+    }
+
     /**
      * Retrieve the customer associated with this account
      * @return
@@ -74,14 +317,45 @@ public final class Account extends BaseEntity {
     }
 
     /**
-     * Get a list of transactions for this account.
+     * Get a list of transactions for this account. <br>
+     * The list is an immutable view of the ledger at the time of the call, the transactions are built on access.
      *
      * @return
      */
     public List<Transaction> getTransactions() {
+        drainCreditStripes();
+        return ledger.asList(this::transaction);
+    }
+
+    /**
+     * Get the ledger of transactions kept in memory for this account.
+     *
+     * @return
+     */
+    public Ledger getLedger() {
+        drainCreditStripes();
+        return ledger;
+    }
+
+    /**
+     * Spill the older transactions of this account out of the heap, see {@link Ledger#spill}
+     *
+     * @return number of transactions spilled
+     */
+    public int spillLedger(LedgerArchive archive, int hotTransactions, long hotSince) {
+        return ledger.spill(archive, hotTransactions, hotSince);
+    }
+
+    /**
+     * Get the total number of transactions performed on this account
+     *
+     * @return
+     */
+    public long getTransactionCount() {
         lock.lock();
         try {
-            return transactions;
+            reconcile();
+            return ledger.size();
         } finally {
             lock.unlock();
         }
@@ -102,8 +376,37 @@ public final class Account extends BaseEntity {
      * @return
      */
     public BigDecimal getBalance() {
+        return Money.toBigDecimal(getBalanceMinorUnits());
+    }
+
+    /**
+     * Retrieve the account balance in minor units, without locking the account. <br>
+     * Every operation publishes the balance with a single volatile write, so the balance read is the one left by
+     * the last completed operation. The pending credits of striped deposits are added to it, the read being retried
+     * if the stripes were drained into the balance meanwhile (like a sequence lock); after a few retries the
+     * balance is read while holding the account lock.
+     *
+     * @return
+     */
+    public long getBalanceMinorUnits() {
+        CreditStripes stripes = creditStripes;
+        if (stripes == null) {
+            return balance;
+        }
+        for (int i = 0; i < OPTIMISTIC_READS; i++) {
+            long version = drains;
+            if ((version & 1L) == 0L) {
+                long current = balance;
+                long pending = stripes.pending();
+                if (drains == version && pending < Long.MAX_VALUE && current <= Long.MAX_VALUE - pending) {
+                    return current + pending;
+                }
+            }
+            Thread.onSpinWait();
+        }
         lock.lock();
         try {
+            reconcile();
             return balance;
         } finally {
             lock.unlock();
@@ -117,18 +420,89 @@ public final class Account extends BaseEntity {
      * @return transaction id
      */
     public Long deposit(BigDecimal amount, Optional<Account> fromAccount) {
-        if (Objects.isNull(amount) || Objects.isNull(fromAccount) || amount.compareTo(BigDecimal.ZERO) < 0) {
+        if (Objects.isNull(amount) || amount.compareTo(BigDecimal.ZERO) < 0) {
             throw new IllegalArgumentException();
         }
-        Transaction creditTxn = new Transaction(amount, Transaction.TransactionType.CREDIT, fromAccount, Optional.of(this));
-        lock.lock();
+        return deposit(Money.toMinorUnits(amount), fromAccount);
+    }
+
+    /**
+     * Deposit money into this account.
+     * @param amount amount in minor units
+     * @param fromAccount optional bank account is deposit is done from another account
+     * @return transaction id
+     */
+    public long deposit(long amount, Optional<Account> fromAccount) {
+        if (Objects.isNull(fromAccount) || amount < 0) {
+            throw new IllegalArgumentException();
+        }
+        // the transaction is only stored as a ledger row, no transaction object is built
+        long txnId = getIdGenerator().nextId();
+        long timestamp = System.currentTimeMillis();
+        Account from = fromAccount.orElse(null);
+        long fromId = from == null ? 0L : from.getId();
+        if (engine == Engine.LOCK_FREE) {
+            casCredit(amount);
+            ledger.appendConcurrently(txnId, Transaction.TransactionType.CREDIT, amount, timestamp, counterpartyId(fromId, from));
+            return txnId;
+        }
+        if (engine == Engine.SINGLE_WRITER) {
+            credit(txnId, amount, timestamp, fromId, from);
+            return txnId;
+        }
+        CreditStripes stripes = creditStripes;
+        if (stripes != null) {
+            int outcome = stripes.deposit(txnId, amount, timestamp, counterpartyId(fromId, from));
+            if (outcome == CreditStripes.FULL) {
+                return depositAfterDrain(stripes, txnId, amount, timestamp, fromId);
+            }
+            if (outcome == CreditStripes.DRAIN && lock.tryLock()) {
+                try {
+                    reconcile();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return txnId;
+        }
+        if (combiningQueue != null) {
+            return combine(Transaction.TransactionType.CREDIT, txnId, amount, timestamp, fromId, from);
+        }
+        long position;
+        lockForUpdate();
         try {
-            this.transactions.add(creditTxn);
-            this.balance = balance.add(amount);
+            reserveCredit(amount);
+            Money.add(balance, amount); //reject an overflow before the entry is logged
+            position = journal.logDeposit(this, txnId, amount, timestamp, fromId);
+            credit(txnId, amount, timestamp, fromId, from);
+            journaled(position);
         } finally {
             lock.unlock();
         }
-        return creditTxn.getId();
+        journal.awaitDurable(position);
+        return txnId;
+    }
+
+    /**
+     * Apply a striped deposit its stripe had no room for: the stripe was being drained, or its share of the balance
+     * headroom is used up. The deposit is buffered again once the drain is done, otherwise it is applied under the
+     * lock where an overflow is rejected.
+     *
+     * @return transaction id
+     */
+    private long depositAfterDrain(CreditStripes stripes, long txnId, long amount, long timestamp, long fromId) {
+        lockForUpdate();
+        try {
+            // the counterparty was kept when the deposit was first offered to the stripes
+            if (stripes.deposit(txnId, amount, timestamp, fromId) == CreditStripes.FULL) {
+                reserveCredit(amount);
+                Money.add(balance, amount); //reject an overflow before the entry is logged
+                credit(txnId, amount, timestamp, fromId, null);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return txnId;
     }
 
     /**
@@ -139,24 +513,58 @@ public final class Account extends BaseEntity {
      * @return transaction id for this account
      */
     public Long widthdraw(BigDecimal amount, Optional<Account> toAccount) {
-        if (Objects.isNull(amount) || Objects.isNull(toAccount)) {
+        if (Objects.isNull(amount)) {
             throw new IllegalArgumentException();
         }
-        if (amount.compareTo(BigDecimal.ZERO) < 0) { //do not handle negative amounts
+        return widthdraw(Money.toMinorUnits(amount), toAccount);
+    }
+
+    /**
+     * Withdraw money from this account.
+     *
+     * @param amount amount in minor units
+     * @param toAccount optional bank account if money are withdrawn in another account
+     * @return transaction id for this account
+     */
+    public long widthdraw(long amount, Optional<Account> toAccount) {
+        if (Objects.isNull(toAccount)) {
+            throw new IllegalArgumentException();
+        }
+        if (amount < 0) { //do not handle negative amounts
             throw new InsufficientFundsAccountException();
         }
-        Transaction debitTxn = new Transaction(amount, Transaction.TransactionType.DEBIT, Optional.of(this), toAccount);
-        lock.lock();
+        long txnId = getIdGenerator().nextId();
+        long timestamp = System.currentTimeMillis();
+        Account to = toAccount.orElse(null);
+        long toId = to == null ? 0L : to.getId();
+        if (engine == Engine.LOCK_FREE) {
+            casDebit(amount);
+            ledger.appendConcurrently(txnId, Transaction.TransactionType.DEBIT, amount, timestamp, counterpartyId(toId, to));
+            return txnId;
+        }
+        if (engine == Engine.SINGLE_WRITER) {
+            checkFunds(amount);
+            debit(txnId, amount, timestamp, toId, to);
+            return txnId;
+        }
+        if (combiningQueue != null) {
+            return combine(Transaction.TransactionType.DEBIT, txnId, amount, timestamp, toId, to);
+        }
+        long position;
+        lockForUpdate();
         try {
-            if (this.balance.compareTo(amount) < 0) { //do not handle if insufficient funds
-                throw new InsufficientFundsAccountException();
+            if (balance < amount) {
+                reconcile();
             }
-            this.transactions.add(debitTxn);
-            this.balance = balance.subtract(amount);
+            checkFunds(amount);
+            position = journal.logWithdrawal(this, txnId, amount, timestamp, toId);
+            debit(txnId, amount, timestamp, toId, to);
+            journaled(position);
         } finally {
             lock.unlock();
         }
-        return debitTxn.getId();
+        journal.awaitDurable(position);
+        return txnId;
     }
 
     /**
@@ -167,26 +575,692 @@ public final class Account extends BaseEntity {
      * @return transaction id for this account
      */
     public Long transfer(BigDecimal amount, Account toAccount) {
-        if (Objects.isNull(amount) || Objects.isNull(toAccount)) {
+        if (Objects.isNull(amount)) {
             throw new IllegalArgumentException();
         }
-        Long txnId;
+        return transfer(Money.toMinorUnits(amount), toAccount);
+    }
+
+    /**
+     * Transfer an amount between this account and the a destination account.
+     *
+     * @param amount amount to be transferred in minor units
+     * @param toAccount destination account
+     * @return transaction id for this account
+     */
+    public long transfer(long amount, Account toAccount) {
+        if (Objects.isNull(toAccount) || toAccount.engine != engine) {
+            throw new IllegalArgumentException();
+        }
+        if (amount < 0) { //do not handle negative amounts
+            throw new InsufficientFundsAccountException();
+        }
+        long debitTxnId = getIdGenerator().nextId();
+        long creditTxnId = getIdGenerator().nextId();
+        long timestamp = System.currentTimeMillis();
+
+        if (engine == Engine.LOCK_FREE) {
+            //two phases: the money is not visible on any account between the debit and the credit
+            casDebit(amount);
+            try {
+                toAccount.casCredit(amount);
+            } catch (BalanceOverflowException e) {
+                casCredit(amount); //give the money back, the destination balance would overflow
+                throw e;
+            }
+            this.ledger.appendConcurrently(debitTxnId, Transaction.TransactionType.DEBIT, amount, timestamp,
+                    this.counterpartyId(toAccount.getId(), toAccount));
+            toAccount.ledger.appendConcurrently(creditTxnId, Transaction.TransactionType.CREDIT, amount, timestamp,
+                    toAccount.counterpartyId(getId(), this));
+            return debitTxnId;
+        }
+        if (engine == Engine.SINGLE_WRITER) {
+            applyTransfer(amount, toAccount, debitTxnId, creditTxnId, timestamp);
+            return debitTxnId;
+        }
+
+        //lock accounts always in same order to avoid deadlock (order by account.id)
+        Account first = this.getId() < toAccount.getId() ? this : toAccount;
+        Account second = first == this ? toAccount : this;
+
+        long position;
+        first.lockForUpdate();
+        second.lockForUpdate();
+        try {
+            position = applyTransfer(amount, toAccount, debitTxnId, creditTxnId, timestamp);
+        } finally {
+            second.lock.unlock();
+            first.lock.unlock();
+        }
+        journal.awaitDurable(position);
+        return debitTxnId;
+    }
+
+    /**
+     * Apply a batch of transfers, in order. <br>
+     * The transfers are applied in windows of up to {@link #TRANSFER_BATCH_WINDOW} transfers: the locks of all the
+     * accounts of a window are acquired once, in account id order, and the window waits once for its journal entries
+     * to be durable after the locks are released. A rejected transfer does not stop the batch.
+     *
+     * @param sources accounts to be debited
+     * @param destinations accounts to be credited
+     * @param amounts amounts to be transferred in minor units
+     * @param txnIds receives the transaction id on the source account of each applied transfer, the entries of the
+     *               rejected transfers are not written
+     * @return status of each transfer
+     */
+    public static TransferStatus[] transferBatch(Account[] sources, Account[] destinations, long[] amounts, long[] txnIds) {
+        if (Objects.isNull(sources) || Objects.isNull(destinations) || Objects.isNull(amounts) || Objects.isNull(txnIds)
+                || sources.length != destinations.length || sources.length != amounts.length || sources.length != txnIds.length) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (Objects.isNull(sources[i]) || Objects.isNull(destinations[i]) || amounts[i] < 0
+                    || sources[i].engine != sources[0].engine || destinations[i].engine != sources[0].engine) {
+                throw new IllegalArgumentException();
+            }
+        }
+        TransferStatus[] statuses = new TransferStatus[sources.length];
+        for (int start = 0; start < sources.length; start += TRANSFER_BATCH_WINDOW) {
+            int end = Math.min(sources.length, start + TRANSFER_BATCH_WINDOW);
+            if (sources[0].engine != Engine.LOCKING) {
+                for (int i = start; i < end; i++) {
+                    try {
+                        txnIds[i] = sources[i].transfer(amounts[i], destinations[i]);
+                        statuses[i] = TransferStatus.APPLIED;
+                    } catch (InsufficientFundsAccountException e) {
+                        statuses[i] = TransferStatus.INSUFFICIENT_FUNDS;
+                    } catch (BalanceOverflowException e) {
+                        statuses[i] = TransferStatus.BALANCE_OVERFLOW;
+                    }
+                }
+            } else {
+                transferWindow(sources, destinations, amounts, txnIds, statuses, start, end);
+            }
+        }
+        return statuses;
+    }
+
+    private static void transferWindow(Account[] sources, Account[] destinations, long[] amounts, long[] txnIds,
+                                       TransferStatus[] statuses, int start, int end) {
+        Set<Account> lockSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = start; i < end; i++) {
+            lockSet.add(sources[i]);
+            lockSet.add(destinations[i]);
+        }
         //lock accounts always in same order to avoid deadlock (order by account.id)
-        Lock firstLock = this.getId() < toAccount.getId() ? this.lock : toAccount.lock;
-        Lock secondLock = this.getId() > toAccount.getId() ? toAccount.lock : this.lock;
+        Account[] accounts = lockSet.toArray(new Account[0]);
+        Arrays.sort(accounts, Comparator.comparingLong(Account::getId));
+
+        long[] positions = new long[end - start];
+        long timestamp = System.currentTimeMillis();
+        for (Account account : accounts) {
+            account.lockForUpdate();
+        }
+        try {
+            try {
+                for (int i = start; i < end; i++) {
+                    Account from = sources[i];
+                    Account to = destinations[i];
+                    long debitTxnId = getIdGenerator().nextId();
+                    long creditTxnId = getIdGenerator().nextId();
+                    try {
+                        positions[i - start] = from.applyTransfer(amounts[i], to, debitTxnId, creditTxnId, timestamp);
+                        txnIds[i] = debitTxnId;
+                        statuses[i] = TransferStatus.APPLIED;
+                    } catch (InsufficientFundsAccountException e) {
+                        statuses[i] = TransferStatus.INSUFFICIENT_FUNDS;
+                    } catch (BalanceOverflowException e) {
+                        statuses[i] = TransferStatus.BALANCE_OVERFLOW;
+                    }
+                }
+            } finally {
+                for (int i = accounts.length - 1; i >= 0; i--) {
+                    accounts[i].lock.unlock();
+                }
+            }
+        } finally {
+            //the transfers applied before a failure are durable too when it is thrown
+            //the last entry is the first one to wait for, the others are durable by then
+            for (int i = end - 1; i >= start; i--) {
+                if (statuses[i] == TransferStatus.APPLIED) {
+                    sources[i].journal.awaitDurable(positions[i - start]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Track the waits for the account locks of the operations updating the accounts (deposits, withdrawals
+     * and transfers). When no tracker is set the operations only pay for reading this setting.
+     *
+     * @param tracker tracker recording the waits or null to stop tracking
+     */
+    public static void setContentionTracker(ContentionTracker tracker) {
+        contentionTracker = tracker;
+    }
+
+    /**
+     * @return the tracker recording the waits for the account locks or null if contention is not tracked
+     */
+    public static ContentionTracker getContentionTracker() {
+        return contentionTracker;
+    }
+
+    /**
+     * Spread the deposits to this account over striped sub-balances, each with its own lock and ledger buffer,
+     * so that concurrent deposits do not wait for each other. The stripes are moved to the account balance and
+     * ledger when a withdrawal or transfer needs the money, when the balance or the transactions are read, and at
+     * least every {@value #STRIPED_CREDITS_MAX_PENDING} millis by a background thread. <br>
+     * Striping is never enabled automatically, it is meant for the accounts known to receive concurrent deposits. <br>
+     * A drained credit is dated at the later of its deposit and the last ledger row, so a debit covered by the
+     * account balance can be appended before credits still pending in the stripes but never dated after them. <br>
+     * A deposit a stripe has no room for is applied under the account lock, where an overflow of the balance is
+     * rejected as for the other accounts.
+     *
+     * @throws IllegalStateException if the account does not use the {@link Engine#LOCKING} engine or is journaled
+     */
+    public void enableStripedCredits() {
+        if (engine != Engine.LOCKING || journal != AccountJournal.NONE) {
+            throw new IllegalStateException("Striped credits require a locking account without journal");
+        }
+        lock.lock();
+        try {
+            if (creditStripes == null) {
+                creditStripes = new CreditStripes(balance);
+                CreditDrainer.schedule(this);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        firstLock.lock();
-        secondLock.lock();
+    /**
+     * @return true if the deposits to this account are striped
+     */
+    public boolean isStripedCredits() {
+        return creditStripes != null;
+    }
+
+    /**
+     * Apply the deposits and withdrawals of this account by flat combining: an operation queues itself and the thread
+     * holding the account lock applies all the queued operations, in arrival order, before releasing the lock. Each
+     * operation still gets its own transaction id, ledger entry and failure. <br>
+     * Transfers and reads keep locking the account, the operations they wait for are applied by the next combiner.
+     *
+     * @throws IllegalStateException if the account does not use the {@link Engine#LOCKING} engine
+     */
+    public void enableCombining() {
+        if (engine != Engine.LOCKING) {
+            throw new IllegalStateException("Combining requires a locking account");
+        }
+        lock.lock();
         try {
-            txnId = this.widthdraw(amount, Optional.of(toAccount));
-            toAccount.deposit(amount, Optional.of(this));
+            if (combiningQueue == null) {
+                combiningQueue = new CombiningQueue();
+            }
         } finally {
-            secondLock.unlock();
-            firstLock.unlock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the deposits and withdrawals of this account are combined
+     */
+    public boolean isCombining() {
+        return combiningQueue != null;
+    }
+
+    /**
+     * Queue a deposit or withdrawal and wait until it is applied, by this thread if it gets the lock first
+     *
+     * @return transaction id
+     */
+    private long combine(Transaction.TransactionType type, long txnId, long amount, long timestamp, long counterpartyId, Account counterparty) {
+        CombiningQueue queue = combiningQueue;
+        CombiningQueue.Request request = new CombiningQueue.Request(type, txnId, amount, timestamp, counterpartyId, counterparty);
+        queue.add(request);
+        int spins = 0;
+        while (!request.done) {
+            boolean locked = lock.tryLock();
+            if (!locked && ++spins >= COMBINING_SPINS) {
+                lockForUpdate(); //the request is applied by the time the lock is released to this thread, if not by it
+                locked = true;
+            }
+            if (locked) {
+                try {
+                    applyCombined(queue);
+                } finally {
+                    lock.unlock();
+                }
+            } else {
+                Thread.onSpinWait();
+            }
         }
+        if (request.failure != null) {
+            throw request.failure;
+        }
+        journal.awaitDurable(request.position);
         return txnId;
     }
 
+    /**
+     * Apply the queued deposits and withdrawals, must be called while holding the account lock
+     */
+    private void applyCombined(CombiningQueue queue) {
+        CombiningQueue.Request request = queue.takeAll();
+        while (request != null) {
+            CombiningQueue.Request next = request.next();
+            try {
+                if (request.type == Transaction.TransactionType.CREDIT) {
+                    reserveCredit(request.amount);
+                    Money.add(balance, request.amount); //reject an overflow before the entry is logged
+                    request.position = journal.logDeposit(this, request.txnId, request.amount, request.timestamp, request.counterpartyId);
+                    credit(request.txnId, request.amount, request.timestamp, request.counterpartyId, request.counterparty);
+                } else {
+                    if (balance < request.amount) {
+                        reconcile();
+                    }
+                    checkFunds(request.amount);
+                    request.position = journal.logWithdrawal(this, request.txnId, request.amount, request.timestamp, request.counterpartyId);
+                    debit(request.txnId, request.amount, request.timestamp, request.counterpartyId, request.counterparty);
+                }
+                journaled(request.position);
+            } catch (RuntimeException e) {
+                request.failure = e;
+            }
+            request.done = true;
+            request = next;
+        }
+    }
+
+    /**
+     * Acquire the account lock, recording the wait if the lock is busy and contention is tracked
+     */
+    private void lockForUpdate() {
+        if (lock.tryLock()) {
+            return;
+        }
+        ContentionTracker tracker = contentionTracker;
+        if (tracker == null) {
+            lock.lock();
+            return;
+        }
+        int queueLength = lock.getQueueLength() + 1;
+        long start = System.nanoTime();
+        lock.lock();
+        tracker.record(getId(), System.nanoTime() - start, queueLength);
+    }
+
+    /**
+     * Move the striped credits to the balance and the ledger, must be called while holding the account lock
+     */
+    private void reconcile() {
+        reconcile(0L);
+    }
+
+    /**
+     * @param credit amount about to be credited under the account lock, kept out of the headroom of the stripes
+     */
+    private void reconcile(long credit) {
+        CreditStripes stripes = creditStripes;
+        if (stripes != null) {
+            drains = drains + 1;
+            balance = stripes.drain(balance, ledger, credit);
+            drains = drains + 1;
+        }
+    }
+
+    /**
+     * Make room in the balance for a credit applied under the account lock: the striped credits are drained if the
+     * headroom they share is needed, so that they never overflow the balance. Must be called while holding the
+     * account lock.
+     */
+    private void reserveCredit(long amount) {
+        CreditStripes stripes = creditStripes;
+        if (stripes != null && amount > Long.MAX_VALUE - balance - stripes.reserved()) {
+            reconcile(amount);
+        }
+    }
+
+    /**
+     * Move the striped credits to the balance and the ledger, if the deposits are striped
+     */
+    void drainCreditStripes() {
+        if (creditStripes != null) {
+            lock.lock();
+            try {
+                reconcile();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the locks of both accounts (or from the owner thread of single writer accounts)
+     *
+     * @return journal position right after the transfer entry
+     */
+    private long applyTransfer(long amount, Account toAccount, long debitTxnId, long creditTxnId, long timestamp) {
+        if (balance < amount) {
+            reconcile();
+        }
+        checkFunds(amount);
+        if (toAccount != this) {
+            toAccount.reserveCredit(amount);
+            Money.add(toAccount.balance, amount); //reject an overflow before the entry is logged
+        }
+        long position = journal.logTransfer(this, debitTxnId, toAccount, creditTxnId, amount, timestamp);
+        this.debit(debitTxnId, amount, timestamp, toAccount.getId(), toAccount);
+        toAccount.credit(creditTxnId, amount, timestamp, getId(), this);
+        this.journaled(position);
+        toAccount.journaled(position);
+        return position;
+    }
+
+    /**
+     * Record the journal position of an entry logged for this account before it is published (eg. its creation and
+     * opening credit), so that a snapshot including the account does not replay the entry again.
+     *
+     * @param journalPosition journal position right after the entry
+     */
+    public void logged(long journalPosition) {
+        lock.lock();
+        try {
+            journaled(Math.max(this.journalPosition, journalPosition));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the account lock (or from the owner thread of a single writer account)
+     */
+    private void journaled(long position) {
+        this.journalPosition = position;
+        ledger.journaled(position);
+    }
+
+    /**
+     * Re-apply an already journaled transaction to this account (eg. when recovering the datastore). <br>
+     * The transaction is neither validated nor logged again.
+     *
+     * @param txn existing credit or debit transaction of this account
+     * @param journalPosition journal position right after the transaction entry
+     */
+    public void replay(Transaction txn, long journalPosition) {
+        if (Objects.isNull(txn)) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            if (txn.getType() == Transaction.TransactionType.CREDIT) {
+                credit(txn.getId(), txn.getAmountMinorUnits(), txn.getTimestamp(), txn.getFromAccountId(), counterparty(txn));
+            } else {
+                debit(txn.getId(), txn.getAmountMinorUnits(), txn.getTimestamp(), txn.getToAccountId(), counterparty(txn));
+            }
+            journaled(journalPosition);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append an already journaled transaction included in the snapshot this account is restored from, which is
+     * not in the archived part of the ledger (eg. when recovering the datastore). <br>
+     * The balance restored from the snapshot already includes the transaction, it is not updated.
+     *
+     * @param txn existing credit or debit transaction of this account
+     * @param journalPosition journal position right after the transaction entry, at most {@link #getJournalPosition()}
+     */
+    public void restore(Transaction txn, long journalPosition) {
+        if (Objects.isNull(txn)) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            append(txn.getId(), txn.getType(), txn.getAmountMinorUnits(), txn.getTimestamp(),
+                    txn.getType() == Transaction.TransactionType.CREDIT ? txn.getFromAccountId() : txn.getToAccountId(), counterparty(txn));
+            ledger.journaled(journalPosition);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Attach the archived transactions of an account restored from a snapshot, before any transaction is restored
+     * or replayed (eg. when recovering the datastore)
+     *
+     * @param archive durable archive holding the transactions, null if none is archived
+     * @param archivedTransactions number of leading transactions kept in the archive
+     * @param archivedPosition journal position after which the entries append the following transactions
+     * @param disorder see {@link AccountSnapshot#getDisorder()}
+     * @throws IllegalStateException if an archived transaction is missing from the archive
+     */
+    public void restore(LedgerArchive archive, long archivedTransactions, long archivedPosition, long disorder) {
+        if (archivedTransactions > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            ledger.restore(archive, (int) archivedTransactions, archivedPosition, disorder);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the journal position up to which the journal entries of this account are already in its ledger. <br>
+     * When the account is restored from a snapshot, the entries between this position and the
+     * {@link #getJournalPosition() journal position} are restored and the following ones are replayed.
+     *
+     * @return
+     */
+    public long getLedgerPosition() {
+        lock.lock();
+        try {
+            return ledger.journalPosition();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append a transaction included in the snapshot this account is restored from (eg. when recovering the datastore). <br>
+     * The balance restored from the snapshot already includes the transaction, it is not updated.
+     *
+     * @param txnId transaction id
+     * @param type credit or debit of this account
+     * @param amountMinorUnits transaction amount in minor units
+     * @param timestamp transaction date in epoch millis
+     * @param counterpartyId id of the other account involved in the transaction or {@code 0}
+     */
+    public void restore(long txnId, Transaction.TransactionType type, long amountMinorUnits, long timestamp, long counterpartyId) {
+        if (Objects.isNull(type)) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            ledger.append(txnId, type, amountMinorUnits, timestamp, counterpartyId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the journal position right after the last entry applied to this account.
+     * Journal entries up to this position must not be replayed on this account.
+     *
+     * @return
+     */
+    public long getJournalPosition() {
+        lock.lock();
+        try {
+            return journalPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a consistent snapshot of this account state without blocking it for longer than a regular operation
+     *
+     * @return account balance, transaction count and journal position at a single point in time
+     */
+    public AccountSnapshot snapshot() {
+        lock.lock();
+        try {
+            reconcile();
+            return ledger.snapshot(balance, journalPosition);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the account lock (or from the owner thread of a single writer account)
+     */
+    private void checkFunds(long amount) {
+        if (this.balance < amount) { //do not handle if insufficient funds
+            throw new InsufficientFundsAccountException();
+        }
+    }
+
+    /**
+     * Must be called while holding the account lock (or from the owner thread of a single writer account)
+     */
+    private void credit(long txnId, long amount, long timestamp, long counterpartyId, Account counterparty) {
+        this.balance = Money.add(balance, amount);
+        append(txnId, Transaction.TransactionType.CREDIT, amount, timestamp, counterpartyId, counterparty);
+    }
+
+    /**
+     * Must be called while holding the account lock (or from the owner thread of a single writer account)
+     */
+    private void debit(long txnId, long amount, long timestamp, long counterpartyId, Account counterparty) {
+        this.balance = Money.subtract(balance, amount);
+        append(txnId, Transaction.TransactionType.DEBIT, amount, timestamp, counterpartyId, counterparty);
+    }
+
+    /**
+     * Must be called while holding the account lock (or from the owner thread of a single writer account)
+     *
+     * @param counterparty the other account involved in the transaction, or null if it is not known
+     */
+    private void append(long txnId, Transaction.TransactionType type, long amount, long timestamp, long counterpartyId, Account counterparty) {
+        ledger.append(txnId, type, amount, timestamp, counterpartyId(counterpartyId, counterparty));
+    }
+
+    /**
+     * Keep the counterparty of an account not registered in a datastore, to resolve the counterparty id later
+     *
+     * @param counterparty the other account involved in the transaction, or null if it is not known
+     */
+    private long counterpartyId(long counterpartyId, Account counterparty) {
+        if (datastore == null && counterparty != null) {
+            addCounterparty(counterparty);
+        }
+        return counterpartyId;
+    }
+
+    /**
+     * The other account involved in an existing transaction, only resolved while it has to be kept
+     */
+    private Account counterparty(Transaction txn) {
+        if (datastore != null) {
+            return null;
+        }
+        return (txn.getType() == Transaction.TransactionType.CREDIT ? txn.getFromAccount() : txn.getToAccount()).orElse(null);
+    }
+
+    private void addCounterparty(Account account) {
+        if (account != lastCounterparty && account != this) {
+            Map<Long, Account> accounts = counterparties;
+            if (accounts == null) {
+                COUNTERPARTIES.compareAndSet(this, null, new ConcurrentHashMap<>());
+                accounts = counterparties;
+            }
+            accounts.putIfAbsent(account.getId(), account);
+            lastCounterparty = account;
+        }
+    }
+
+    /**
+     * Credit the balance of a {@link Engine#LOCK_FREE} account
+     *
+     * @throws IllegalArgumentException if the balance would overflow
+     */
+    private void casCredit(long amount) {
+        long current;
+        do {
+            current = balance;
+        } while (!BALANCE.compareAndSet(this, current, Money.add(current, amount)));
+    }
+
+    /**
+     * Debit the balance of a {@link Engine#LOCK_FREE} account, retrying until it succeeds or runs out of funds
+     */
+    private void casDebit(long amount) {
+        long current;
+        do {
+            current = balance;
+            if (current < amount) { //do not handle if insufficient funds
+                throw new InsufficientFundsAccountException();
+            }
+        } while (!BALANCE.compareAndSet(this, current, current - amount));
+    }
+
+    /**
+     * Build the transaction stored in a ledger row
+     */
+    private Transaction transaction(Ledger ledger, int index) {
+        return new Transaction(ledger.getId(index), ledger.getAmountMinorUnits(index), ledger.getType(index),
+                ledger.getFromAccountId(index), ledger.getToAccountId(index), ledger.getTimestamp(index), this);
+    }
+
+    /**
+     * Resolve this account or an account involved in its transactions
+     *
+     * @return the account or null if it is not known
+     */
+    @Override
+    public Account getAccount(long accountId) {
+        if (accountId == getId()) {
+            return this;
+        }
+        AccountLookup accounts = datastore;
+        Account account = accounts == null ? null : accounts.getAccount(accountId);
+        if (account != null) {
+            return account;
+        }
+        Map<Long, Account> known = counterparties;
+        return known == null ? null : known.get(accountId);
+    }
+
+    /**
+     * Resolve the counterparties of this account through its datastore from now on, instead of keeping them.
+     * Called by the datastore before the account is published.
+     *
+     * @param datastore datastore registering the account
+     */
+    public void attach(AccountLookup datastore) {
+        if (Objects.isNull(datastore)) {
+            throw new IllegalArgumentException();
+        }
+        if (this.datastore != null && this.datastore != datastore) {
+            throw new IllegalStateException("Account " + getId() + " is already registered");
+        }
+        this.datastore = datastore;
+    }
+
+    /**
+     * @return how the account operations are synchronized
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
     /**
      * get account creation date
      * @return account creation date
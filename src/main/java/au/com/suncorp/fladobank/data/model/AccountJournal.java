@@ -0,0 +1,81 @@
+package au.com.suncorp.fladobank.data.model;
+
+/**
+ * Write-ahead log for the account operations. <br>
+ * The account calls the journal while holding its lock(s), <b>before</b> the in-memory state is mutated,
+ * so the journal order is always consistent with the order the operations were applied to each account.
+ * If the journal fails the operation is not applied. <br>
+ * Once its lock(s) are released the account waits for the logged entry to be durable
+ * (see {@link #awaitDurable(long)}) before returning to the caller.
+ */
+public interface AccountJournal {
+
+    /**
+     * Journal to be used by accounts that are not persisted
+     */
+    AccountJournal NONE = new AccountJournal() {
+        @Override
+        public long logDeposit(Account account, long txnId, long amount, long timestamp, long fromAccountId) {
+            return 0L;
+        }
+
+        @Override
+        public long logWithdrawal(Account account, long txnId, long amount, long timestamp, long toAccountId) {
+            return 0L;
+        }
+
+        @Override
+        public long logTransfer(Account fromAccount, long debitTxnId, Account toAccount, long creditTxnId, long amount, long timestamp) {
+            return 0L;
+        }
+
+        @Override
+        public void awaitDurable(long position) {
+        }
+    };
+
+    /**
+     * Log a deposit into an account
+     *
+     * @param account credited account
+     * @param txnId credit transaction id
+     * @param amount amount in minor units
+     * @param timestamp transaction date in epoch millis
+     * @param fromAccountId id of the debited account or {@code 0} if money was deposited from outside the bank
+     * @return journal position right after the logged entry
+     */
+    long logDeposit(Account account, long txnId, long amount, long timestamp, long fromAccountId);
+
+    /**
+     * Log a withdrawal from an account
+     *
+     * @param account debited account
+     * @param txnId debit transaction id
+     * @param amount amount in minor units
+     * @param timestamp transaction date in epoch millis
+     * @param toAccountId id of the credited account or {@code 0} if money was withdrawn outside the bank
+     * @return journal position right after the logged entry
+     */
+    long logWithdrawal(Account account, long txnId, long amount, long timestamp, long toAccountId);
+
+    /**
+     * Log a transfer between two accounts as a single (atomic) entry
+     *
+     * @param fromAccount debited account
+     * @param debitTxnId debit transaction id on the source account
+     * @param toAccount credited account
+     * @param creditTxnId credit transaction id on the destination account
+     * @param amount amount in minor units
+     * @param timestamp transaction date in epoch millis
+     * @return journal position right after the logged entry
+     */
+    long logTransfer(Account fromAccount, long debitTxnId, Account toAccount, long creditTxnId, long amount, long timestamp);
+
+    /**
+     * Block until all the entries logged before {@code position} are durable. <br>
+     * Must not be called while holding an account lock.
+     *
+     * @param position journal position returned when an entry was logged
+     */
+    void awaitDurable(long position);
+}
@@ -0,0 +1,14 @@
+package au.com.suncorp.fladobank.data.model;
+
+/**
+ * Resolves accounts by id, so that the transactions only keep the ids of the accounts they involve
+ */
+@FunctionalInterface
+public interface AccountLookup {
+
+    /**
+     * @param accountId account id
+     * @return the account or null if it is not known
+     */
+    Account getAccount(long accountId);
+}
@@ -0,0 +1,77 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable, consistent view of an account mutable state at a point in time.
+ */
+public final class AccountSnapshot {
+
+    private final long balance;
+
+    private final long transactionCount;
+
+    private final long journalPosition;
+
+    private final long archivedTransactions;
+
+    private final long archivedPosition;
+
+    private final long disorder;
+
+    AccountSnapshot(long balance, long transactionCount, long journalPosition, long archivedTransactions,
+                    long archivedPosition, long disorder) {
+        this.balance = balance;
+        this.transactionCount = transactionCount;
+        this.journalPosition = journalPosition;
+        this.archivedTransactions = archivedTransactions;
+        this.archivedPosition = archivedPosition;
+        this.disorder = disorder;
+    }
+
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(balance);
+    }
+
+    /**
+     * @return balance in minor units
+     */
+    public long getBalanceMinorUnits() {
+        return balance;
+    }
+
+    /**
+     * @return total number of transactions performed on the account (ledger tail pointer)
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @return journal position right after the last entry applied to the account
+     */
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+
+    /**
+     * @return number of leading transactions kept in the {@link LedgerArchive} (ledger tail pointer)
+     */
+    public long getArchivedTransactions() {
+        return archivedTransactions;
+    }
+
+    /**
+     * @return journal position after which the entries append the transactions following the archived ones
+     */
+    public long getArchivedPosition() {
+        return archivedPosition;
+    }
+
+    /**
+     * @return how far back a transaction was dated before a preceding one, see {@link Ledger#lowerBound}
+     */
+    public long getDisorder() {
+        return disorder;
+    }
+}
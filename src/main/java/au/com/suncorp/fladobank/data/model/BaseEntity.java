@@ -1,13 +1,11 @@
 package au.com.suncorp.fladobank.data.model;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * Base entity class to be extended by all other entities to inherit Id generation through default constructor
  */
 public abstract class BaseEntity {
 
-    protected final ThreadLocalRandom IdsGenerator = ThreadLocalRandom.current();
+    private static volatile IdGenerator idGenerator = new TimeOrderedIdGenerator();
 
     /**
      * Immutable key for this entity
@@ -15,14 +13,42 @@ public abstract class BaseEntity {
     private final Long id;
 
     /**
-     * Default constructor initializes the id with a positive long random value
+     * Default constructor initializes the id with a new id from the {@link IdGenerator}
      */
     BaseEntity() {
-        this.id = IdsGenerator.nextLong(1, Long.MAX_VALUE);
+        this.id = idGenerator.nextId();
+    }
+
+    /**
+     * Constructor used to restore an existing entity (eg. when recovering the datastore)
+     *
+     * @param id existing entity id
+     */
+    BaseEntity(Long id) {
+        if (id == null || id <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.id = id;
     }
 
     public Long getId() {
         return id;
     }
 
+    /**
+     * Replace the generator of the new entity ids (default {@link TimeOrderedIdGenerator})
+     *
+     * @param generator id generator
+     */
+    public static void setIdGenerator(IdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException();
+        }
+        idGenerator = generator;
+    }
+
+    static IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
 }
@@ -0,0 +1,94 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Deposits and withdrawals waiting to be applied to an account by the thread holding its lock (flat combining). <br>
+ * Requests are pushed on a lock-free stack, the combiner takes all of them at once and applies them in arrival order,
+ * so the threads queued behind the lock are served in a single critical section instead of handing the lock over
+ * to each other.
+ */
+final class CombiningQueue {
+
+    static final class Request {
+
+        final Transaction.TransactionType type;
+
+        final long txnId;
+
+        /**
+         * Amount in minor units
+         */
+        final long amount;
+
+        /**
+         * Transaction date in epoch millis
+         */
+        final long timestamp;
+
+        /**
+         * Id of the other account involved in the transaction or {@code 0}
+         */
+        final long counterpartyId;
+
+        /**
+         * The other account involved in the transaction, or null
+         */
+        final Account counterparty;
+
+        /**
+         * Journal position right after the request entry, written by the combiner
+         */
+        long position;
+
+        /**
+         * Written by the combiner if the request was rejected
+         */
+        RuntimeException failure;
+
+        /**
+         * Set by the combiner once the request is applied, publishes the position and failure
+         */
+        volatile boolean done;
+
+        private Request next;
+
+        Request(Transaction.TransactionType type, long txnId, long amount, long timestamp, long counterpartyId, Account counterparty) {
+            this.type = type;
+            this.txnId = txnId;
+            this.amount = amount;
+            this.timestamp = timestamp;
+            this.counterpartyId = counterpartyId;
+            this.counterparty = counterparty;
+        }
+
+        Request next() {
+            return next;
+        }
+    }
+
+    private final AtomicReference<Request> top = new AtomicReference<>();
+
+    void add(Request request) {
+        Request current;
+        do {
+            current = top.get();
+            request.next = current;
+        } while (!top.compareAndSet(current, request));
+    }
+
+    /**
+     * @return first of the pending requests in arrival order, or null if there are none
+     */
+    Request takeAll() {
+        Request request = top.getAndSet(null);
+        Request first = null;
+        while (request != null) {
+            Request next = request.next;
+            request.next = first;
+            first = request;
+            request = next;
+        }
+        return first;
+    }
+}
@@ -0,0 +1,213 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long the operations wait for the account locks (see {@link Account#setContentionTracker}). <br>
+ * Only the lock acquisitions that had to wait are recorded, with the wait time and the number of threads queued on the
+ * lock. The hottest accounts are kept in a bounded sketch (Space-Saving algorithm): the {@code capacity} accounts with
+ * the longest total wait are tracked, an account that enters the sketch takes the place of the coldest one and
+ * inherits its wait as an over-estimation error. <br>
+ * The sketch is split in stripes chosen by thread so that recording threads rarely wait for each other, the stripes
+ * are merged when the hot accounts are read.
+ */
+public final class ContentionTracker {
+
+    private static final int STRIPES = 16;
+
+    private final int capacity;
+
+    private final Sketch[] stripes = new Sketch[STRIPES];
+
+    private final LongAdder contendedLocks = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * @param capacity number of accounts kept in the hot accounts sketch
+     */
+    public ContentionTracker(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Sketch(capacity);
+        }
+    }
+
+    /**
+     * Record a lock acquisition that had to wait
+     *
+     * @param accountId account whose lock was acquired
+     * @param waitNanos time waited for the lock
+     * @param queueLength number of threads waiting for the lock, including the recording thread
+     */
+    void record(long accountId, long waitNanos, int queueLength) {
+        contendedLocks.increment();
+        this.waitNanos.add(waitNanos);
+        stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)].record(accountId, waitNanos, queueLength);
+    }
+
+    /**
+     * @return number of lock acquisitions that had to wait
+     */
+    public long getContendedLocks() {
+        return contendedLocks.sum();
+    }
+
+    /**
+     * @return total time waited for the account locks in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /**
+     * @param k number of accounts, at most the sketch capacity
+     * @return the accounts with the longest total wait, longest first
+     */
+    public List<HotAccount> getHotAccounts(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        Map<Long, HotAccount> merged = new HashMap<>();
+        for (Sketch stripe : stripes) {
+            for (HotAccount account : stripe.snapshot()) {
+                merged.merge(account.getAccountId(), account, HotAccount::merge);
+            }
+        }
+        List<HotAccount> hottest = new ArrayList<>(merged.values());
+        hottest.sort(Comparator.comparingLong(HotAccount::getWaitNanos).reversed());
+        return hottest.subList(0, Math.min(Math.min(k, capacity), hottest.size()));
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        for (Sketch stripe : stripes) {
+            stripe.clear();
+        }
+        contendedLocks.reset();
+        waitNanos.reset();
+    }
+
+    /**
+     * Lock contention of an account
+     */
+    public static final class HotAccount {
+
+        private final long accountId;
+        private final long contendedLocks;
+        private final long waitNanos;
+        private final int maxQueueLength;
+        private final long error;
+
+        HotAccount(long accountId, long contendedLocks, long waitNanos, int maxQueueLength, long error) {
+            this.accountId = accountId;
+            this.contendedLocks = contendedLocks;
+            this.waitNanos = waitNanos;
+            this.maxQueueLength = maxQueueLength;
+            this.error = error;
+        }
+
+        public long getAccountId() {
+            return accountId;
+        }
+
+        /**
+         * @return number of lock acquisitions that had to wait since the account entered the sketch
+         */
+        public long getContendedLocks() {
+            return contendedLocks;
+        }
+
+        /**
+         * @return total time waited for the account lock in nanoseconds, over-estimated by at most {@link #getError()}
+         */
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        /**
+         * @return maximum number of threads seen waiting for the account lock
+         */
+        public int getMaxQueueLength() {
+            return maxQueueLength;
+        }
+
+        /**
+         * @return wait inherited from the accounts evicted from the sketch
+         */
+        public long getError() {
+            return error;
+        }
+
+        private HotAccount merge(HotAccount other) {
+            return new HotAccount(accountId, contendedLocks + other.contendedLocks, waitNanos + other.waitNanos,
+                    Math.max(maxQueueLength, other.maxQueueLength), error + other.error);
+        }
+    }
+
+    /**
+     * Space-Saving sketch of a stripe
+     */
+    private static final class Sketch {
+
+        private final int capacity;
+
+        private final Map<Long, Counter> counters;
+
+        Sketch(int capacity) {
+            this.capacity = capacity;
+            this.counters = new HashMap<>(capacity * 2);
+        }
+
+        synchronized void record(long accountId, long waitNanos, int queueLength) {
+            Counter counter = counters.get(accountId);
+            if (counter == null) {
+                counter = new Counter();
+                if (counters.size() == capacity) {
+                    Map.Entry<Long, Counter> coldest = null;
+                    for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+                        if (coldest == null || entry.getValue().waitNanos < coldest.getValue().waitNanos) {
+                            coldest = entry;
+                        }
+                    }
+                    counters.remove(coldest.getKey());
+                    counter.error = coldest.getValue().waitNanos;
+                    counter.waitNanos = counter.error;
+                }
+                counters.put(accountId, counter);
+            }
+            counter.contendedLocks++;
+            counter.waitNanos += waitNanos;
+            counter.maxQueueLength = Math.max(counter.maxQueueLength, queueLength);
+        }
+
+        synchronized List<HotAccount> snapshot() {
+            List<HotAccount> accounts = new ArrayList<>(counters.size());
+            counters.forEach((accountId, counter) -> accounts.add(new HotAccount(accountId, counter.contendedLocks,
+                    counter.waitNanos, counter.maxQueueLength, counter.error)));
+            return accounts;
+        }
+
+        synchronized void clear() {
+            counters.clear();
+        }
+    }
+
+    private static final class Counter {
+
+        long contendedLocks;
+        long waitNanos;
+        int maxQueueLength;
+        long error;
+    }
+}
@@ -0,0 +1,48 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the striped credits of the accounts in a background thread, so that a credit does not stay pending for
+ * longer than {@link Account#STRIPED_CREDITS_MAX_PENDING} millis when nothing else drains the account. <br>
+ * The accounts are weakly referenced, the drain of an account is cancelled once it is garbage collected.
+ */
+final class CreditDrainer implements Runnable {
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "fladobank-credit-drainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final WeakReference<Account> account;
+
+    private volatile ScheduledFuture<?> future;
+
+    private CreditDrainer(Account account) {
+        this.account = new WeakReference<>(account);
+    }
+
+    /**
+     * Drain the striped credits of the account periodically
+     */
+    static void schedule(Account account) {
+        CreditDrainer drainer = new CreditDrainer(account);
+        drainer.future = EXECUTOR.scheduleWithFixedDelay(drainer, Account.STRIPED_CREDITS_MAX_PENDING,
+                Account.STRIPED_CREDITS_MAX_PENDING, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        Account target = account.get();
+        if (target != null) {
+            target.drainCreditStripes();
+        } else if (future != null) {
+            future.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deposits of a hot account spread over stripes, like the cells of a {@code LongAdder}. <br>
+ * A deposit adds its amount to the pending credit of a stripe and buffers its ledger row there, holding only the
+ * stripe lock, so concurrent deposits to the account do not wait for each other. The stripes are drained into the
+ * account balance and ledger (see {@link #drain}) while holding the account lock, when the account needs its full
+ * balance or its complete ledger. <br>
+ * Each stripe only accepts credits up to its share of the balance headroom, so a drain never overflows the balance:
+ * a deposit the stripe has no room for is applied under the account lock instead, where an overflow is rejected.
+ * The drained credits are dated at the later of their deposit and the last ledger row, the stripes never append a
+ * row dated before a preceding one. <br>
+ * A stripe lock is always acquired after the account lock, never the other way around.
+ */
+final class CreditStripes {
+
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * Buffered rows of a stripe above which the depositing thread tries to drain the stripes
+     */
+    static final int DRAIN_SIZE = 1024;
+
+    /**
+     * {@link #deposit} outcome: the credit is buffered in a stripe
+     */
+    static final int BUFFERED = 0;
+
+    /**
+     * {@link #deposit} outcome: the credit is buffered in a stripe which should now be drained
+     */
+    static final int DRAIN = 1;
+
+    /**
+     * {@link #deposit} outcome: the credit is not buffered, its stripe has no room left for it
+     */
+    static final int FULL = 2;
+
+    private final Stripe[] stripes;
+
+    /**
+     * Sum of the stripe limits, only accessed while holding the account lock
+     */
+    private long reserved;
+
+    /**
+     * Must be called while holding the account lock
+     *
+     * @param balance current account balance
+     */
+    CreditStripes(long balance) {
+        int count = Integer.highestOneBit(Math.min(MAX_STRIPES, Math.max(2, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        share(balance, 0L);
+    }
+
+    /**
+     * Add a credit to a stripe
+     *
+     * @return {@link #BUFFERED}, {@link #DRAIN} if the stripe has buffered enough rows to be drained or {@link #FULL}
+     * if the stripe has no room left for the credit
+     */
+    int deposit(long id, long amount, long timestamp, long counterpartyId) {
+        int mask = stripes.length - 1;
+        int first = (int) (Thread.currentThread().getId() * 0x9E3779B9L) & mask;
+        Stripe stripe = null;
+        for (int i = 0; i < stripes.length && stripe == null; i++) {
+            Stripe candidate = stripes[(first + i) & mask];
+            if (candidate.lock.tryLock()) {
+                stripe = candidate;
+            }
+        }
+        if (stripe == null) {
+            stripe = stripes[first];
+            stripe.lock.lock();
+        }
+        try {
+            if (amount > stripe.limit - stripe.pending) {
+                return FULL;
+            }
+            stripe.pending = stripe.pending + amount;
+            stripe.add(id, amount, timestamp, counterpartyId);
+            return stripe.size >= DRAIN_SIZE ? DRAIN : BUFFERED;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Sum of the pending credits, read without locking the stripes
+     *
+     * @return pending credits in minor units, {@code Long.MAX_VALUE} if the sum read while draining overflows
+     */
+    long pending() {
+        long pending = 0L;
+        for (Stripe stripe : stripes) {
+            pending += stripe.pending;
+            if (pending < 0L) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return the headroom of the balance shared by the stripes, a credit applied under the account lock must leave it
+     * available. Must be called while holding the account lock.
+     */
+    long reserved() {
+        return reserved;
+    }
+
+    /**
+     * Move the pending credits to the ledger, must be called while holding the account lock. <br>
+     * The pending credits never overflow the balance, the stripes share at most its headroom.
+     *
+     * @param balance current account balance
+     * @param credit amount about to be credited under the account lock, kept out of the headroom shared by the stripes
+     * @return the account balance including the drained credits
+     */
+    long drain(long balance, Ledger ledger, long credit) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                // the drained stripes take no credit until the new headroom is shared
+                stripe.limit = 0L;
+                if (stripe.size > 0) {
+                    balance += stripe.pending;
+                    for (int i = 0; i < stripe.size; i++) {
+                        ledger.append(stripe.ids[i], Transaction.TransactionType.CREDIT, stripe.amounts[i],
+                                Math.max(stripe.timestamps[i], ledger.lastTimestamp()), stripe.counterparties[i]);
+                    }
+                    stripe.pending = 0L;
+                    stripe.size = 0;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        share(balance, credit);
+        return balance;
+    }
+
+    /**
+     * Give every stripe an equal share of half the headroom left above the balance and the credit, the other half
+     * leaving room for the credits applied under the account lock
+     */
+    private void share(long balance, long credit) {
+        long headroom = Long.MAX_VALUE - balance;
+        long limit = (headroom < credit ? headroom : headroom - credit) / 2 / stripes.length;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.limit = limit;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        reserved = limit * stripes.length;
+    }
+
+    /**
+     * A stripe is written by one depositing thread at a time, under its lock. The buffers allocated with a stripe keep
+     * the fields of neighbour stripes on different cache lines.
+     */
+    private static final class Stripe {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Written under the stripe lock, read without it by {@link #pending()}
+         */
+        volatile long pending;
+
+        /**
+         * Maximum pending credit of the stripe, written under the stripe and account locks
+         */
+        long limit;
+
+        int size;
+
+        long[] ids = new long[INITIAL_CAPACITY];
+        long[] amounts = new long[INITIAL_CAPACITY];
+        long[] timestamps = new long[INITIAL_CAPACITY];
+        long[] counterparties = new long[INITIAL_CAPACITY];
+
+        void add(long id, long amount, long timestamp, long counterpartyId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                counterparties = Arrays.copyOf(counterparties, size * 2);
+            }
+            ids[size] = id;
+            amounts[size] = amount;
+            timestamps[size] = timestamp;
+            counterparties[size] = counterpartyId;
+            size++;
+        }
+    }
+}
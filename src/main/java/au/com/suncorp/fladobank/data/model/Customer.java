@@ -6,47 +6,89 @@ import java.time.LocalDate;
 /**
  * A bank customer entity. Stores private details about a person. <br>
  * This is a thread-safe entity in case future bank operations would allow updating customer details. <br>
+ * The details are kept in an immutable {@link Details} instance replaced on every update, so they are read
+ * without locking and {@link #getDetails()} returns a consistent snapshot. <br>
  *
  * For simplicity I consider FladoBank deals only with individuals as customers (I exclude companies, SMSFs, etc).
- * Also the list of associated accounts for this customer is maintained in the datastore only.
+ * Also the list of associated accounts for this customer is maintained in the datastore only
+ * (see {@link au.com.suncorp.fladobank.data.BankDataSource#findAccountsByCustomer}).
  */
 
 public final class Customer extends BaseEntity{
 
-    private String firstName;
-
-    private String lastName;
-
-    private LocalDate dob;
+    private volatile Details details;
 
     public Customer(String firstName, String lastName, LocalDate dob) {
         super();
-        this.firstName = firstName;
-        this.lastName = lastName;
-        this.dob = dob;
+        this.details = new Details(firstName, lastName, dob);
+    }
+
+    /**
+     * Restore an existing customer (eg. when recovering the datastore)
+     */
+    public Customer(Long id, String firstName, String lastName, LocalDate dob) {
+        super(id);
+        this.details = new Details(firstName, lastName, dob);
     }
 
-    public synchronized String getFirstName() {
-        return firstName;
+    /**
+     * @return the customer details at a single point in time
+     */
+    public Details getDetails() {
+        return details;
     }
 
-    public synchronized String getLastName() {
-        return lastName;
+    public String getFirstName() {
+        return details.getFirstName();
     }
 
-    public synchronized LocalDate getDob() {
-        return dob;
+    public String getLastName() {
+        return details.getLastName();
+    }
+
+    public LocalDate getDob() {
+        return details.getDob();
     }
 
     public synchronized void setFirstName(String firstName) {
-        this.firstName = firstName;
+        this.details = new Details(firstName, details.lastName, details.dob);
     }
 
     public synchronized void setLastName(String lastName) {
-        this.lastName = lastName;
+        this.details = new Details(details.firstName, lastName, details.dob);
     }
 
     public synchronized void setDob(LocalDate dob) {
-        this.dob = dob;
+        this.details = new Details(details.firstName, details.lastName, dob);
+    }
+
+    /**
+     * Immutable customer details
+     */
+    public static final class Details {
+
+        private final String firstName;
+
+        private final String lastName;
+
+        private final LocalDate dob;
+
+        Details(String firstName, String lastName, LocalDate dob) {
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.dob = dob;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public LocalDate getDob() {
+            return dob;
+        }
     }
 }
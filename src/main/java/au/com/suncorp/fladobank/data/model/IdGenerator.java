@@ -0,0 +1,11 @@
+package au.com.suncorp.fladobank.data.model;
+
+/**
+ * Generates the ids of the new entities (see {@link BaseEntity#setIdGenerator}). <br>
+ * Implementations must be thread-safe and never return the same id twice, ids are positive.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    long nextId();
+}
@@ -0,0 +1,712 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Append-only transaction ledger of an account. <br>
+ * Transactions are stored as primitive columns (id, amount in minor units, epoch millis timestamp,
+ * counterparty account id and type) in fixed-size chunks, so the ledger never copies more than a chunk when it grows
+ * and does not keep an object per transaction. <br>
+ * There is a single writer: {@link #append} must be called while holding the owner account lock. Readers do not lock,
+ * the volatile {@code size} is written after the row so any row below a size read by a reader is fully visible. <br>
+ * Accounts updated without locking append through {@link #appendConcurrently}: each writer claims a row, writes it and
+ * marks it ready, and the writers move {@code size} over the ready rows following it. A writer never waits for another,
+ * a slow writer only delays the visibility of the rows claimed after its own. <br>
+ * The ledger is in append order, which is nearly date order: a transaction may be appended after a later dated one
+ * (eg. it waited for the account lock, or the clock was stepped back) and keeps its own date. The ledger tracks how
+ * far back such a transaction was dated, every transaction is dated at most that long before any transaction
+ * preceding it, so the transactions of a time range are still found by binary search with that slack (see
+ * {@link #lowerBound} and {@link #upperBound}). <br>
+ * Full chunks outside the hot tail of the ledger can be spilled to a {@link LedgerArchive} (see {@link #spill}): their
+ * directory slot is replaced by the archived block, read back from the memory-mapped segment file, so the heap only
+ * holds the hot tail of the ledger however long its history. The chunk directory is the offset index of the archived
+ * blocks.
+ */
+public final class Ledger {
+
+    /**
+     * Maps a ledger row to an object when the ledger is viewed as a list
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(Ledger ledger, int index);
+    }
+
+    /**
+     * Receives the rows of a ledger scan, without an object per row
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(long id, Transaction.TransactionType type, long amount, long timestamp, long counterpartyId);
+    }
+
+    static final int CHUNK_SHIFT = 10;
+
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    static final byte CREDIT = 0;
+
+    static final byte DEBIT = 1;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Capacity of a new chunk, a chunk is grown up to {@link #CHUNK_SIZE} so that
+     * accounts with a few transactions stay small
+     */
+    private static final int INITIAL_CHUNK_CAPACITY = 8;
+
+    private static final AtomicIntegerFieldUpdater<Ledger> CLAIMED = AtomicIntegerFieldUpdater.newUpdater(Ledger.class, "claimed");
+
+    private static final AtomicIntegerFieldUpdater<Ledger> SIZE = AtomicIntegerFieldUpdater.newUpdater(Ledger.class, "size");
+
+    private static final AtomicLongFieldUpdater<Ledger> LAST_TIMESTAMP = AtomicLongFieldUpdater.newUpdater(Ledger.class, "lastTimestamp");
+
+    private static final AtomicLongFieldUpdater<Ledger> DISORDER = AtomicLongFieldUpdater.newUpdater(Ledger.class, "disorder");
+
+    private static final VarHandle READY = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Chunk[].class);
+
+    private final long ownerId;
+
+    /**
+     * Chunk directory, the slots are written by the writer before publishing the new {@code size}, except for the
+     * full chunks replaced by their archived copy and the chunks of {@link #appendConcurrently}. The directory is grown
+     * and the slots are replaced while holding the ledger monitor.
+     */
+    private volatile Chunk[] chunks = new Chunk[4];
+
+    /**
+     * Chunk being written, only accessed by the writer
+     */
+    private ArrayChunk tail;
+
+    /**
+     * Number of leading chunks spilled to the archive, guarded by the ledger monitor
+     */
+    private int spilledChunks;
+
+    private volatile int size;
+
+    /**
+     * Number of rows claimed, by {@link #append} or {@link #appendConcurrently}
+     */
+    private volatile int claimed;
+
+    /**
+     * Latest timestamp of the rows, written before {@code size}
+     */
+    private volatile long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Largest amount of millis by which a row was dated before a preceding row, written before {@code size}. It may
+     * be overestimated by {@link #appendConcurrently}, which only widens the searches.
+     */
+    private volatile long disorder;
+
+    /**
+     * Journal position right after the last entry applied to the owner account, stamped on each new chunk so that
+     * a snapshot knows from which journal entry the rows kept in memory are replayed. Only accessed by the writer.
+     */
+    private long journalPosition;
+
+    Ledger(long ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    /**
+     * Append a transaction, must be called while holding the owner account lock
+     *
+     * @param id transaction id
+     * @param type transaction type
+     * @param amount amount in minor units
+     * @param date transaction date in the system default time zone
+     * @param counterpartyId id of the other account involved in the transaction or {@code 0}
+     */
+    void append(long id, Transaction.TransactionType type, long amount, LocalDateTime date, long counterpartyId) {
+        append(id, type, amount, Timestamps.toEpochMillis(date), counterpartyId);
+    }
+
+    /**
+     * @param timestamp transaction date in epoch millis
+     * @see #append(long, Transaction.TransactionType, long, LocalDateTime, long)
+     * @throws IllegalStateException if the ledger is full
+     */
+    void append(long id, Transaction.TransactionType type, long amount, long timestamp, long counterpartyId) {
+        int index = size;
+        if (index == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Ledger is full");
+        }
+        ArrayChunk chunk = writableChunk(index);
+        int offset = index & CHUNK_MASK;
+        chunk.ids[offset] = id;
+        chunk.types[offset] = type == Transaction.TransactionType.CREDIT ? CREDIT : DEBIT;
+        chunk.amounts[offset] = amount;
+        chunk.timestamps[offset] = timestamp;
+        long last = lastTimestamp;
+        if (timestamp < last) {
+            if (last - timestamp > disorder) {
+                disorder = last - timestamp;
+            }
+        } else {
+            // ordered before the volatile size, no need for a full fence
+            LAST_TIMESTAMP.lazySet(this, timestamp);
+        }
+        chunk.counterparties[offset] = counterpartyId;
+        CLAIMED.lazySet(this, index + 1);
+        size = index + 1;
+    }
+
+    /**
+     * Append a transaction without holding the owner account lock, {@link #append} must not be called any more. <br>
+     * The writer claims the next row, writes it in a full size chunk and marks it ready, then moves {@code size} over
+     * the ready rows: the rows become visible in claim order, without waiting for the writers of the preceding rows. If
+     * a writer fails between the claim and the ready mark (ie. it runs out of memory for a new chunk), the rows claimed
+     * after its own are never visible, but no writer is blocked.
+     *
+     * @throws IllegalStateException if the ledger is full
+     * @see #append
+     */
+    void appendConcurrently(long id, Transaction.TransactionType type, long amount, long timestamp, long counterpartyId) {
+        int index = CLAIMED.getAndIncrement(this);
+        if (index < 0 || index == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Ledger is full");
+        }
+        ArrayChunk chunk = concurrentChunk(index >>> CHUNK_SHIFT);
+        int offset = index & CHUNK_MASK;
+        chunk.ids[offset] = id;
+        chunk.types[offset] = type == Transaction.TransactionType.CREDIT ? CREDIT : DEBIT;
+        chunk.amounts[offset] = amount;
+        chunk.timestamps[offset] = timestamp;
+        chunk.counterparties[offset] = counterpartyId;
+        // volatile: either this writer sees the ready mark of the preceding row, or its writer sees this one
+        READY.setVolatile(chunk.ready, offset, (byte) 1);
+        publishReadyRows();
+    }
+
+    /**
+     * @return chunk with ready marks holding the rows of the directory slot, created or copied from the rows appended
+     *         by {@link #append} while holding the ledger monitor
+     */
+    private ArrayChunk concurrentChunk(int chunkIndex) {
+        Chunk[] directory = chunks;
+        if (chunkIndex < directory.length) {
+            Chunk chunk = (Chunk) SLOT.getVolatile(directory, chunkIndex);
+            if (chunk instanceof ArrayChunk && ((ArrayChunk) chunk).ready != null) {
+                return (ArrayChunk) chunk;
+            }
+        }
+        synchronized (this) {
+            directory = chunks;
+            if (chunkIndex >= directory.length) {
+                Chunk[] grown = new Chunk[Math.max(directory.length * 2, Integer.highestOneBit(chunkIndex) << 1)];
+                System.arraycopy(directory, 0, grown, 0, directory.length);
+                chunks = directory = grown;
+            }
+            ArrayChunk chunk = (ArrayChunk) directory[chunkIndex];
+            if (chunk == null || chunk.ready == null) {
+                // the rows of a chunk written by append all precede the claimed rows, none is written while copying
+                chunk = new ArrayChunk(chunk, CHUNK_SIZE, chunk == null ? journalPosition : chunk.journalPosition, true);
+                SLOT.setVolatile(directory, chunkIndex, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Move {@code size} over the ready rows following it, along with the latest timestamp and the disorder
+     */
+    private void publishReadyRows() {
+        while (true) {
+            int index = size;
+            Chunk[] directory = chunks;
+            int chunkIndex = index >>> CHUNK_SHIFT;
+            if (chunkIndex >= directory.length) {
+                return;
+            }
+            Chunk slot = (Chunk) SLOT.getVolatile(directory, chunkIndex);
+            if (!(slot instanceof ArrayChunk) || ((ArrayChunk) slot).ready == null) {
+                return;
+            }
+            ArrayChunk chunk = (ArrayChunk) slot;
+            int offset = index & CHUNK_MASK;
+            if ((byte) READY.getVolatile(chunk.ready, offset) == 0) {
+                return;
+            }
+            // a writer losing the race below may apply the row again: the latest timestamp is unchanged and the
+            // disorder is at worst overestimated
+            long timestamp = chunk.timestamps[offset];
+            long last = lastTimestamp;
+            while (timestamp > last && !LAST_TIMESTAMP.compareAndSet(this, last, timestamp)) {
+                last = lastTimestamp;
+            }
+            long current = disorder;
+            while (last - timestamp > current && !DISORDER.compareAndSet(this, current, last - timestamp)) {
+                current = disorder;
+            }
+            SIZE.compareAndSet(this, index, index + 1);
+        }
+    }
+
+    /**
+     * @return latest timestamp of the rows, {@code Long.MIN_VALUE} if there is none, must be called by the writer
+     */
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Record the journal position of the entry just applied to the owner account, must be called by the writer
+     */
+    void journaled(long position) {
+        journalPosition = position;
+    }
+
+    /**
+     * @return journal position right after the last entry appended to the ledger, must be called by the writer
+     */
+    long journalPosition() {
+        return journalPosition;
+    }
+
+    /**
+     * Take the state of the ledger for a snapshot of its owner account, must be called by the writer
+     *
+     * @param balance account balance in minor units
+     * @param journalPosition journal position right after the last entry applied to the account
+     */
+    AccountSnapshot snapshot(long balance, long journalPosition) {
+        synchronized (this) {
+            int archived = spilledChunks << CHUNK_SHIFT;
+            // the rows kept in memory are appended by the journal entries after the mark of their first chunk
+            long archivedPosition = archived == size ? journalPosition : ((ArrayChunk) chunks[spilledChunks]).journalPosition;
+            return new AccountSnapshot(balance, size, journalPosition, archived, archivedPosition, disorder);
+        }
+    }
+
+    /**
+     * Attach the archived chunks of a ledger restored from a snapshot, before any row is appended
+     *
+     * @param archive durable archive holding the chunks
+     * @param archived number of archived transactions, a multiple of the chunk size
+     * @param archivedPosition journal position after which the entries append the rows following the archived ones
+     * @param disorder disorder of the archived rows, see {@link #lowerBound}
+     * @throws IllegalStateException if a chunk is missing from the archive
+     */
+    void restore(LedgerArchive archive, int archived, long archivedPosition, long disorder) {
+        if (size != 0 || archived < 0 || (archived & CHUNK_MASK) != 0 || disorder < 0 || (archived > 0 && archive == null)) {
+            throw new IllegalArgumentException();
+        }
+        int count = archived >>> CHUNK_SHIFT;
+        synchronized (this) {
+            Chunk[] directory = new Chunk[Math.max(4, Integer.highestOneBit(count) << 1)];
+            if (count > 0) {
+                System.arraycopy(archive.recover(ownerId, count), 0, directory, 0, count);
+            }
+            chunks = directory;
+            spilledChunks = count;
+        }
+        if (count > 0) {
+            // every archived row is dated at most disorder before the last one
+            lastTimestamp = saturatedAdd(chunks[count - 1].timestamp(CHUNK_MASK), disorder);
+        }
+        this.disorder = disorder;
+        this.journalPosition = archivedPosition;
+        claimed = archived;
+        size = archived;
+    }
+
+    private ArrayChunk writableChunk(int index) {
+        Chunk[] directory = chunks;
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        int offset = index & CHUNK_MASK;
+        if (offset == 0) {
+            if (chunkIndex == directory.length) {
+                synchronized (this) {
+                    // the spilled slots are replaced under the monitor, none is lost by the copy
+                    directory = chunks;
+                    Chunk[] grown = new Chunk[directory.length * 2];
+                    System.arraycopy(directory, 0, grown, 0, directory.length);
+                    chunks = directory = grown;
+                }
+            }
+            tail = new ArrayChunk(null, INITIAL_CHUNK_CAPACITY, journalPosition, false);
+            directory[chunkIndex] = tail;
+        } else if (offset == tail.ids.length) {
+            tail = new ArrayChunk(tail, offset * 2, tail.journalPosition, false);
+            directory[chunkIndex] = tail;
+        }
+        return tail;
+    }
+
+    /**
+     * Spill the full chunks outside the hot tail of the ledger to the archive, oldest first. A full chunk is spilled
+     * once its last transaction is not one of the {@code hotTransactions} latest ones or is dated before
+     * {@code hotSince}. <br>
+     * Called by a single background thread, concurrently with the writer and the readers: the rows of a full chunk
+     * do not change, the readers see either the chunk or its archived copy.
+     *
+     * @param archive archive receiving the chunks
+     * @param hotTransactions number of latest transactions kept in memory
+     * @param hotSince epoch millis of the oldest transaction kept in memory, {@code Long.MIN_VALUE} for no limit
+     * @return number of transactions spilled
+     * @throws java.io.UncheckedIOException if a segment file can not be created
+     */
+    public int spill(LedgerArchive archive, int hotTransactions, long hotSince) {
+        if (archive == null || hotTransactions < 0) {
+            throw new IllegalArgumentException();
+        }
+        int size = this.size;
+        int spilled = 0;
+        synchronized (this) {
+            for (int chunkIndex = spilledChunks; chunkIndex < size >>> CHUNK_SHIFT; chunkIndex++) {
+                Chunk[] directory = chunks;
+                Chunk chunk = directory[chunkIndex];
+                int end = (chunkIndex + 1) << CHUNK_SHIFT;
+                // the rows of the chunk are dated at most disorder millis after its last row
+                if (size - end < hotTransactions && saturatedAdd(chunk.timestamp(CHUNK_MASK), disorder) >= hotSince) {
+                    break;
+                }
+                // release store: a reader seeing the archived block sees the bytes written to the segment
+                SLOT.setRelease(directory, chunkIndex, archive.write(ownerId, chunkIndex << CHUNK_SHIFT, chunk));
+                spilledChunks = chunkIndex + 1;
+                spilled += CHUNK_SIZE;
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * @return number of transactions spilled to the archive, the others are kept in memory
+     */
+    public int spilled() {
+        synchronized (this) {
+            return spilledChunks << CHUNK_SHIFT;
+        }
+    }
+
+    /**
+     * @return number of transactions in the ledger
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return id of the account owning this ledger
+     */
+    public long getOwnerId() {
+        return ownerId;
+    }
+
+    public long getId(int index) {
+        return chunk(index).id(index & CHUNK_MASK);
+    }
+
+    public Transaction.TransactionType getType(int index) {
+        return chunk(index).type(index & CHUNK_MASK) == CREDIT
+                ? Transaction.TransactionType.CREDIT
+                : Transaction.TransactionType.DEBIT;
+    }
+
+    /**
+     * @return amount in minor units
+     */
+    public long getAmountMinorUnits(int index) {
+        return chunk(index).amount(index & CHUNK_MASK);
+    }
+
+    /**
+     * @return transaction date in epoch millis
+     */
+    public long getTimestamp(int index) {
+        return chunk(index).timestamp(index & CHUNK_MASK);
+    }
+
+    /**
+     * @return transaction date in the system default time zone
+     */
+    public LocalDateTime getDate(int index) {
+        return Timestamps.toLocalDateTime(getTimestamp(index));
+    }
+
+    /**
+     * @return id of the other account involved in the transaction or {@code 0}
+     */
+    public long getCounterpartyId(int index) {
+        return chunk(index).counterparty(index & CHUNK_MASK);
+    }
+
+    /**
+     * @return id of the debited account or {@code 0} if money was deposited from outside the bank
+     */
+    public long getFromAccountId(int index) {
+        return getType(index) == Transaction.TransactionType.DEBIT ? ownerId : getCounterpartyId(index);
+    }
+
+    /**
+     * @return id of the credited account or {@code 0} if money was withdrawn outside the bank
+     */
+    public long getToAccountId(int index) {
+        return getType(index) == Transaction.TransactionType.CREDIT ? ownerId : getCounterpartyId(index);
+    }
+
+    /**
+     * Binary search of the start of the transactions dated at or after a timestamp. When the ledger is in date order,
+     * this is the first transaction dated at or after the timestamp; otherwise the following transactions may include
+     * some dated before, to be filtered by the caller.
+     *
+     * @param timestamp epoch millis
+     * @param size number of transactions to search, at most {@link #size()}
+     * @return an index such that all the preceding transactions are dated before the timestamp, {@code size} if none
+     *         of the {@code size} transactions is dated at or after it
+     */
+    public int lowerBound(long timestamp, int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException();
+        }
+        // a row dated before timestamp - disorder is preceded by rows dated before timestamp
+        return search(saturatedAdd(timestamp, -disorder), size);
+    }
+
+    /**
+     * Binary search of the end of the transactions dated before a timestamp, see {@link #lowerBound}
+     *
+     * @param timestamp epoch millis
+     * @param size number of transactions to search, at most {@link #size()}
+     * @return an index such that all the following transactions, up to {@code size}, are dated at or after the timestamp
+     */
+    public int upperBound(long timestamp, int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException();
+        }
+        // a row dated at or after timestamp + disorder is followed by rows dated at or after timestamp
+        return search(saturatedAdd(timestamp, disorder), size);
+    }
+
+    /**
+     * @return index of the first row dated at or after the timestamp, if the rows were in date order
+     */
+    private int search(long timestamp, int size) {
+        Chunk[] directory = chunks;
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (directory[middle >>> CHUNK_SHIFT].timestamp(middle & CHUNK_MASK) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long saturatedAdd(long timestamp, long millis) {
+        long result = timestamp + millis;
+        if (((timestamp ^ result) & (millis ^ result)) < 0) {
+            return millis < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    /**
+     * View the transactions currently in the ledger as an immutable list. <br>
+     * The list does not copy the ledger, its rows are mapped on access and the transactions appended
+     * after this call are not part of it.
+     *
+     * @param mapper row mapper
+     * @return
+     */
+    public <T> List<T> asList(RowMapper<T> mapper) {
+        return new View<>(this, mapper, size);
+    }
+
+    /**
+     * Scan a range of rows in ledger order. An archived row is decoded once for all its columns, scanning is faster
+     * than reading the rows column by column.
+     *
+     * @param from index of the first row
+     * @param to index after the last row, at most {@link #size()}
+     * @param consumer receives the rows
+     */
+    public void scan(int from, int to, RowConsumer consumer) {
+        if (from < 0 || from > to || to > size) {
+            throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Size: " + size);
+        }
+        Chunk[] directory = chunks;
+        ScanBuffers buffers = new ScanBuffers();
+        int index = from;
+        while (index < to) {
+            int chunkStart = index & ~CHUNK_MASK;
+            int end = Math.min(to, chunkStart + CHUNK_SIZE);
+            directory[index >>> CHUNK_SHIFT].scan(index - chunkStart, end - chunkStart, consumer, buffers);
+            index = end;
+        }
+    }
+
+    private Chunk chunk(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return chunks[index >>> CHUNK_SHIFT];
+    }
+
+    /**
+     * Rows of a chunk, in memory or archived
+     */
+    abstract static class Chunk {
+
+        abstract long id(int offset);
+
+        abstract byte type(int offset);
+
+        abstract long amount(int offset);
+
+        abstract long timestamp(int offset);
+
+        abstract long counterparty(int offset);
+
+        /**
+         * Pass the rows {@code from} inclusive to {@code to} exclusive to the consumer
+         *
+         * @param buffers decoding buffers of the scan, shared with the other chunks
+         */
+        void scan(int from, int to, RowConsumer consumer, ScanBuffers buffers) {
+            for (int offset = from; offset < to; offset++) {
+                consumer.accept(id(offset), type(offset) == CREDIT ? Transaction.TransactionType.CREDIT : Transaction.TransactionType.DEBIT,
+                        amount(offset), timestamp(offset), counterparty(offset));
+            }
+        }
+    }
+
+    /**
+     * Decoding buffers of a scan, allocated by the first chunk needing them and reused by the next chunks
+     */
+    static final class ScanBuffers {
+
+        private long[][] columns;
+
+        private byte[] bytes;
+
+        /**
+         * @return array of at least {@code length} bytes, its content is left by the previous chunk
+         */
+        byte[] bytes(int length) {
+            if (bytes == null || bytes.length < length) {
+                bytes = new byte[length];
+            }
+            return bytes;
+        }
+
+        /**
+         * @return at least {@code count} columns of at least {@code length} values, their content is left by the previous chunk
+         */
+        long[][] columns(int count, int length) {
+            if (columns == null || columns.length < count || columns[0].length < length) {
+                columns = new long[count][length];
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Columns of a chunk of rows kept in memory. The fields are final so that a chunk replaced by a grown copy is
+     * safely published to the readers together with the copied rows.
+     */
+    private static final class ArrayChunk extends Chunk {
+
+        final long[] ids;
+        final byte[] types;
+        final long[] amounts;
+        final long[] timestamps;
+        final long[] counterparties;
+
+        /**
+         * Ready marks of the rows of {@link #appendConcurrently}, {@code null} for the chunks of {@link #append}
+         */
+        final byte[] ready;
+
+        /**
+         * Journal position right after the entry applied before the first row of the chunk
+         */
+        final long journalPosition;
+
+        ArrayChunk(ArrayChunk previous, int capacity, long journalPosition, boolean concurrent) {
+            this.journalPosition = journalPosition;
+            ready = concurrent ? new byte[capacity] : null;
+            ids = new long[capacity];
+            types = new byte[capacity];
+            amounts = new long[capacity];
+            timestamps = new long[capacity];
+            counterparties = new long[capacity];
+            if (previous != null) {
+                int length = previous.ids.length;
+                System.arraycopy(previous.ids, 0, ids, 0, length);
+                System.arraycopy(previous.types, 0, types, 0, length);
+                System.arraycopy(previous.amounts, 0, amounts, 0, length);
+                System.arraycopy(previous.timestamps, 0, timestamps, 0, length);
+                System.arraycopy(previous.counterparties, 0, counterparties, 0, length);
+            }
+        }
+
+        @Override
+        long id(int offset) {
+            return ids[offset];
+        }
+
+        @Override
+        byte type(int offset) {
+            return types[offset];
+        }
+
+        @Override
+        long amount(int offset) {
+            return amounts[offset];
+        }
+
+        @Override
+        long timestamp(int offset) {
+            return timestamps[offset];
+        }
+
+        @Override
+        long counterparty(int offset) {
+            return counterparties[offset];
+        }
+    }
+
+    private static final class View<T> extends AbstractList<T> implements RandomAccess {
+
+        private final Ledger ledger;
+        private final RowMapper<T> mapper;
+        private final int size;
+
+        View(Ledger ledger, RowMapper<T> mapper, int size) {
+            this.ledger = ledger;
+            this.mapper = mapper;
+            this.size = size;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return mapper.map(ledger, index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
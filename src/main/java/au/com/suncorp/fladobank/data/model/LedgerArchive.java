@@ -0,0 +1,420 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cold tier of the account ledgers: full ledger chunks spilled out of the heap (see {@link Ledger#spill}). <br>
+ *
+ * The ledgers are spread over shards by owner account id, each shard appends the spilled chunks to its own sequence
+ * of fixed size memory-mapped segment files, so spilling different accounts does not contend on a single file. A
+ * chunk is written as a block and read back in place from the mapping, the operating system pages the history in
+ * when it is requested. The blocks are either plain columns (ids, timestamps, amounts, counterparties and types) or
+ * compressed (see {@link CompressedBlock}), several times smaller. <br>
+ *
+ * By default the archive only moves the ledgers out of the heap, the segment files left by a previous run are deleted
+ * when it is opened. A durable archive keeps the history of the journaled accounts instead (see
+ * {@code JournalBankDataSource}): the blocks found in the segment files are indexed when it is opened, so that the
+ * ledgers restored from a snapshot are attached to their archived chunks, and the segments are forced to disk before
+ * a snapshot refers to their blocks.
+ */
+public final class LedgerArchive {
+
+    /**
+     * Layout of the archived blocks
+     */
+    public enum Format {
+        /**
+         * Fixed size columns, read without decoding, about 33 bytes per transaction
+         */
+        FIXED,
+        /**
+         * Frames of 64 rows with bit-packed columns and a checksum per block, about 6 bytes per transaction.
+         * A storage format: a scan decodes each frame, it takes about twice as long as a scan of {@link #FIXED} blocks
+         * and is slower than reading the rows serialised field by field.
+         */
+        COMPRESSED
+    }
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * "FBLK"
+     */
+    static final int BLOCK_MAGIC = 0x46424C4B;
+
+    /**
+     * Magic, row count, owner account id and index of the first row in the ledger
+     */
+    static final int BLOCK_HEADER_SIZE = 24;
+
+    static final int BLOCK_SIZE = BLOCK_HEADER_SIZE + Ledger.CHUNK_SIZE * (4 * Long.BYTES + 1);
+
+    private static final String SEGMENT_SUFFIX = ".ledger";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final Format format;
+
+    /**
+     * Room needed in a segment to write a block
+     */
+    private final int maxBlockSize;
+
+    private final Shard[] shards;
+
+    private final boolean durable;
+
+    /**
+     * Chunks found in the segment files of a durable archive by owner account id, indexed by chunk index,
+     * until they are attached to their ledger
+     */
+    private final Map<Long, Ledger.Chunk[]> recovered = new HashMap<>();
+
+    /**
+     * Open an empty archive of {@link Format#FIXED} blocks, deleting the segment files found in the directory
+     *
+     * @param directory directory of the segment files
+     * @param shards number of shards, each appending to its own segment files
+     * @param segmentSize size in bytes of a segment file
+     * @throws IOException if the directory can not be created or cleared
+     */
+    public LedgerArchive(Path directory, int shards, int segmentSize) throws IOException {
+        this(directory, shards, segmentSize, Format.FIXED);
+    }
+
+    /**
+     * Open an empty archive, deleting the segment files found in the directory
+     *
+     * @param directory directory of the segment files
+     * @param shards number of shards, each appending to its own segment files
+     * @param segmentSize size in bytes of a segment file
+     * @param format layout of the archived blocks
+     * @throws IOException if the directory can not be created or cleared
+     */
+    public LedgerArchive(Path directory, int shards, int segmentSize, Format format) throws IOException {
+        this(directory, shards, segmentSize, format, false);
+    }
+
+    /**
+     * Open an archive
+     *
+     * @param directory directory of the segment files
+     * @param shards number of shards, each appending to its own segment files
+     * @param segmentSize size in bytes of a segment file
+     * @param format layout of the new archived blocks, the blocks already archived are read in their own format
+     * @param durable true to keep and index the segment files found in the directory, false to delete them
+     * @throws IOException if the directory can not be created, cleared or read
+     */
+    public LedgerArchive(Path directory, int shards, int segmentSize, Format format, boolean durable) throws IOException {
+        if (Objects.isNull(directory) || Objects.isNull(format) || shards <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxBlockSize = format == Format.FIXED ? BLOCK_SIZE : CompressedBlock.maxSize(Ledger.CHUNK_SIZE);
+        if (segmentSize < maxBlockSize) {
+            throw new IllegalArgumentException();
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.format = format;
+        this.durable = durable;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i);
+        }
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            if (!durable) {
+                Files.delete(file);
+                continue;
+            }
+            String name = file.getFileName().toString();
+            int shard = Integer.parseInt(name.substring(0, name.indexOf('-')));
+            int sequence = Integer.parseInt(name.substring(name.indexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length()));
+            if (shard < shards) {
+                // the new segments of the shard follow the existing ones
+                this.shards[shard].sequence = Math.max(this.shards[shard].sequence, sequence + 1);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                index(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+    }
+
+    /**
+     * Index the blocks of a segment file written by a previous run, up to the first one not completely written.
+     * A chunk archived more than once (its account was restored from a snapshot preceding the first copy) is read
+     * from the last copy.
+     */
+    private void index(ByteBuffer segment) {
+        ByteBuffer littleEndian = segment.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int offset = 0;
+        while (offset + BLOCK_HEADER_SIZE <= segment.capacity()) {
+            long ownerId;
+            int firstIndex;
+            Ledger.Chunk chunk;
+            int length;
+            if (segment.getInt(offset) == BLOCK_MAGIC && segment.getInt(offset + 4) == Ledger.CHUNK_SIZE
+                    && offset + BLOCK_SIZE <= segment.capacity()) {
+                ownerId = segment.getLong(offset + 8);
+                firstIndex = segment.getInt(offset + 16);
+                chunk = new Block(segment, offset + BLOCK_HEADER_SIZE);
+                length = BLOCK_SIZE;
+            } else if (littleEndian.getInt(offset) == CompressedBlock.MAGIC && littleEndian.getInt(offset + 4) == Ledger.CHUNK_SIZE) {
+                CompressedBlock block = new CompressedBlock(segment, offset);
+                length = block.length();
+                if (length <= BLOCK_HEADER_SIZE || length > segment.capacity() - offset) {
+                    return;
+                }
+                ownerId = littleEndian.getLong(offset + 8);
+                firstIndex = littleEndian.getInt(offset + 16);
+                chunk = block;
+            } else {
+                return;
+            }
+            if (firstIndex >= 0 && (firstIndex & (Ledger.CHUNK_SIZE - 1)) == 0) {
+                int chunkIndex = firstIndex / Ledger.CHUNK_SIZE;
+                Ledger.Chunk[] chunks = recovered.get(ownerId);
+                if (chunks == null || chunkIndex >= chunks.length) {
+                    Ledger.Chunk[] grown = new Ledger.Chunk[Math.max(4, Integer.highestOneBit(chunkIndex) << 1)];
+                    if (chunks != null) {
+                        System.arraycopy(chunks, 0, grown, 0, chunks.length);
+                    }
+                    recovered.put(ownerId, chunks = grown);
+                }
+                chunks[chunkIndex] = chunk;
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * Take the chunks of a ledger found in the segment files when the archive was opened
+     *
+     * @param ownerId id of the account owning the ledger
+     * @param count number of leading chunks
+     * @return the chunks
+     * @throws IllegalStateException if one of the chunks was not found
+     */
+    Ledger.Chunk[] recover(long ownerId, int count) {
+        Ledger.Chunk[] chunks;
+        synchronized (recovered) {
+            chunks = count == 0 ? new Ledger.Chunk[0] : recovered.remove(ownerId);
+        }
+        for (int chunkIndex = 0; chunkIndex < count; chunkIndex++) {
+            if (chunks == null || chunkIndex >= chunks.length || chunks[chunkIndex] == null) {
+                throw new IllegalStateException("Archived ledger chunk " + chunkIndex + " of account " + ownerId + " not found");
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Force the segments of a durable archive to disk, the blocks written so far survive an OS crash
+     */
+    public void force() {
+        for (Shard shard : shards) {
+            MappedByteBuffer segment;
+            synchronized (shard) {
+                segment = shard.segment;
+            }
+            // the previous segments of the shard were forced when rolled over
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * @return true if the segment files are kept and indexed when the archive is opened
+     */
+    public boolean isDurable() {
+        return durable;
+    }
+
+    /**
+     * Append a full chunk to the segment of the owner shard
+     *
+     * @param ownerId id of the account owning the ledger
+     * @param firstIndex ledger index of the first row of the chunk
+     * @param chunk chunk of {@link Ledger#CHUNK_SIZE} rows
+     * @return the archived chunk, reading the rows from the segment
+     * @throws UncheckedIOException if a new segment file can not be created
+     */
+    Ledger.Chunk write(long ownerId, int firstIndex, Ledger.Chunk chunk) {
+        Shard shard = shards[shard(ownerId)];
+        synchronized (shard) {
+            ByteBuffer segment = shard.reserve();
+            int offset = shard.position;
+            if (format == Format.COMPRESSED) {
+                int length = CompressedBlock.encode(ownerId, firstIndex, chunk, Ledger.CHUNK_SIZE, segment, offset);
+                shard.position += length;
+                shard.archivedBytes += length;
+                return new CompressedBlock(segment, offset);
+            }
+            segment.putInt(offset, BLOCK_MAGIC);
+            segment.putInt(offset + 4, Ledger.CHUNK_SIZE);
+            segment.putLong(offset + 8, ownerId);
+            segment.putInt(offset + 16, firstIndex);
+            int column = offset + BLOCK_HEADER_SIZE;
+            for (int i = 0; i < Ledger.CHUNK_SIZE; i++) {
+                segment.putLong(column + i * Long.BYTES, chunk.id(i));
+                segment.putLong(column + Block.TIMESTAMPS + i * Long.BYTES, chunk.timestamp(i));
+                segment.putLong(column + Block.AMOUNTS + i * Long.BYTES, chunk.amount(i));
+                segment.putLong(column + Block.COUNTERPARTIES + i * Long.BYTES, chunk.counterparty(i));
+                segment.put(column + Block.TYPES + i, chunk.type(i));
+            }
+            shard.position += BLOCK_SIZE;
+            shard.archivedBytes += BLOCK_SIZE;
+            return new Block(segment, column);
+        }
+    }
+
+    /**
+     * @return number of bytes written to the segment files
+     */
+    public long getArchivedBytes() {
+        long bytes = 0L;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                bytes += shard.archivedBytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return layout of the archived blocks
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int getShards() {
+        return shards.length;
+    }
+
+    private int shard(long ownerId) {
+        // the ids are time ordered, mix the bits so that consecutive accounts spread over the shards
+        long hash = ownerId * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 32) % shards.length);
+    }
+
+    private final class Shard {
+
+        private final int index;
+
+        /**
+         * Number of segment files created by the shard
+         */
+        private int sequence;
+
+        private MappedByteBuffer segment;
+
+        /**
+         * Offset of the next block in the current segment
+         */
+        private int position;
+
+        private long archivedBytes;
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        /**
+         * @return the segment with room for a block at {@code position}, a new one if the current one is full
+         */
+        MappedByteBuffer reserve() {
+            if (segment == null || position + maxBlockSize > segment.capacity()) {
+                if (segment != null && durable) {
+                    segment.force();
+                }
+                Path file = directory.resolve(String.format("%03d-%010d%s", index, sequence, SEGMENT_SUFFIX));
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE_NEW)) {
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                sequence++;
+                position = 0;
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Archived chunk, its rows are read in place from the mapped segment (absolute reads, safe for concurrent readers)
+     */
+    private static final class Block extends Ledger.Chunk {
+
+        static final int TIMESTAMPS = Ledger.CHUNK_SIZE * Long.BYTES;
+        static final int AMOUNTS = 2 * TIMESTAMPS;
+        static final int COUNTERPARTIES = 3 * TIMESTAMPS;
+        static final int TYPES = 4 * TIMESTAMPS;
+
+        private final ByteBuffer segment;
+
+        /**
+         * Offset of the columns in the segment
+         */
+        private final int columns;
+
+        Block(ByteBuffer segment, int columns) {
+            this.segment = segment;
+            this.columns = columns;
+        }
+
+        @Override
+        long id(int offset) {
+            return segment.getLong(columns + offset * Long.BYTES);
+        }
+
+        @Override
+        byte type(int offset) {
+            return segment.get(columns + TYPES + offset);
+        }
+
+        @Override
+        long amount(int offset) {
+            return segment.getLong(columns + AMOUNTS + offset * Long.BYTES);
+        }
+
+        @Override
+        long timestamp(int offset) {
+            return segment.getLong(columns + TIMESTAMPS + offset * Long.BYTES);
+        }
+
+        @Override
+        long counterparty(int offset) {
+            return segment.getLong(columns + COUNTERPARTIES + offset * Long.BYTES);
+        }
+    }
+}
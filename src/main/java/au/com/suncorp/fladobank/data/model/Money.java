@@ -0,0 +1,105 @@
+package au.com.suncorp.fladobank.data.model;
+
+import au.com.suncorp.fladobank.data.BalanceOverflowException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Internal money representation: amounts are {@code long} values in minor units (cents). <br>
+ * {@code BigDecimal} amounts are only converted at the service boundary, so balance updates and comparisons
+ * on the account hot path are plain {@code long} arithmetic with no allocation.
+ *
+ * <b>Rules:</b>
+ *     <ul>
+ *          <li> amounts with more than {@link #SCALE} decimals are rejected unless a rounding mode is given </li>
+ *          <li> amounts and balances overflowing a {@code long} number of cents are rejected </li>
+ *     </ul>
+ */
+public final class Money {
+
+    /**
+     * Number of decimals of the minor unit
+     */
+    public static final int SCALE = 2;
+
+    private static final long MINOR_UNITS = 100L;
+
+    private Money() {
+    }
+
+    /**
+     * Convert an amount into minor units
+     *
+     * @param amount amount with at most {@link #SCALE} decimals
+     * @return amount in minor units
+     * @throws IllegalArgumentException if the amount has more decimals or does not fit a {@code long}
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        if (Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        try {
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid amount " + amount, e);
+        }
+    }
+
+    /**
+     * Convert an amount into minor units, rounding the decimals beyond {@link #SCALE}
+     *
+     * @param amount amount to convert
+     * @param roundingMode rounding mode applied to the decimals beyond {@link #SCALE}
+     * @return amount in minor units
+     * @throws IllegalArgumentException if the amount does not fit a {@code long}
+     */
+    public static long toMinorUnits(BigDecimal amount, RoundingMode roundingMode) {
+        if (Objects.isNull(amount) || Objects.isNull(roundingMode)) {
+            throw new IllegalArgumentException();
+        }
+        try {
+            return amount.setScale(SCALE, roundingMode).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid amount " + amount, e);
+        }
+    }
+
+    /**
+     * Convert minor units into an amount. Whole amounts have no decimals (eg. {@code 100}), others have
+     * {@link #SCALE} decimals (eg. {@code 100.50}).
+     *
+     * @param minorUnits amount in minor units
+     * @return the amount
+     */
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return minorUnits % MINOR_UNITS == 0
+                ? BigDecimal.valueOf(minorUnits / MINOR_UNITS)
+                : BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * @return {@code balance + amount}
+     * @throws BalanceOverflowException on overflow
+     */
+    public static long add(long balance, long amount) {
+        long result = balance + amount;
+        if (((balance ^ result) & (amount ^ result)) < 0) {
+            throw new BalanceOverflowException();
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code balance - amount}
+     * @throws BalanceOverflowException on overflow
+     */
+    public static long subtract(long balance, long amount) {
+        long result = balance - amount;
+        if (((balance ^ amount) & (balance ^ result)) < 0) {
+            throw new BalanceOverflowException();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Unique ids ordered by creation time. <br>
+ * An id is made of the milliseconds elapsed since {@link #EPOCH} (41 bits, about 69 years) followed by 22 bits:
+ * the node id ({@value #NODE_BITS} bits), the shard of the generator ({@value #SHARD_BITS} bits) and a sequence number
+ * ({@value #COUNTER_BITS} bits), so ids created in a later millisecond are greater and nodes with different ids never
+ * generate the same id. <br>
+ * A thread takes its ids from the counter of its shard, picked from the thread id: no allocation, no id wasted, and
+ * the threads of different shards do not contend. The ids of a thread are increasing, the ids of different threads
+ * created in the same millisecond are not ordered between them. When the 2<sup>{@value #COUNTER_BITS}</sup> ids of a
+ * shard are used up within a millisecond, the thread waits for the next millisecond, so the ids never run ahead of the clock.
+ * If the clock goes back, the counters keep increasing from their last id and the ids stay unique.
+ */
+public final class TimeOrderedIdGenerator implements IdGenerator {
+
+    /**
+     * 2020-01-01T00:00:00Z
+     */
+    public static final long EPOCH = 1577836800000L;
+
+    static final int SEQUENCE_BITS = 22;
+
+    static final int NODE_BITS = 5;
+
+    static final int SHARD_BITS = 3;
+
+    static final int COUNTER_BITS = SEQUENCE_BITS - NODE_BITS - SHARD_BITS;
+
+    /**
+     * Greatest node id
+     */
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final int SHARDS = 1 << SHARD_BITS;
+
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    /**
+     * Counters 128 bytes apart so that the shards do not share a cache line
+     */
+    private static final int STRIDE = 16;
+
+    /**
+     * Last value of each shard counter: milliseconds since {@link #EPOCH} followed by the sequence number
+     */
+    private final AtomicLongArray counters = new AtomicLongArray(SHARDS * STRIDE);
+
+    private final long node;
+
+    /**
+     * Generator of node 0
+     */
+    public TimeOrderedIdGenerator() {
+        this(0);
+    }
+
+    /**
+     * @param node id of this node, 0 to {@value #MAX_NODE}, each node generating ids must have its own
+     */
+    public TimeOrderedIdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE);
+        }
+        this.node = (long) node << (SHARD_BITS + COUNTER_BITS);
+    }
+
+    @Override
+    public long nextId() {
+        int shard = (int) Thread.currentThread().getId() & (SHARDS - 1);
+        int slot = shard * STRIDE;
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (now < EPOCH) {
+                throw new IllegalStateException("System clock is before " + Instant.ofEpochMilli(EPOCH));
+            }
+            long millis = now - EPOCH;
+            long previous = counters.get(slot);
+            long next = Math.max(previous + 1, millis << COUNTER_BITS);
+            if (next >>> COUNTER_BITS > millis && previous >>> COUNTER_BITS == millis) {
+                // sequence used up in this millisecond
+                Thread.onSpinWait();
+                continue;
+            }
+            if (counters.compareAndSet(slot, previous, next)) {
+                return (next >>> COUNTER_BITS) << SEQUENCE_BITS | node | (long) shard << COUNTER_BITS | next & COUNTER_MASK;
+            }
+        }
+    }
+
+    /**
+     * @return creation time of an id generated by this class
+     */
+    public static Instant getTimestamp(long id) {
+        return Instant.ofEpochMilli(EPOCH + (id >>> SEQUENCE_BITS));
+    }
+
+    /**
+     * @return id of the node that generated an id of this class
+     */
+    public static int getNode(long id) {
+        return (int) (id >>> (SHARD_BITS + COUNTER_BITS)) & MAX_NODE;
+    }
+}
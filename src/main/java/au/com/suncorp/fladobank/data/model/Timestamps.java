@@ -0,0 +1,35 @@
+package au.com.suncorp.fladobank.data.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * Internal time representation: transaction dates are {@code long} epoch millis, taken from the system clock. <br>
+ * {@code LocalDateTime} dates are in the system default time zone, they are only converted at the model boundary.
+ */
+public final class Timestamps {
+
+    private Timestamps() {
+    }
+
+    /**
+     * @param date date in the system default time zone
+     * @return the date in epoch millis
+     */
+    public static long toEpochMillis(LocalDateTime date) {
+        if (Objects.isNull(date)) {
+            throw new IllegalArgumentException();
+        }
+        return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * @param epochMillis date in epoch millis
+     * @return the date in the system default time zone
+     */
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
@@ -7,7 +7,9 @@ import java.util.Optional;
 
 /**
  * A transaction is a money transfer operation on a single bank account or between two accounts.<br>
- * This entity is immutable so that transactions can not be modified after creation.
+ * This entity is immutable so that transactions can not be modified after creation. <br>
+ * The accounts are kept as ids and resolved on demand through an {@link AccountLookup}, a transaction does not keep
+ * its counterparty account, with its ledger and customer, reachable.
  */
 public final class Transaction extends BaseEntity{
 
@@ -15,41 +17,184 @@ public final class Transaction extends BaseEntity{
         CREDIT, DEBIT
     }
 
-    private final BigDecimal amount;
+    /**
+     * Amount in minor units (see {@link Money})
+     */
+    private final long amount;
 
-    private final Optional<Account> fromAccount;
+    /**
+     * Id of the debited account or {@code 0} if money was deposited from outside the bank
+     */
+    private final long fromAccountId;
 
-    private final Optional<Account> toAccount;
+    /**
+     * Id of the credited account or {@code 0} if money was withdrawn outside the bank
+     */
+    private final long toAccountId;
 
-    private final LocalDateTime date;
+    /**
+     * Transaction date in epoch millis (see {@link Timestamps})
+     */
+    private final long timestamp;
 
     private final Transaction.TransactionType type;
 
+    /**
+     * Resolves the account ids, only for {@link #getFromAccount()} and {@link #getToAccount()}
+     */
+    private final AccountLookup accounts;
+
     public Transaction(BigDecimal amount, Transaction.TransactionType type, Optional<Account> fromAccount, Optional<Account> toAccount) {
-        if (Objects.isNull(amount) || Objects.isNull(type) || ( !fromAccount.isPresent() && !toAccount.isPresent())) {
+        this(toMinorUnits(amount), type, fromAccount, toAccount, System.currentTimeMillis());
+    }
+
+    /**
+     * @param amount amount in minor units
+     */
+    public Transaction(long amount, Transaction.TransactionType type, Optional<Account> fromAccount, Optional<Account> toAccount) {
+        this(amount, type, fromAccount, toAccount, System.currentTimeMillis());
+    }
+
+    /**
+     * @param timestamp transaction date in epoch millis
+     */
+    Transaction(long amount, Transaction.TransactionType type, Optional<Account> fromAccount, Optional<Account> toAccount, long timestamp) {
+        super();
+        if (Objects.isNull(type) || ( !fromAccount.isPresent() && !toAccount.isPresent())) {
             throw new IllegalArgumentException();
         }
         this.amount = amount;
         this.type = type;
-        this.fromAccount = fromAccount;
-        this.toAccount = toAccount;
-        this.date = LocalDateTime.now();
+        this.fromAccountId = accountId(fromAccount);
+        this.toAccountId = accountId(toAccount);
+        this.timestamp = timestamp;
+        this.accounts = lookup(fromAccount, toAccount);
+    }
+
+    /**
+     * Restore an existing transaction (eg. when recovering the datastore)
+     *
+     * @param amount amount in minor units
+     */
+    public Transaction(Long id, long amount, Transaction.TransactionType type, Optional<Account> fromAccount, Optional<Account> toAccount, LocalDateTime date) {
+        super(id);
+        validate(type, fromAccount, toAccount, date);
+        this.amount = amount;
+        this.type = type;
+        this.fromAccountId = accountId(fromAccount);
+        this.toAccountId = accountId(toAccount);
+        this.timestamp = Timestamps.toEpochMillis(date);
+        this.accounts = lookup(fromAccount, toAccount);
+    }
+
+    /**
+     * Restore an existing transaction from the account ids
+     *
+     * @param amount amount in minor units
+     * @param fromAccountId id of the debited account or {@code 0}
+     * @param toAccountId id of the credited account or {@code 0}
+     * @param timestamp transaction date in epoch millis
+     * @param accounts resolves the account ids
+     */
+    public Transaction(long id, long amount, Transaction.TransactionType type, long fromAccountId, long toAccountId,
+                       long timestamp, AccountLookup accounts) {
+        super(id);
+        if (Objects.isNull(type) || Objects.isNull(accounts) || (fromAccountId == 0L && toAccountId == 0L)) {
+            throw new IllegalArgumentException();
+        }
+        this.amount = amount;
+        this.type = type;
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.timestamp = timestamp;
+        this.accounts = accounts;
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        if (Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        return Money.toMinorUnits(amount);
+    }
+
+    private static void validate(Transaction.TransactionType type, Optional<Account> fromAccount, Optional<Account> toAccount, LocalDateTime date) {
+        if (Objects.isNull(type) || Objects.isNull(date) || ( !fromAccount.isPresent() && !toAccount.isPresent())) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private static long accountId(Optional<Account> account) {
+        return account.isPresent() ? account.get().getId() : 0L;
+    }
+
+    /**
+     * An account resolves itself and the accounts it transacted with, a transaction between two accounts resolves
+     * through either of them
+     */
+    private static AccountLookup lookup(Optional<Account> fromAccount, Optional<Account> toAccount) {
+        if (!fromAccount.isPresent() || !toAccount.isPresent() || fromAccount.get() == toAccount.get()) {
+            return fromAccount.isPresent() ? fromAccount.get() : toAccount.get();
+        }
+        Account from = fromAccount.get();
+        Account to = toAccount.get();
+        return accountId -> accountId == from.getId() ? from : to.getAccount(accountId);
     }
 
     public BigDecimal getAmount() {
+        return Money.toBigDecimal(amount);
+    }
+
+    /**
+     * @return amount in minor units
+     */
+    public long getAmountMinorUnits() {
         return amount;
     }
 
+    /**
+     * @return id of the debited account or {@code 0} if money was deposited from outside the bank
+     */
+    public long getFromAccountId() {
+        return fromAccountId;
+    }
+
+    /**
+     * @return id of the credited account or {@code 0} if money was withdrawn outside the bank
+     */
+    public long getToAccountId() {
+        return toAccountId;
+    }
+
+    /**
+     * Resolve the debited account, prefer {@link #getFromAccountId()} when the id is enough
+     */
     public Optional<Account> getFromAccount() {
-        return fromAccount;
+        return resolve(fromAccountId);
     }
 
+    /**
+     * Resolve the credited account, prefer {@link #getToAccountId()} when the id is enough
+     */
     public Optional<Account> getToAccount() {
-        return toAccount;
+        return resolve(toAccountId);
+    }
+
+    private Optional<Account> resolve(long accountId) {
+        return accountId == 0L ? Optional.empty() : Optional.ofNullable(accounts.getAccount(accountId));
+    }
+
+    /**
+     * @return transaction date in epoch millis
+     */
+    public long getTimestamp() {
+        return timestamp;
     }
 
+    /**
+     * @return transaction date in the system default time zone
+     */
     public LocalDateTime getDate() {
-        return date;
+        return Timestamps.toLocalDateTime(timestamp);
     }
 
     public Transaction.TransactionType getType() {
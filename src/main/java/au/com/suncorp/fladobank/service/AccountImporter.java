@@ -0,0 +1,617 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.data.BankDataSource;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Loads a book of customers and accounts with their opening balances (eg. when migrating from another system),
+ * without going through {@link FladoBankService#openAccount} one account at a time. <br>
+ * The file is memory-mapped and split in chunks parsed by {@code parallelism} workers, each worker creating the
+ * accounts of its rows in batches through {@link BankDataSource#createAccounts}, so the opening balances are
+ * ledger entries rather than deposits. The rows of a customer share a customer reference, all its accounts are
+ * owned by the same {@link Customer}. Progress is reported after each batch. <br>
+ *
+ * CSV files start with a header line, followed by {@code customerRef,firstName,lastName,dob,accountType,openingBalance}
+ * rows: the date of birth is {@code yyyy-MM-dd} or empty, the opening balance has at most 2 decimals. <br>
+ * Binary files (see {@link BinaryWriter}) start with the {@code int} {@link #MAGIC} and the {@code byte}
+ * {@link #VERSION}, followed by blocks {@code [int length][rows]} of whole rows, a row being
+ * {@code [long customerRef][short length][firstName][short length][lastName][long dob epoch day or Long.MIN_VALUE]
+ * [byte accountType ordinal][long openingBalance in minor units]} with UTF-8 names.
+ */
+public final class AccountImporter implements Closeable {
+
+    public enum Format {
+        CSV, BINARY
+    }
+
+    /**
+     * "FBIM"
+     */
+    public static final int MAGIC = 0x4642494D;
+
+    public static final byte VERSION = 1;
+
+    static final int BATCH_SIZE = 1024;
+
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Upper bound for a row size, names being the only variable length fields
+     */
+    static final int MAX_ROW_SIZE = 4096;
+
+    private static final int BINARY_HEADER_SIZE = 5;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final Account.AccountType[] ACCOUNT_TYPES = Account.AccountType.values();
+
+    private final BankDataSource bankDataSource;
+
+    private final int parallelism;
+
+    private final int chunkSize;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param bankDataSource datastore of the imported accounts
+     * @param parallelism number of chunks parsed at the same time
+     */
+    public AccountImporter(BankDataSource bankDataSource, int parallelism) {
+        this(bankDataSource, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    AccountImporter(BankDataSource bankDataSource, int parallelism, int chunkSize) {
+        if (Objects.isNull(bankDataSource) || parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.bankDataSource = bankDataSource;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "fladobank-import-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Import the accounts of a file
+     *
+     * @param file customers and accounts
+     * @param format file format
+     * @param listener notified after each batch of accounts, from the import workers; may be null
+     * @return number of accounts imported and import rate
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a row is malformed, the accounts of the previous rows stay imported
+     */
+    public Progress importAccounts(Path file, Format format, Consumer<Progress> listener) throws IOException {
+        if (Objects.isNull(file) || Objects.isNull(format)) {
+            throw new IllegalArgumentException();
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> chunks = format == Format.CSV ? csvChunks(size) : binaryChunks(channel, size);
+            Import current = new Import(channel, format, chunks, size, start, listener);
+            List<Future<?>> workers = new ArrayList<>(parallelism);
+            for (int i = 0; i < Math.min(parallelism, chunks.size()); i++) {
+                workers.add(executor.submit(() -> {
+                    current.run();
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (InterruptedException e) {
+                current.next.set(chunks.size());
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                current.next.set(chunks.size());
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            return current.progress(size);
+        }
+    }
+
+    /**
+     * Stop the import workers
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * CSV chunks start at fixed offsets, a worker parses the rows starting in its chunk (the first row of a chunk
+     * starts after the first line break) and reads the last one past the end of the chunk
+     */
+    private List<long[]> csvChunks(long size) {
+        List<long[]> chunks = new ArrayList<>();
+        for (long offset = 0; offset < size; offset += chunkSize) {
+            chunks.add(new long[]{offset, Math.min(chunkSize, size - offset)});
+        }
+        return chunks;
+    }
+
+    /**
+     * Binary chunks are the blocks of the file, found by following the block lengths
+     */
+    private List<long[]> binaryChunks(FileChannel channel, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE);
+        readFully(channel, header, 0L);
+        if (header.getInt(0) != MAGIC || header.get(4) != VERSION) {
+            throw new IllegalArgumentException("Not an account import file");
+        }
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        for (long offset = BINARY_HEADER_SIZE; offset < size; offset += Integer.BYTES + length.getInt(0)) {
+            readFully(channel, length, offset);
+            if (length.getInt(0) < 0 || offset + Integer.BYTES + length.getInt(0) > size) {
+                throw new IllegalArgumentException("Malformed block at offset " + offset);
+            }
+            chunks.add(new long[]{offset + Integer.BYTES, length.getInt(0)});
+        }
+        return chunks;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IllegalArgumentException("Truncated file");
+            }
+        }
+    }
+
+    /**
+     * Import progress
+     */
+    public static final class Progress {
+
+        private final long accounts;
+        private final long bytesRead;
+        private final long totalBytes;
+        private final long elapsedNanos;
+
+        Progress(long accounts, long bytesRead, long totalBytes, long elapsedNanos) {
+            this.accounts = accounts;
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return number of accounts imported so far
+         */
+        public long getAccounts() {
+            return accounts;
+        }
+
+        /**
+         * @return size of the chunks fully imported so far
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return accounts imported per second since the import started
+         */
+        public double getAccountsPerSecond() {
+            return elapsedNanos == 0 ? 0 : accounts * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d accounts, %d/%d bytes, %.0f accounts/s", accounts, bytesRead, totalBytes, getAccountsPerSecond());
+        }
+    }
+
+    /**
+     * Writes binary import files
+     */
+    public static final class BinaryWriter implements Closeable {
+
+        static final int BLOCK_SIZE = 1024 * 1024;
+
+        private final WritableByteChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+
+        /**
+         * @param channel destination, left open by {@link #close()}
+         */
+        public BinaryWriter(WritableByteChannel channel) throws IOException {
+            if (Objects.isNull(channel)) {
+                throw new IllegalArgumentException();
+            }
+            this.channel = channel;
+            buffer.putInt(MAGIC).put(VERSION);
+            flush();
+            buffer.putInt(0); // block length
+        }
+
+        /**
+         * @param customerRef reference of the customer in the source system, shared by all its accounts
+         * @param dob date of birth or null
+         * @param openingBalance opening balance in minor units
+         */
+        public void write(long customerRef, String firstName, String lastName, LocalDate dob,
+                          Account.AccountType type, long openingBalance) throws IOException {
+            if (Objects.isNull(type) || openingBalance < 0) {
+                throw new IllegalArgumentException();
+            }
+            byte[] first = bytes(firstName);
+            byte[] last = bytes(lastName);
+            if (first.length + last.length + 3 * Long.BYTES + 2 * Short.BYTES + 1 > MAX_ROW_SIZE) {
+                throw new IllegalArgumentException();
+            }
+            if (buffer.remaining() < MAX_ROW_SIZE) {
+                endBlock();
+            }
+            buffer.putLong(customerRef)
+                    .putShort((short) first.length).put(first)
+                    .putShort((short) last.length).put(last)
+                    .putLong(dob == null ? NO_DATE : dob.toEpochDay())
+                    .put((byte) type.ordinal())
+                    .putLong(openingBalance);
+        }
+
+        /**
+         * Write the last block
+         */
+        @Override
+        public void close() throws IOException {
+            if (buffer.position() > Integer.BYTES) {
+                buffer.putInt(0, buffer.position() - Integer.BYTES);
+                flush();
+            }
+        }
+
+        private void endBlock() throws IOException {
+            buffer.putInt(0, buffer.position() - Integer.BYTES);
+            flush();
+            buffer.putInt(0);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * State of an import shared by its workers
+     */
+    private final class Import {
+
+        final AtomicInteger next = new AtomicInteger();
+
+        private final FileChannel channel;
+        private final Format format;
+        private final List<long[]> chunks;
+        private final long size;
+        private final long start;
+        private final Consumer<Progress> listener;
+
+        /**
+         * Customers by reference, so that the accounts of a customer parsed by different workers share it
+         */
+        private final Map<Long, Customer> customers = new ConcurrentHashMap<>();
+
+        private final AtomicLong accounts = new AtomicLong();
+
+        private final AtomicLong bytesRead = new AtomicLong();
+
+        Import(FileChannel channel, Format format, List<long[]> chunks, long size, long start, Consumer<Progress> listener) {
+            this.channel = channel;
+            this.format = format;
+            this.chunks = chunks;
+            this.size = size;
+            this.start = start;
+            this.listener = listener;
+        }
+
+        void run() throws IOException {
+            Batch batch = new Batch();
+            for (int i = next.getAndIncrement(); i < chunks.size(); i = next.getAndIncrement()) {
+                long offset = chunks.get(i)[0];
+                long length = chunks.get(i)[1];
+                if (format == Format.CSV) {
+                    // from the last byte of the previous chunk, the last row may end past the chunk
+                    long from = offset == 0 ? 0 : offset - 1;
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from,
+                            Math.min(offset + length + MAX_ROW_SIZE, size) - from);
+                    parseCsv(buffer, from, (int) (offset + length - from), batch);
+                } else {
+                    parseBinary(channel.map(FileChannel.MapMode.READ_ONLY, offset, length), offset, batch);
+                }
+                batch.flush();
+                bytesRead.addAndGet(length);
+            }
+        }
+
+        Progress progress(long bytes) {
+            return new Progress(accounts.get(), bytes, size, System.nanoTime() - start);
+        }
+
+        /**
+         * Parse the rows starting after the first line break of the buffer and before {@code length}: the header
+         * for the first chunk, the end of the row started by the previous chunk otherwise
+         */
+        private void parseCsv(ByteBuffer buffer, long offset, int length, Batch batch) {
+            int position = lineEnd(buffer, 0, offset) + 1;
+            while (position < length && position < buffer.limit()) {
+                int end = lineEnd(buffer, position, offset);
+                int rowEnd = end > position && buffer.get(end - 1) == '\r' ? end - 1 : end;
+                if (rowEnd > position) {
+                    parseCsvRow(buffer, position, rowEnd, offset, batch);
+                }
+                position = end + 1;
+            }
+        }
+
+        private void parseCsvRow(ByteBuffer buffer, int position, int end, long offset, Batch batch) {
+            int[] fields = batch.fields;
+            int count = 0;
+            fields[count++] = position;
+            for (int i = position; i < end; i++) {
+                if (buffer.get(i) == ',') {
+                    if (count == fields.length) {
+                        throw malformed(offset + position);
+                    }
+                    fields[count++] = i + 1;
+                }
+            }
+            if (count != fields.length) {
+                throw malformed(offset + position);
+            }
+            Customer customer;
+            Account.AccountType type;
+            long openingBalance;
+            try {
+                long customerRef = parseLong(buffer, fields[0], fields[1] - 1);
+                customer = customers.get(customerRef);
+                if (customer == null) {
+                    customer = customers.computeIfAbsent(customerRef, ref -> new Customer(
+                            string(buffer, fields[1], fields[2] - 1, batch.bytes),
+                            string(buffer, fields[2], fields[3] - 1, batch.bytes),
+                            fields[4] - 1 == fields[3] ? null : parseDate(buffer, fields[3], fields[4] - 1)));
+                }
+                type = accountType(buffer, fields[4], fields[5] - 1);
+                openingBalance = parseAmount(buffer, fields[5], end);
+            } catch (IllegalArgumentException | DateTimeException | ArithmeticException e) {
+                throw malformed(offset + position);
+            }
+            batch.add(customer, type, openingBalance);
+        }
+
+        private void parseBinary(ByteBuffer buffer, long offset, Batch batch) {
+            while (buffer.hasRemaining()) {
+                int position = buffer.position();
+                Customer customer;
+                int type;
+                long openingBalance;
+                try {
+                    long customerRef = buffer.getLong();
+                    int firstLength = buffer.getShort();
+                    int firstPosition = buffer.position();
+                    buffer.position(firstPosition + firstLength);
+                    int lastLength = buffer.getShort();
+                    int lastPosition = buffer.position();
+                    buffer.position(lastPosition + lastLength);
+                    long dob = buffer.getLong();
+                    type = buffer.get();
+                    openingBalance = buffer.getLong();
+                    if (type < 0 || type >= ACCOUNT_TYPES.length || openingBalance < 0) {
+                        throw malformed(offset + position);
+                    }
+                    customer = customers.get(customerRef);
+                    if (customer == null) {
+                        customer = customers.computeIfAbsent(customerRef, ref -> new Customer(
+                                string(buffer, firstPosition, firstPosition + firstLength, batch.bytes),
+                                string(buffer, lastPosition, lastPosition + lastLength, batch.bytes),
+                                dob == NO_DATE ? null : LocalDate.ofEpochDay(dob)));
+                    }
+                } catch (RuntimeException e) { // underflow, negative length, invalid date
+                    throw malformed(offset + position);
+                }
+                batch.add(customer, ACCOUNT_TYPES[type], openingBalance);
+            }
+        }
+
+        /**
+         * @return index of the line break ending the line starting at {@code position}, or the end of the buffer
+         */
+        private int lineEnd(ByteBuffer buffer, int position, long offset) {
+            int limit = Math.min(buffer.limit(), position + MAX_ROW_SIZE);
+            for (int i = position; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    return i;
+                }
+            }
+            if (limit == buffer.limit()) {
+                return limit;
+            }
+            throw malformed(offset + position);
+        }
+
+        private IllegalArgumentException malformed(long offset) {
+            return new IllegalArgumentException("Malformed row at offset " + offset);
+        }
+
+        /**
+         * A batch of accounts to be created, reused by a worker
+         */
+        private final class Batch {
+
+            final int[] fields = new int[6];
+
+            final byte[] bytes = new byte[MAX_ROW_SIZE];
+
+            private final Customer[] customers = new Customer[BATCH_SIZE];
+
+            private final Account.AccountType[] types = new Account.AccountType[BATCH_SIZE];
+
+            private final long[] openingBalances = new long[BATCH_SIZE];
+
+            private int count;
+
+            void add(Customer customer, Account.AccountType type, long openingBalance) {
+                customers[count] = customer;
+                types[count] = type;
+                openingBalances[count] = openingBalance;
+                if (++count == BATCH_SIZE) {
+                    flush();
+                }
+            }
+
+            void flush() {
+                if (count == 0) {
+                    return;
+                }
+                bankDataSource.createAccounts(customers, types, openingBalances, count);
+                long imported = accounts.addAndGet(count);
+                count = 0;
+                if (listener != null) {
+                    listener.accept(new Progress(imported, bytesRead.get(), size, System.nanoTime() - start));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param bytes scratch array of at least {@code to - from} bytes
+     */
+    private static String string(ByteBuffer buffer, int from, int to, byte[] bytes) {
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = buffer.get(i);
+        }
+        return new String(bytes, 0, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static long parseLong(ByteBuffer buffer, int from, int to) {
+        if (from == to || to - from > 18) {
+            throw new IllegalArgumentException();
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + digit(buffer.get(i));
+        }
+        return value;
+    }
+
+    /**
+     * @return amount with at most 2 decimals in minor units
+     * @throws ArithmeticException if the amount overflows a {@code long} number of minor units
+     */
+    private static long parseAmount(ByteBuffer buffer, int from, int to) {
+        int point = to;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '.') {
+                point = i;
+                break;
+            }
+        }
+        long minorUnits = Math.multiplyExact(parseLong(buffer, from, point), 100L);
+        int decimals = point == to ? 0 : to - point - 1;
+        if (decimals > 2 || (point < to && decimals == 0)) {
+            throw new IllegalArgumentException();
+        }
+        if (decimals > 0) {
+            minorUnits = Math.addExact(minorUnits, digit(buffer.get(point + 1)) * 10);
+        }
+        if (decimals > 1) {
+            minorUnits = Math.addExact(minorUnits, digit(buffer.get(point + 2)));
+        }
+        return minorUnits;
+    }
+
+    /**
+     * @return {@code yyyy-MM-dd} date
+     */
+    private static LocalDate parseDate(ByteBuffer buffer, int from, int to) {
+        if (to - from != 10 || buffer.get(from + 4) != '-' || buffer.get(from + 7) != '-') {
+            throw new IllegalArgumentException();
+        }
+        return LocalDate.of((int) parseLong(buffer, from, from + 4), (int) parseLong(buffer, from + 5, from + 7),
+                (int) parseLong(buffer, from + 8, to));
+    }
+
+    private static Account.AccountType accountType(ByteBuffer buffer, int from, int to) {
+        for (Account.AccountType type : ACCOUNT_TYPES) {
+            String name = type.name();
+            if (name.length() == to - from) {
+                int i = 0;
+                while (i < name.length() && buffer.get(from + i) == name.charAt(i)) {
+                    i++;
+                }
+                if (i == name.length()) {
+                    return type;
+                }
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    private static int digit(byte b) {
+        if (b < '0' || b > '9') {
+            throw new IllegalArgumentException();
+        }
+        return b - '0';
+    }
+}
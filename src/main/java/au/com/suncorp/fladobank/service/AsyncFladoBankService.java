@@ -0,0 +1,79 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
+import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
+import au.com.suncorp.fladobank.service.model.response.AccountResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionPageResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking version of the {@link FladoBankService} facade. <br>
+ * The operations return immediately, the returned future is completed with the result of the operation or
+ * completed exceptionally with the exception {@link FladoBankService} would throw
+ * (e.g. {@link AccountNotFoundException}, {@link InsufficientFundsException}).
+ * Invalid arguments are still rejected with an {@link IllegalArgumentException} thrown by the call.
+ */
+public interface AsyncFladoBankService {
+
+    /**
+     * @see FladoBankService#openAccount
+     */
+    CompletableFuture<Long> openAccount(OpenAccountRequest openAccountRequest);
+
+    /**
+     * @see FladoBankService#getAccount
+     */
+    CompletableFuture<AccountResponse> getAccount(Long accountNumber);
+
+    /**
+     * @see FladoBankService#findAccountsByCustomer
+     */
+    CompletableFuture<List<AccountResponse>> findAccountsByCustomer(Long customerId);
+
+    /**
+     * @see FladoBankService#deposit
+     */
+    CompletableFuture<Long> deposit(Long accountNumber, BigDecimal amount);
+
+    /**
+     * @see FladoBankService#withdraw
+     */
+    CompletableFuture<Long> withdraw(Long accountNumber, BigDecimal amount);
+
+    /**
+     * @see FladoBankService#transfer
+     */
+    CompletableFuture<Long> transfer(Long fromAccount, Long toAccount, BigDecimal amount);
+
+    /**
+     * @see FladoBankService#transferBatch
+     */
+    CompletableFuture<List<TransferResult>> transferBatch(List<TransferInstruction> instructions);
+
+    /**
+     * @see FladoBankService#getTransactions(Long)
+     */
+    CompletableFuture<List<TransactionResponse>> getTransactions(Long accountNumber);
+
+    /**
+     * @see FladoBankService#getTransactions(Long, int, int)
+     */
+    CompletableFuture<TransactionPageResponse> getTransactions(Long accountNumber, int pageNumber, int pageSize);
+
+    /**
+     * @see FladoBankService#getTransactions(Long, String, int)
+     */
+    CompletableFuture<TransactionPageResponse> getTransactions(Long accountNumber, String cursor, int pageSize);
+
+    /**
+     * @see FladoBankService#getTransactions(Long, LocalDateTime, LocalDateTime, int)
+     */
+    CompletableFuture<List<TransactionResponse>> getTransactions(Long accountNumber, LocalDateTime from, LocalDateTime to, int limit);
+}
@@ -0,0 +1,252 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
+import au.com.suncorp.fladobank.service.model.response.AccountResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionPageResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link AsyncFladoBankService} running the operations of a {@link FladoBankService} on an executor. <br>
+ * Deposits, withdrawals and transfers of an account are limited to {@code accountParallelism} operations running
+ * at the same time, the other operations of the account wait in a queue without holding a thread,
+ * so a busy account does not tie up the executor threads waiting on its lock. A transfer holds a permit of both
+ * accounts, taken in account number order. <br>
+ * Reads and batch transfers are not limited.
+ */
+public class AsyncFladoBankServiceImpl implements AsyncFladoBankService, Closeable {
+
+    /**
+     * Account parallelism value disabling the limit
+     */
+    public static final int UNLIMITED = 0;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final FladoBankService fladoBankService;
+
+    private final ExecutorService executor;
+
+    private final int accountParallelism;
+
+    /**
+     * Permits of the accounts with operations in progress, an idle account has no entry
+     */
+    private final ConcurrentHashMap<Long, Gate> gates = new ConcurrentHashMap<>();
+
+    /**
+     * @param fladoBankService blocking services
+     * @param executor executor running the operations, shut down on {@link #close()}
+     * @param accountParallelism maximum number of operations of an account running at the same time or {@link #UNLIMITED}
+     */
+    public AsyncFladoBankServiceImpl(FladoBankService fladoBankService, ExecutorService executor, int accountParallelism) {
+        if (Objects.isNull(fladoBankService) || Objects.isNull(executor) || accountParallelism < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.fladoBankService = fladoBankService;
+        this.executor = executor;
+        this.accountParallelism = accountParallelism;
+    }
+
+    /**
+     * Executor starting a virtual thread per operation when the runtime supports it (Java 21+),
+     * a pool of {@code threads} daemon threads otherwise
+     *
+     * @param threads pool size when virtual threads are not available
+     */
+    public static ExecutorService newExecutor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // no virtual threads before Java 21
+        }
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "fladobank-async-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> openAccount(OpenAccountRequest openAccountRequest) {
+        return supply(() -> fladoBankService.openAccount(openAccountRequest));
+    }
+
+    @Override
+    public CompletableFuture<AccountResponse> getAccount(Long accountNumber) {
+        return supply(() -> fladoBankService.getAccount(accountNumber));
+    }
+
+    @Override
+    public CompletableFuture<List<AccountResponse>> findAccountsByCustomer(Long customerId) {
+        return supply(() -> fladoBankService.findAccountsByCustomer(customerId));
+    }
+
+    @Override
+    public CompletableFuture<Long> deposit(Long accountNumber, BigDecimal amount) {
+        if (Objects.isNull(accountNumber) || Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        return supply(accountNumber, accountNumber, () -> fladoBankService.deposit(accountNumber, amount));
+    }
+
+    @Override
+    public CompletableFuture<Long> withdraw(Long accountNumber, BigDecimal amount) {
+        if (Objects.isNull(accountNumber) || Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        return supply(accountNumber, accountNumber, () -> fladoBankService.withdraw(accountNumber, amount));
+    }
+
+    @Override
+    public CompletableFuture<Long> transfer(Long fromAccount, Long toAccount, BigDecimal amount) {
+        if (Objects.isNull(fromAccount) || Objects.isNull(toAccount) || Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        return supply(fromAccount, toAccount, () -> fladoBankService.transfer(fromAccount, toAccount, amount));
+    }
+
+    @Override
+    public CompletableFuture<List<TransferResult>> transferBatch(List<TransferInstruction> instructions) {
+        if (Objects.isNull(instructions)) {
+            throw new IllegalArgumentException();
+        }
+        return supply(() -> fladoBankService.transferBatch(instructions));
+    }
+
+    @Override
+    public CompletableFuture<List<TransactionResponse>> getTransactions(Long accountNumber) {
+        return supply(() -> fladoBankService.getTransactions(accountNumber));
+    }
+
+    @Override
+    public CompletableFuture<TransactionPageResponse> getTransactions(Long accountNumber, int pageNumber, int pageSize) {
+        return supply(() -> fladoBankService.getTransactions(accountNumber, pageNumber, pageSize));
+    }
+
+    @Override
+    public CompletableFuture<TransactionPageResponse> getTransactions(Long accountNumber, String cursor, int pageSize) {
+        return supply(() -> fladoBankService.getTransactions(accountNumber, cursor, pageSize));
+    }
+
+    @Override
+    public CompletableFuture<List<TransactionResponse>> getTransactions(Long accountNumber, LocalDateTime from, LocalDateTime to, int limit) {
+        return supply(() -> fladoBankService.getTransactions(accountNumber, from, to, limit));
+    }
+
+    /**
+     * Stop accepting operations and wait for the operations in progress
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run an operation once it holds a permit of both accounts
+     */
+    private <T> CompletableFuture<T> supply(Long firstAccount, Long secondAccount, Callable<T> operation) {
+        if (accountParallelism == UNLIMITED) {
+            return supply(operation);
+        }
+        if (firstAccount.compareTo(secondAccount) > 0) {
+            return supply(secondAccount, firstAccount, operation);
+        }
+        CompletableFuture<Void> permits = firstAccount.equals(secondAccount)
+                ? acquire(firstAccount)
+                : acquire(firstAccount).thenCompose(permit -> acquire(secondAccount));
+        return permits.thenCompose(permit -> supply(operation)).whenComplete((result, failure) -> {
+            release(firstAccount);
+            if (!firstAccount.equals(secondAccount)) {
+                release(secondAccount);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> supply(Callable<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(operation.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * @return future completed once the operation can run on the account
+     */
+    private CompletableFuture<Void> acquire(Long accountNumber) {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        gates.compute(accountNumber, (key, gate) -> {
+            Gate acquired = gate == null ? new Gate() : gate;
+            if (acquired.running < accountParallelism) {
+                acquired.running++;
+                permit.complete(null);
+            } else {
+                acquired.waiters.add(permit);
+            }
+            return acquired;
+        });
+        return permit;
+    }
+
+    /**
+     * Hand the permit to the next waiting operation of the account, if any
+     */
+    private void release(Long accountNumber) {
+        List<CompletableFuture<Void>> next = new ArrayList<>(1);
+        gates.computeIfPresent(accountNumber, (key, gate) -> {
+            if (gate.waiters.isEmpty()) {
+                return --gate.running == 0 ? null : gate;
+            }
+            next.add(gate.waiters.poll());
+            return gate;
+        });
+        // completed outside of the map lock, it may run the next operation
+        next.forEach(permit -> permit.complete(null));
+    }
+
+    /**
+     * Operations of an account, only accessed under the map lock of the account
+     */
+    private static final class Gate {
+
+        int running;
+        final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    }
+}
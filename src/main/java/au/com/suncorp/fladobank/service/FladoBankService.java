@@ -1,12 +1,17 @@
 package au.com.suncorp.fladobank.service;
 
 import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.CustomerNotFoundException;
 import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
 import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
 import au.com.suncorp.fladobank.service.model.response.AccountResponse;
 import au.com.suncorp.fladobank.service.model.response.AccountTransferResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionPageResponse;
 import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -16,7 +21,18 @@ import java.util.List;
 public interface FladoBankService {
 
     /**
-     * Open a new bank account
+     * Default number of transactions in a page
+     */
+    int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Maximum number of transactions in a page
+     */
+    int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Open a new bank account. A customer with the same details as an existing one (names compared ignoring case)
+     * gets the new account as an existing customer.
      *
      * @param openAccountRequest account details
      * @return account number
@@ -32,6 +48,15 @@ public interface FladoBankService {
      */
     AccountResponse getAccount(Long accountNumber) throws AccountNotFoundException;
 
+    /**
+     * Get details of all the bank accounts of a customer
+     *
+     * @param customerId customer id
+     * @return accounts details, in the order the accounts were opened
+     * @throws CustomerNotFoundException if customer is not found
+     */
+    List<AccountResponse> findAccountsByCustomer(Long customerId) throws CustomerNotFoundException;
+
     /**
      * Deposit into a bank account
      *
@@ -63,6 +88,16 @@ public interface FladoBankService {
      */
     Long transfer(Long fromAccount, Long toAccount, BigDecimal amount) throws AccountNotFoundException, InsufficientFundsException;
 
+    /**
+     * Transfer money between internal bank accounts in a batch. <br>
+     * The instructions are applied in order, a rejected instruction does not stop the batch. <br>
+     * A null instruction, or one without an account, is rejected as {@link TransferResult.Status#INVALID_INSTRUCTION}.
+     *
+     * @param instructions transfers to be applied
+     * @return the result of each instruction, in the same order
+     */
+    List<TransferResult> transferBatch(List<TransferInstruction> instructions);
+
     /**
      * List of a bank account transactions
      *
@@ -71,4 +106,39 @@ public interface FladoBankService {
      * @throws AccountNotFoundException if account is not found
      */
     List<TransactionResponse> getTransactions(Long accountNumber) throws AccountNotFoundException;
+
+    /**
+     * A page of a bank account transactions, oldest first
+     *
+     * @param accountNumber the bank account details
+     * @param pageNumber page number starting from 1
+     * @param pageSize number of transactions in a page, at most {@link #MAX_PAGE_SIZE}
+     * @return requested page and total number of transactions for {accountNumber}
+     * @throws AccountNotFoundException if account is not found
+     */
+    TransactionPageResponse getTransactions(Long accountNumber, int pageNumber, int pageSize) throws AccountNotFoundException;
+
+    /**
+     * A page of a bank account transactions, newest first
+     *
+     * @param accountNumber the bank account details
+     * @param cursor cursor returned with the previous page or null for the newest transactions
+     * @param pageSize number of transactions in a page, at most {@link #MAX_PAGE_SIZE}
+     * @return requested page, total number of transactions for {accountNumber} and the cursor of the next page
+     * @throws AccountNotFoundException if account is not found
+     */
+    TransactionPageResponse getTransactions(Long accountNumber, String cursor, int pageSize) throws AccountNotFoundException;
+
+    /**
+     * The transactions of a bank account in a time range, in ledger order (oldest first, but for the transactions
+     * appended after a later dated one)
+     *
+     * @param accountNumber bank account number
+     * @param from start of the range in the system default time zone, inclusive
+     * @param to end of the range in the system default time zone, exclusive
+     * @param limit maximum number of transactions, at most {@link #MAX_PAGE_SIZE}
+     * @return the first {limit} transactions for {accountNumber} dated in the range
+     * @throws AccountNotFoundException if account is not found
+     */
+    List<TransactionResponse> getTransactions(Long accountNumber, LocalDateTime from, LocalDateTime to, int limit) throws AccountNotFoundException;
 }
@@ -3,19 +3,30 @@ package au.com.suncorp.fladobank.service;
 import au.com.suncorp.fladobank.data.BankDataSource;
 import au.com.suncorp.fladobank.data.model.Account;
 import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.Ledger;
+import au.com.suncorp.fladobank.data.model.Money;
+import au.com.suncorp.fladobank.data.model.Timestamps;
 import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.CustomerNotFoundException;
 import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
 import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
 import au.com.suncorp.fladobank.service.model.response.AccountResponse;
 import au.com.suncorp.fladobank.service.model.response.AccountTransferResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionPageResponse;
 import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * FladoBank basic services implementation.<br>
@@ -30,8 +41,12 @@ import java.util.stream.Collectors;
 @Service
 public class FladoBankServiceImpl implements FladoBankService {
 
+    private final BankDataSource bankDataSource;
+
     @Autowired
-    private BankDataSource bankDataSource;
+    public FladoBankServiceImpl(BankDataSource bankDataSource) {
+        this.bankDataSource = bankDataSource;
+    }
 
     /**
      * Open a new account for an existing customer
@@ -50,7 +65,7 @@ public class FladoBankServiceImpl implements FladoBankService {
         if (Objects.isNull(openAccountRequest)) {
             throw new IllegalArgumentException();
         }
-        Customer customer = new Customer(openAccountRequest.getFirstName(), openAccountRequest.getLastName(), openAccountRequest.getDob());
+        Customer customer = bankDataSource.findOrCreateCustomer(openAccountRequest.getFirstName(), openAccountRequest.getLastName(), openAccountRequest.getDob());
         return
                 openAccount(customer, Account.AccountType.valueOf(openAccountRequest.getAccountType()));
     }
@@ -60,7 +75,7 @@ public class FladoBankServiceImpl implements FladoBankService {
         if (Objects.isNull(accountNumber)) {
             throw new IllegalArgumentException();
         }
-        Account account = bankDataSource.getAccount(accountNumber);
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
         if (Objects.isNull(account)) {
             throw new AccountNotFoundException();
         }
@@ -68,17 +83,33 @@ public class FladoBankServiceImpl implements FladoBankService {
                 new AccountResponse(account);
     }
 
+    @Override
+    public List<AccountResponse> findAccountsByCustomer(Long customerId) throws CustomerNotFoundException {
+        if (Objects.isNull(customerId)) {
+            throw new IllegalArgumentException();
+        }
+        List<Account> accounts = bankDataSource.findAccountsByCustomer(customerId.longValue());
+        if (Objects.isNull(accounts)) {
+            throw new CustomerNotFoundException();
+        }
+        List<AccountResponse> responses = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            responses.add(new AccountResponse(account));
+        }
+        return responses;
+    }
+
     @Override
     public Long deposit(Long accountNumber, BigDecimal amount) throws AccountNotFoundException {
         if (Objects.isNull(accountNumber) || Objects.isNull(amount)) {
             throw new IllegalArgumentException();
         }
-        Account account = bankDataSource.getAccount(accountNumber);
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
         if (Objects.isNull(account)) {
             throw new AccountNotFoundException();
         }
         return
-                account.deposit(amount, Optional.empty());
+                account.deposit(Money.toMinorUnits(amount), Optional.empty());
     }
 
     @Override
@@ -86,15 +117,16 @@ public class FladoBankServiceImpl implements FladoBankService {
         if (Objects.isNull(accountNumber) || Objects.isNull(amount)) {
             throw new IllegalArgumentException();
         }
-        Account account = bankDataSource.getAccount(accountNumber);
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
         if (Objects.isNull(account)) {
             throw new AccountNotFoundException();
         }
-        if (account.getBalance().compareTo(amount) < 0) {
+        long minorUnits = Money.toMinorUnits(amount);
+        if (account.getBalanceMinorUnits() < minorUnits) {
             throw new InsufficientFundsException();
         }
         return
-                account.widthdraw(amount, Optional.empty());
+                account.widthdraw(minorUnits, Optional.empty());
     }
 
     @Override
@@ -102,16 +134,75 @@ public class FladoBankServiceImpl implements FladoBankService {
         if (Objects.isNull(fromAccountId) || Objects.isNull(toAccountId) || Objects.isNull(amount)) {
             throw new IllegalArgumentException();
         }
-        Account fromAccount = bankDataSource.getAccount(fromAccountId);
-        Account toAccount = bankDataSource.getAccount(toAccountId);
+        Account fromAccount = bankDataSource.getAccount(fromAccountId.longValue());
+        Account toAccount = bankDataSource.getAccount(toAccountId.longValue());
         if (Objects.isNull(fromAccount) || Objects.isNull(toAccount)) {
             throw new AccountNotFoundException();
         }
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
+        long minorUnits = Money.toMinorUnits(amount);
+        if (fromAccount.getBalanceMinorUnits() < minorUnits) {
             throw new InsufficientFundsException();
         }
         return
-                fromAccount.transfer(amount, toAccount);
+                fromAccount.transfer(minorUnits, toAccount);
+    }
+
+    @Override
+    public List<TransferResult> transferBatch(List<TransferInstruction> instructions) {
+        if (Objects.isNull(instructions)) {
+            throw new IllegalArgumentException();
+        }
+        TransferResult[] results = new TransferResult[instructions.size()];
+        Map<Long, Account> accounts = new HashMap<>();
+        int[] indexes = new int[results.length];
+        Account[] sources = new Account[results.length];
+        Account[] destinations = new Account[results.length];
+        long[] amounts = new long[results.length];
+        int count = 0;
+        for (int i = 0; i < results.length; i++) {
+            TransferInstruction instruction = instructions.get(i);
+            if (!isValid(instruction)) {
+                results[i] = new TransferResult(TransferResult.Status.INVALID_INSTRUCTION, null);
+                continue;
+            }
+            Account fromAccount = accounts.computeIfAbsent(instruction.getFromAccount(), bankDataSource::getAccount);
+            Account toAccount = accounts.computeIfAbsent(instruction.getToAccount(), bankDataSource::getAccount);
+            if (Objects.isNull(fromAccount) || Objects.isNull(toAccount)) {
+                results[i] = new TransferResult(TransferResult.Status.ACCOUNT_NOT_FOUND, null);
+                continue;
+            }
+            long minorUnits;
+            try {
+                minorUnits = Money.toMinorUnits(instruction.getAmount());
+            } catch (IllegalArgumentException e) {
+                minorUnits = -1L;
+            }
+            if (minorUnits < 0) {
+                results[i] = new TransferResult(TransferResult.Status.INVALID_AMOUNT, null);
+                continue;
+            }
+            indexes[count] = i;
+            sources[count] = fromAccount;
+            destinations[count] = toAccount;
+            amounts[count] = minorUnits;
+            count++;
+        }
+        long[] txnIds = new long[count];
+        Account.TransferStatus[] statuses = Account.transferBatch(Arrays.copyOf(sources, count), Arrays.copyOf(destinations, count),
+                Arrays.copyOf(amounts, count), txnIds);
+        for (int j = 0; j < count; j++) {
+            results[indexes[j]] = statuses[j] == Account.TransferStatus.APPLIED
+                    ? new TransferResult(TransferResult.Status.SUCCESS, txnIds[j])
+                    : statuses[j] == Account.TransferStatus.INSUFFICIENT_FUNDS
+                    ? new TransferResult(TransferResult.Status.INSUFFICIENT_FUNDS, null)
+                    : new TransferResult(TransferResult.Status.INVALID_AMOUNT, null);
+        }
+        return
+                Arrays.asList(results);
+    }
+
+    static boolean isValid(TransferInstruction instruction) {
+        return Objects.nonNull(instruction) && Objects.nonNull(instruction.getFromAccount()) && Objects.nonNull(instruction.getToAccount());
     }
 
     @Override
@@ -119,13 +210,78 @@ public class FladoBankServiceImpl implements FladoBankService {
         if (Objects.isNull(accountNumber)) {
             throw new IllegalArgumentException();
         }
-        Account account = bankDataSource.getAccount(accountNumber);
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
+        if (Objects.isNull(account)) {
+            throw new AccountNotFoundException();
+        }
+        return
+                account.getLedger().asList(TransactionResponse::new);
+    }
+
+    @Override
+    public TransactionPageResponse getTransactions(Long accountNumber, int pageNumber, int pageSize) throws AccountNotFoundException {
+        if (Objects.isNull(accountNumber) || pageNumber < 1 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException();
+        }
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
+        if (Objects.isNull(account)) {
+            throw new AccountNotFoundException();
+        }
+        Ledger ledger = account.getLedger();
+        int size = ledger.size();
+        long offset = (long) (pageNumber - 1) * pageSize;
+        List<TransactionResponse> transactions = new ArrayList<>((int) Math.max(0, Math.min(pageSize, size - offset)));
+        for (long i = offset; i < size && i < offset + pageSize; i++) {
+            transactions.add(new TransactionResponse(ledger, (int) i));
+        }
+        return
+                new TransactionPageResponse(accountNumber, transactions, pageNumber, pageSize, size, null);
+    }
+
+    @Override
+    public TransactionPageResponse getTransactions(Long accountNumber, String cursor, int pageSize) throws AccountNotFoundException {
+        if (Objects.isNull(accountNumber) || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException();
+        }
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
         if (Objects.isNull(account)) {
             throw new AccountNotFoundException();
         }
+        Ledger ledger = account.getLedger();
+        int size = ledger.size();
+        int end = Objects.isNull(cursor) ? size : Math.min(TransactionCursor.decode(accountNumber, cursor), size);
+        int start = Math.max(0, end - pageSize);
+        List<TransactionResponse> transactions = new ArrayList<>(end - start);
+        for (int i = end - 1; i >= start; i--) {
+            transactions.add(new TransactionResponse(ledger, i));
+        }
         return
-                account.getTransactions().stream()
-                        .map(TransactionResponse::new)
-                        .collect(Collectors.toList());
+                new TransactionPageResponse(accountNumber, transactions, 0, pageSize, size,
+                        start > 0 ? TransactionCursor.encode(accountNumber, start) : null);
+    }
+
+    @Override
+    public List<TransactionResponse> getTransactions(Long accountNumber, LocalDateTime from, LocalDateTime to, int limit) throws AccountNotFoundException {
+        if (Objects.isNull(accountNumber) || Objects.isNull(from) || Objects.isNull(to) || from.isAfter(to)
+                || limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException();
+        }
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
+        if (Objects.isNull(account)) {
+            throw new AccountNotFoundException();
+        }
+        Ledger ledger = account.getLedger();
+        int size = ledger.size();
+        long start = Timestamps.toEpochMillis(from);
+        long end = Timestamps.toEpochMillis(to);
+        List<TransactionResponse> transactions = new ArrayList<>();
+        // the bounds may include a few transactions appended out of date order, outside the range
+        for (int i = ledger.lowerBound(start, size), last = ledger.upperBound(end, size); i < last && transactions.size() < limit; i++) {
+            long timestamp = ledger.getTimestamp(i);
+            if (timestamp >= start && timestamp < end) {
+                transactions.add(new TransactionResponse(ledger, i));
+            }
+        }
+        return transactions;
     }
 }
@@ -0,0 +1,224 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.CustomerNotFoundException;
+import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
+import au.com.suncorp.fladobank.service.metrics.FladoBankMetrics;
+import au.com.suncorp.fladobank.service.metrics.FladoBankMetrics.Operation;
+import au.com.suncorp.fladobank.service.metrics.FladoBankMetrics.Outcome;
+import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
+import au.com.suncorp.fladobank.service.model.response.AccountResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionPageResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * FladoBank services recording the latency and the outcome of every operation in {@link FladoBankMetrics}. <br>
+ * Recording does not allocate, so the metrics can stay enabled in production.
+ */
+public class InstrumentedFladoBankService implements FladoBankService, Closeable {
+
+    private final FladoBankService fladoBankService;
+
+    private final FladoBankMetrics metrics;
+
+    public InstrumentedFladoBankService(FladoBankService fladoBankService, FladoBankMetrics metrics) {
+        if (Objects.isNull(fladoBankService) || Objects.isNull(metrics)) {
+            throw new IllegalArgumentException();
+        }
+        this.fladoBankService = fladoBankService;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Long openAccount(OpenAccountRequest openAccountRequest) {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.openAccount(openAccountRequest);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.OPEN_ACCOUNT, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public AccountResponse getAccount(Long accountNumber) throws AccountNotFoundException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.getAccount(accountNumber);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.GET_ACCOUNT, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public List<AccountResponse> findAccountsByCustomer(Long customerId) throws CustomerNotFoundException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.findAccountsByCustomer(customerId);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_ACCOUNTS_BY_CUSTOMER, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public Long deposit(Long accountNumber, BigDecimal amount) throws AccountNotFoundException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.deposit(accountNumber, amount);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.DEPOSIT, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public Long withdraw(Long accountNumber, BigDecimal amount) throws AccountNotFoundException, InsufficientFundsException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.withdraw(accountNumber, amount);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.WITHDRAW, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public Long transfer(Long fromAccount, Long toAccount, BigDecimal amount) throws AccountNotFoundException, InsufficientFundsException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.transfer(fromAccount, toAccount, amount);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.TRANSFER, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public List<TransferResult> transferBatch(List<TransferInstruction> instructions) {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.transferBatch(instructions);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.TRANSFER_BATCH, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public List<TransactionResponse> getTransactions(Long accountNumber) throws AccountNotFoundException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.getTransactions(accountNumber);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.GET_TRANSACTIONS, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public TransactionPageResponse getTransactions(Long accountNumber, int pageNumber, int pageSize) throws AccountNotFoundException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.getTransactions(accountNumber, pageNumber, pageSize);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.GET_TRANSACTIONS, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public TransactionPageResponse getTransactions(Long accountNumber, String cursor, int pageSize) throws AccountNotFoundException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.getTransactions(accountNumber, cursor, pageSize);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.GET_TRANSACTIONS, outcome(failure), start);
+        }
+    }
+
+    @Override
+    public List<TransactionResponse> getTransactions(Long accountNumber, LocalDateTime from, LocalDateTime to, int limit) throws AccountNotFoundException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return fladoBankService.getTransactions(accountNumber, from, to, limit);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.record(Operation.GET_TRANSACTIONS, outcome(failure), start);
+        }
+    }
+
+    public FladoBankMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Close the instrumented services if they need closing
+     */
+    @Override
+    public void close() throws IOException {
+        if (fladoBankService instanceof Closeable) {
+            ((Closeable) fladoBankService).close();
+        }
+    }
+
+    private static Outcome outcome(Throwable failure) {
+        if (failure == null) {
+            return Outcome.OK;
+        }
+        if (failure instanceof AccountNotFoundException || failure instanceof CustomerNotFoundException) {
+            return Outcome.NOT_FOUND;
+        }
+        if (failure instanceof InsufficientFundsException) {
+            return Outcome.INSUFFICIENT_FUNDS;
+        }
+        if (failure instanceof IllegalArgumentException) {
+            return Outcome.INVALID;
+        }
+        return Outcome.FAILED;
+    }
+}
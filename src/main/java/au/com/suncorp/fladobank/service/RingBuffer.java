@@ -0,0 +1,92 @@
+package au.com.suncorp.fladobank.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue with many producers and a single consumer. <br>
+ * Every slot has a sequence number telling whether it can be written (sequence == position)
+ * or read (sequence == position + 1), producers claim a position with a compare-and-set on the tail.
+ */
+final class RingBuffer<E> {
+
+    private final Object[] elements;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Only accessed by the consumer
+     */
+    private long head;
+
+    /**
+     * @param capacity a power of 2
+     */
+    RingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException();
+        }
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            long available = sequences.get(index(position)) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        elements[index(position)] = element;
+        sequences.set(index(position), position + 1);
+        return true;
+    }
+
+    /**
+     * Must only be called by the consumer
+     *
+     * @return the oldest element or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = index(head);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.lazySet(index, head + elements.length);
+        head++;
+        return element;
+    }
+
+    /**
+     * Must only be called by the consumer
+     */
+    boolean isEmpty() {
+        return sequences.get(index(head)) != head + 1;
+    }
+
+    private int index(long position) {
+        return (int) position & mask;
+    }
+}
@@ -0,0 +1,144 @@
+package au.com.suncorp.fladobank.service;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread running the tasks of a shard one at a time, in the order they were queued. <br>
+ * Tasks are queued in a bounded {@link RingBuffer}: an external thread waits while the queue is full,
+ * a shard sending a task to another shard never waits, the task is kept in its outbox until it can be delivered
+ * (two shards sending to each other would deadlock otherwise).
+ */
+final class Shard {
+
+    private static final Logger LOGGER = Logger.getLogger(Shard.class.getName());
+
+    private static final ThreadLocal<Shard> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Number of empty polls before parking the thread
+     */
+    private static final int SPINS = 64;
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final long OUTBOX_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final RingBuffer<Runnable> queue;
+
+    /**
+     * Tasks for other shards whose queue was full, only accessed by this shard thread
+     */
+    private final ArrayDeque<Delivery> outbox = new ArrayDeque<>();
+
+    private final Thread thread;
+
+    private volatile boolean parked;
+
+    private volatile boolean closed;
+
+    Shard(int index, int queueCapacity) {
+        this.queue = new RingBuffer<>(queueCapacity);
+        this.thread = new Thread(this::run, "fladobank-shard-" + index);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Run a task on this shard. The task runs immediately if called from this shard.
+     *
+     * @throws RejectedExecutionException if the shard is closed
+     */
+    void execute(Runnable task) {
+        if (closed) {
+            throw new RejectedExecutionException("Shard is closed");
+        }
+        Shard current = CURRENT.get();
+        if (current == this) {
+            task.run();
+        } else if (current != null) {
+            if (!offer(task)) {
+                current.outbox.add(new Delivery(this, task));
+            }
+        } else {
+            while (!offer(task)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Stop the shard once the tasks already queued are done
+     *
+     * @param timeoutNanos maximum wait for the queued tasks
+     * @return false if the shard thread is still running after the timeout
+     */
+    boolean close(long timeoutNanos) throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(thread);
+        thread.join(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+        return !thread.isAlive();
+    }
+
+    private boolean offer(Runnable task) {
+        if (!queue.offer(task)) {
+            return false;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    private void run() {
+        CURRENT.set(this);
+        int idle = 0;
+        while (!closed || !queue.isEmpty() || !outbox.isEmpty()) {
+            if (!outbox.isEmpty()) {
+                deliverOutbox();
+            }
+            Runnable task = queue.poll();
+            if (task != null) {
+                idle = 0;
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Shard task failed", e);
+                }
+            } else if (++idle < SPINS) {
+                Thread.yield();
+            } else {
+                parked = true;
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, outbox.isEmpty() ? PARK_NANOS : OUTBOX_RETRY_NANOS);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    private void deliverOutbox() {
+        for (Iterator<Delivery> deliveries = outbox.iterator(); deliveries.hasNext(); ) {
+            Delivery delivery = deliveries.next();
+            if (delivery.shard.offer(delivery.task)) {
+                deliveries.remove();
+            }
+        }
+    }
+
+    private static final class Delivery {
+
+        final Shard shard;
+        final Runnable task;
+
+        Delivery(Shard shard, Runnable task) {
+            this.shard = shard;
+            this.task = task;
+        }
+    }
+}
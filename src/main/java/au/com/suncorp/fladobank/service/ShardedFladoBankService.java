@@ -0,0 +1,323 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.data.BankDataSource;
+import au.com.suncorp.fladobank.data.InsufficientFundsAccountException;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Money;
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * FladoBank services executed by shards. <br>
+ * The accounts are partitioned by account number across N shard threads. A shard applies the operations
+ * of its accounts one at a time, so the accounts do not need to be locked (see {@link Account.Engine#SINGLE_WRITER}). <br>
+ * Deposits, withdrawals and transfers are routed to the shard owning the (source) account. A transfer between
+ * accounts of two shards is applied in two steps: the source shard debits the source account, then the destination
+ * shard credits the destination account. If the credit fails, the source shard gives the money back: the source
+ * account records a reversal credit with the destination account as counterparty, the transfer has no other trace on
+ * the destination account. The call returns once both steps are done. <br>
+ * Reads are served by the calling thread.
+ *
+ * <b>Note:</b> the instructions of a batch transfer are applied in order on each shard. A transfer can be rejected
+ * for insufficient funds if it depends on a credit from an earlier instruction that another shard has not applied yet.
+ */
+public class ShardedFladoBankService extends FladoBankServiceImpl implements Closeable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private static final Logger LOGGER = Logger.getLogger(ShardedFladoBankService.class.getName());
+
+    private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final BankDataSource bankDataSource;
+
+    private final Shard[] shards;
+
+    /**
+     * Number of operations not completed yet
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Thread waiting in {@link #close()} for the pending operations
+     */
+    private volatile Thread closer;
+
+    /**
+     * @param bankDataSource datastore, its accounts should use the {@link Account.Engine#SINGLE_WRITER} engine
+     * @param shardCount number of shards
+     * @param queueCapacity capacity of each shard queue, a power of 2
+     */
+    public ShardedFladoBankService(BankDataSource bankDataSource, int shardCount, int queueCapacity) {
+        super(bankDataSource);
+        if (Objects.isNull(bankDataSource) || shardCount < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.bankDataSource = bankDataSource;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+    }
+
+    @Override
+    public Long deposit(Long accountNumber, BigDecimal amount) throws AccountNotFoundException {
+        if (Objects.isNull(accountNumber) || Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        Account account = existingAccount(accountNumber);
+        long minorUnits = Money.toMinorUnits(amount);
+        return join(call(account, () -> account.deposit(minorUnits, Optional.empty())));
+    }
+
+    @Override
+    public Long withdraw(Long accountNumber, BigDecimal amount) throws AccountNotFoundException, InsufficientFundsException {
+        if (Objects.isNull(accountNumber) || Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        Account account = existingAccount(accountNumber);
+        long minorUnits = Money.toMinorUnits(amount);
+        return joinDebit(call(account, () -> account.widthdraw(minorUnits, Optional.empty())));
+    }
+
+    @Override
+    public Long transfer(Long fromAccountId, Long toAccountId, BigDecimal amount) throws AccountNotFoundException, InsufficientFundsException {
+        if (Objects.isNull(fromAccountId) || Objects.isNull(toAccountId) || Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        Account fromAccount = bankDataSource.getAccount(fromAccountId.longValue());
+        Account toAccount = bankDataSource.getAccount(toAccountId.longValue());
+        if (Objects.isNull(fromAccount) || Objects.isNull(toAccount)) {
+            throw new AccountNotFoundException();
+        }
+        return joinDebit(transfer(fromAccount, toAccount, Money.toMinorUnits(amount)));
+    }
+
+    @Override
+    public List<TransferResult> transferBatch(List<TransferInstruction> instructions) {
+        if (Objects.isNull(instructions)) {
+            throw new IllegalArgumentException();
+        }
+        Map<Long, Account> accounts = new HashMap<>();
+        List<CompletableFuture<Long>> transfers = new ArrayList<>(instructions.size());
+        for (TransferInstruction instruction : instructions) {
+            if (!isValid(instruction)) {
+                transfers.add(failed(new InvalidInstruction()));
+                continue;
+            }
+            Account fromAccount = accounts.computeIfAbsent(instruction.getFromAccount(), bankDataSource::getAccount);
+            Account toAccount = accounts.computeIfAbsent(instruction.getToAccount(), bankDataSource::getAccount);
+            CompletableFuture<Long> transfer;
+            if (Objects.isNull(fromAccount) || Objects.isNull(toAccount)) {
+                transfer = new CompletableFuture<>();
+                transfer.completeExceptionally(new AccountNotFoundException());
+            } else {
+                long minorUnits;
+                try {
+                    minorUnits = Money.toMinorUnits(instruction.getAmount());
+                } catch (IllegalArgumentException e) {
+                    minorUnits = -1L;
+                }
+                transfer = minorUnits < 0
+                        ? failed(new IllegalArgumentException())
+                        : transfer(fromAccount, toAccount, minorUnits);
+            }
+            transfers.add(transfer);
+        }
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (CompletableFuture<Long> transfer : transfers) {
+            results.add(result(transfer));
+        }
+        return results;
+    }
+
+    /**
+     * Stop the shards once the operations in progress are done
+     */
+    @Override
+    public void close() {
+        closer = Thread.currentThread();
+        closed = true;
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+        for (long remaining = CLOSE_TIMEOUT_NANOS; pending.get() > 0 && remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        try {
+            for (Shard shard : shards) {
+                if (!shard.close(deadline - System.nanoTime())) {
+                    LOGGER.warning("Shard still running after the close timeout");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    private CompletableFuture<Long> transfer(Account fromAccount, Account toAccount, long amount) {
+        Shard source = shard(fromAccount);
+        Shard destination = shard(toAccount);
+        if (source == destination) {
+            return call(fromAccount, () -> fromAccount.transfer(amount, toAccount));
+        }
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        submit(source, result, () -> {
+            long debitTxnId = fromAccount.widthdraw(amount, Optional.of(toAccount));
+            destination.execute(() -> {
+                try {
+                    toAccount.deposit(amount, Optional.of(fromAccount));
+                    result.complete(debitTxnId);
+                } catch (RuntimeException e) {
+                    source.execute(() -> {
+                        try {
+                            // reversal of the debit, credited back from the destination account
+                            fromAccount.deposit(amount, Optional.of(toAccount));
+                        } finally {
+                            result.completeExceptionally(e);
+                        }
+                    });
+                }
+            });
+        });
+        return result;
+    }
+
+    private CompletableFuture<Long> call(Account account, Supplier<Long> operation) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        submit(shard(account), result, () -> result.complete(operation.get()));
+        return result;
+    }
+
+    /**
+     * Run a task on a shard, the task must complete the result
+     */
+    private void submit(Shard shard, CompletableFuture<Long> result, Runnable task) {
+        if (closed) {
+            throw new RejectedExecutionException("FladoBank service is closed");
+        }
+        pending.incrementAndGet();
+        result.whenComplete((txnId, failure) -> {
+            if (pending.decrementAndGet() == 0 && closed) {
+                LockSupport.unpark(closer);
+            }
+        });
+        try {
+            shard.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Shard shard(Account account) {
+        return shards[(int) Long.remainderUnsigned(account.getId(), shards.length)];
+    }
+
+    private Account existingAccount(Long accountNumber) throws AccountNotFoundException {
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
+        if (Objects.isNull(account)) {
+            throw new AccountNotFoundException();
+        }
+        return account;
+    }
+
+    private static CompletableFuture<Long> failed(Throwable failure) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        result.completeExceptionally(failure);
+        return result;
+    }
+
+    private static TransferResult result(CompletableFuture<Long> transfer) {
+        try {
+            return new TransferResult(TransferResult.Status.SUCCESS, transfer.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof InsufficientFundsAccountException) {
+                return new TransferResult(TransferResult.Status.INSUFFICIENT_FUNDS, null);
+            }
+            if (e.getCause() instanceof AccountNotFoundException) {
+                return new TransferResult(TransferResult.Status.ACCOUNT_NOT_FOUND, null);
+            }
+            if (e.getCause() instanceof InvalidInstruction) {
+                return new TransferResult(TransferResult.Status.INVALID_INSTRUCTION, null);
+            }
+            if (e.getCause() instanceof IllegalArgumentException) {
+                return new TransferResult(TransferResult.Status.INVALID_AMOUNT, null);
+            }
+            throw e;
+        }
+    }
+
+    private static Long joinDebit(CompletableFuture<Long> result) throws InsufficientFundsException {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof InsufficientFundsAccountException) {
+                throw new InsufficientFundsException();
+            }
+            throw unwrap(e);
+        }
+    }
+
+    private static Long join(CompletableFuture<Long> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException) e.getCause();
+        }
+        if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * Failure of a batch transfer instruction rejected before reaching the shards
+     */
+    private static final class InvalidInstruction extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        InvalidInstruction() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.data.BankDataSource;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Ledger;
+import au.com.suncorp.fladobank.data.model.Transaction;
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the account statements to a channel, for statement runs over many accounts. <br>
+ * The ledger rows are encoded straight into direct buffers, without creating the transactions or their responses,
+ * and the buffers are pooled and reused across exports. When all the accounts are exported, they are shared
+ * between {@code parallelism} workers, each encoding whole accounts into its own buffer. A full buffer is written
+ * to the channel while holding the channel lock, so the rows of different accounts may interleave but each row is
+ * written whole and the rows of an account stay in ledger order. <br>
+ *
+ * CSV rows are {@code accountNumber,txnId,txnType,amount,date,fromAccountId,toAccountId} after a header line,
+ * the date being written as {@code yyyy-MM-ddTHH:mm:ss.SSS} in the system default time zone (as the dates of the
+ * service responses) and the accounts outside the bank left empty. <br>
+ * Binary exports start with the {@code int} {@link #MAGIC} and the {@code byte} {@link #VERSION}, followed by
+ * {@value #BINARY_ROW_SIZE} byte big-endian rows {@code [long accountNumber][long txnId][byte type][long amount]
+ * [long timestamp][long counterpartyId]}: the type is {@link #CREDIT} or {@link #DEBIT}, the amount is in minor
+ * units, the timestamp in epoch millis and the counterparty {@code 0} for accounts outside the bank. <br>
+ *
+ * The channels are expected to be blocking.
+ */
+public final class StatementExporter implements Closeable {
+
+    public enum Format {
+        CSV, BINARY
+    }
+
+    /**
+     * "FBST"
+     */
+    public static final int MAGIC = 0x46425354;
+
+    public static final byte VERSION = 1;
+
+    public static final byte CREDIT = 1;
+
+    public static final byte DEBIT = 2;
+
+    public static final int BINARY_ROW_SIZE = 41;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] CSV_HEADER = "accountNumber,txnId,txnType,amount,date,fromAccountId,toAccountId\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] CSV_CREDIT = "CREDIT".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] CSV_DEBIT = "DEBIT".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Upper bound for a CSV row size
+     */
+    private static final int MAX_CSV_ROW_SIZE = 192;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final BankDataSource bankDataSource;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param bankDataSource datastore of the exported accounts
+     * @param parallelism number of accounts exported at the same time by {@link #exportAll}
+     */
+    public StatementExporter(BankDataSource bankDataSource, int parallelism) {
+        if (Objects.isNull(bankDataSource) || parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.bankDataSource = bankDataSource;
+        this.parallelism = parallelism;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "fladobank-export-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Export the transactions of an account, oldest first
+     *
+     * @param accountNumber bank account number
+     * @param format export format
+     * @param channel destination
+     * @return number of exported transactions
+     * @throws AccountNotFoundException if account is not found
+     * @throws IOException if the channel cannot be written
+     */
+    public long export(Long accountNumber, Format format, WritableByteChannel channel) throws AccountNotFoundException, IOException {
+        if (Objects.isNull(accountNumber) || Objects.isNull(format) || Objects.isNull(channel)) {
+            throw new IllegalArgumentException();
+        }
+        Account account = bankDataSource.getAccount(accountNumber.longValue());
+        if (Objects.isNull(account)) {
+            throw new AccountNotFoundException();
+        }
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            putHeader(buffer, format);
+            long rows = export(account, format, buffer, channel);
+            flush(buffer, channel);
+            return rows;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Export the transactions of all the accounts, in parallel
+     *
+     * @param format export format
+     * @param channel destination
+     * @return number of exported transactions
+     * @throws IOException if the channel cannot be written
+     */
+    public long exportAll(Format format, WritableByteChannel channel) throws IOException {
+        if (Objects.isNull(format) || Objects.isNull(channel)) {
+            throw new IllegalArgumentException();
+        }
+        ByteBuffer header = acquireBuffer();
+        try {
+            putHeader(header, format);
+            flush(header, channel);
+        } finally {
+            releaseBuffer(header);
+        }
+        Account[] accounts = bankDataSource.getAccounts().toArray(new Account[0]);
+        AtomicInteger next = new AtomicInteger();
+        List<Future<Long>> workers = new ArrayList<>(parallelism);
+        for (int i = 0; i < Math.min(parallelism, accounts.length); i++) {
+            workers.add(executor.submit(() -> exportAccounts(accounts, next, format, channel)));
+        }
+        long rows = 0;
+        try {
+            for (Future<Long> worker : workers) {
+                rows += worker.get();
+            }
+        } catch (InterruptedException e) {
+            next.set(accounts.length);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            next.set(accounts.length);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return rows;
+    }
+
+    /**
+     * Stop the export workers
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private long exportAccounts(Account[] accounts, AtomicInteger next, Format format, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            long rows = 0;
+            for (int i = next.getAndIncrement(); i < accounts.length; i = next.getAndIncrement()) {
+                rows += export(accounts[i], format, buffer, channel);
+            }
+            flush(buffer, channel);
+            return rows;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private static long export(Account account, Format format, ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        Ledger ledger = account.getLedger();
+        int size = ledger.size();
+        int rowSize = format == Format.CSV ? MAX_CSV_ROW_SIZE : BINARY_ROW_SIZE;
+        ZoneRules zone = ZoneId.systemDefault().getRules();
+        for (int i = 0; i < size; i++) {
+            if (buffer.remaining() < rowSize) {
+                flush(buffer, channel);
+            }
+            if (format == Format.CSV) {
+                putCsvRow(buffer, ledger, i, zone);
+            } else {
+                putBinaryRow(buffer, ledger, i);
+            }
+        }
+        return size;
+    }
+
+    private static void putHeader(ByteBuffer buffer, Format format) {
+        if (format == Format.CSV) {
+            buffer.put(CSV_HEADER);
+        } else {
+            buffer.putInt(MAGIC).put(VERSION);
+        }
+    }
+
+    private static void putBinaryRow(ByteBuffer buffer, Ledger ledger, int index) {
+        buffer.putLong(ledger.getOwnerId())
+                .putLong(ledger.getId(index))
+                .put(ledger.getType(index) == Transaction.TransactionType.CREDIT ? CREDIT : DEBIT)
+                .putLong(ledger.getAmountMinorUnits(index))
+                .putLong(ledger.getTimestamp(index))
+                .putLong(ledger.getCounterpartyId(index));
+    }
+
+    private static void putCsvRow(ByteBuffer buffer, Ledger ledger, int index, ZoneRules zone) {
+        putDecimal(buffer, ledger.getOwnerId());
+        buffer.put((byte) ',');
+        putDecimal(buffer, ledger.getId(index));
+        buffer.put((byte) ',');
+        buffer.put(ledger.getType(index) == Transaction.TransactionType.CREDIT ? CSV_CREDIT : CSV_DEBIT);
+        buffer.put((byte) ',');
+        putAmount(buffer, ledger.getAmountMinorUnits(index));
+        buffer.put((byte) ',');
+        long timestamp = ledger.getTimestamp(index);
+        putTimestamp(buffer, timestamp + zone.getOffset(Instant.ofEpochMilli(timestamp)).getTotalSeconds() * 1000L);
+        buffer.put((byte) ',');
+        putAccountId(buffer, ledger.getFromAccountId(index));
+        buffer.put((byte) ',');
+        putAccountId(buffer, ledger.getToAccountId(index));
+        buffer.put((byte) '\n');
+    }
+
+    private static void putAccountId(ByteBuffer buffer, long accountId) {
+        if (accountId != 0L) {
+            putDecimal(buffer, accountId);
+        }
+    }
+
+    private static void putAmount(ByteBuffer buffer, long minorUnits) {
+        if (minorUnits < 0) {
+            buffer.put((byte) '-');
+            minorUnits = -minorUnits;
+        }
+        putDecimal(buffer, minorUnits / 100);
+        buffer.put((byte) '.');
+        putDigits(buffer, minorUnits % 100, 2);
+    }
+
+    /**
+     * ISO date of the epoch millis shifted by the zone offset, from the days since the epoch (proleptic Gregorian calendar)
+     */
+    private static void putTimestamp(ByteBuffer buffer, long timestamp) {
+        long days = Math.floorDiv(timestamp, MILLIS_PER_DAY);
+        long millisOfDay = Math.floorMod(timestamp, MILLIS_PER_DAY);
+        long shifted = days + 719_468; // days since 0000-03-01
+        long era = Math.floorDiv(shifted, 146_097);
+        long dayOfEra = shifted - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        putDigits(buffer, year, 4);
+        buffer.put((byte) '-');
+        putDigits(buffer, month, 2);
+        buffer.put((byte) '-');
+        putDigits(buffer, day, 2);
+        buffer.put((byte) 'T');
+        putDigits(buffer, millisOfDay / 3_600_000, 2);
+        buffer.put((byte) ':');
+        putDigits(buffer, millisOfDay / 60_000 % 60, 2);
+        buffer.put((byte) ':');
+        putDigits(buffer, millisOfDay / 1000 % 60, 2);
+        buffer.put((byte) '.');
+        putDigits(buffer, millisOfDay % 1000, 3);
+    }
+
+    /**
+     * @param value non-negative value
+     */
+    private static void putDecimal(ByteBuffer buffer, long value) {
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        putDigits(buffer, value, digits);
+    }
+
+    /**
+     * @param value non-negative value, written with {@code digits} digits padded with zeros
+     */
+    private static void putDigits(ByteBuffer buffer, long value, int digits) {
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= end - digits; i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        synchronized (channel) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer == null ? ByteBuffer.allocateDirect(BUFFER_SIZE) : buffer;
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+}
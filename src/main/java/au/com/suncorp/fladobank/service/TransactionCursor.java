@@ -0,0 +1,45 @@
+package au.com.suncorp.fladobank.service;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque cursor used to scroll the transactions of an account, newest first. <br>
+ * The cursor holds the account number and the ledger position right after the next transaction to be returned,
+ * the ledger is append-only so the position stays valid while new transactions are added.
+ */
+final class TransactionCursor {
+
+    private static final int LENGTH = Long.BYTES + Integer.BYTES;
+
+    private TransactionCursor() {
+    }
+
+    static String encode(long accountNumber, int position) {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.putLong(accountNumber);
+        buffer.putInt(position);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @return ledger position encoded in the cursor
+     * @throws IllegalArgumentException if the cursor is invalid or was not issued for this account
+     */
+    static int decode(long accountNumber, String cursor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            if (buffer.remaining() != LENGTH || buffer.getLong() != accountNumber) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor);
+            }
+            int position = buffer.getInt();
+            if (position < 0) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor);
+            }
+            return position;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor, e);
+        }
+    }
+}
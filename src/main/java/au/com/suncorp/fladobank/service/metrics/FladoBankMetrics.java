@@ -0,0 +1,102 @@
+package au.com.suncorp.fladobank.service.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Latency histograms and outcome counters of the FladoBank operations (see
+ * {@link au.com.suncorp.fladobank.service.InstrumentedFladoBankService}). <br>
+ * The metrics of each operation can be exported through JMX as
+ * {@code au.com.suncorp.fladobank:type=Metrics,operation=<operation>}.
+ */
+public final class FladoBankMetrics implements Closeable {
+
+    public enum Operation {
+        OPEN_ACCOUNT, GET_ACCOUNT, FIND_ACCOUNTS_BY_CUSTOMER, DEPOSIT, WITHDRAW, TRANSFER, TRANSFER_BATCH, GET_TRANSACTIONS
+    }
+
+    public enum Outcome {
+        OK,
+        NOT_FOUND,
+        INSUFFICIENT_FUNDS,
+        /**
+         * Rejected arguments
+         */
+        INVALID,
+        /**
+         * Any other failure
+         */
+        FAILED
+    }
+
+    private static final String DOMAIN = "au.com.suncorp.fladobank";
+
+    private final OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    private MBeanServer mBeanServer;
+
+    public FladoBankMetrics() {
+        for (Operation operation : Operation.values()) {
+            operations[operation.ordinal()] = new OperationMetrics(operation);
+        }
+    }
+
+    /**
+     * Record a completed operation
+     *
+     * @param startNanos {@link System#nanoTime()} when the operation started
+     */
+    public void record(Operation operation, Outcome outcome, long startNanos) {
+        operations[operation.ordinal()].record(outcome, System.nanoTime() - startNanos);
+    }
+
+    public OperationMetrics get(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /**
+     * Export the metrics through JMX
+     *
+     * @throws IllegalStateException if the metrics can not be registered
+     */
+    public synchronized void register(MBeanServer server) {
+        if (mBeanServer != null) {
+            throw new IllegalStateException("Metrics already registered");
+        }
+        mBeanServer = server;
+        try {
+            for (OperationMetrics metrics : operations) {
+                ObjectName name = new ObjectName(DOMAIN + ":type=Metrics,operation="
+                        + metrics.getOperation().name().toLowerCase(Locale.ROOT));
+                server.registerMBean(metrics, name);
+                registered.add(name);
+            }
+        } catch (JMException e) {
+            close();
+            throw new IllegalStateException("Can not register the metrics", e);
+        }
+    }
+
+    /**
+     * Remove the metrics from JMX
+     */
+    @Override
+    public synchronized void close() {
+        for (ObjectName name : registered) {
+            try {
+                mBeanServer.unregisterMBean(name);
+            } catch (JMException e) {
+                // already unregistered
+            }
+        }
+        registered.clear();
+        mBeanServer = null;
+    }
+}
@@ -0,0 +1,79 @@
+package au.com.suncorp.fladobank.service.metrics;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}. <br>
+ * Values are reported as the highest value of their bucket, so they are never under-estimated.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+
+    private final long count;
+
+    HistogramSnapshot(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        this.count = total;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return value below or equal to the given percentage of the recorded values or 0 if there are none
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException();
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return highest recorded value or 0 if there are none
+     */
+    public long getMax() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return mean of the recorded values, taking the middle of their bucket, or 0 if there are none
+     */
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                long lowest = LatencyHistogram.lowestValue(i);
+                total += counts[i] * (lowest + (LatencyHistogram.highestValue(i) - lowest) / 2.0);
+            }
+        }
+        return total / count;
+    }
+}
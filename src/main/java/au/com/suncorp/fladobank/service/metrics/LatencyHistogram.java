@@ -0,0 +1,146 @@
+package au.com.suncorp.fladobank.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. <br>
+ * Values are counted in log-linear buckets, like an HDR histogram with 2 significant digits: values below 64 have
+ * a bucket each, above that every power of 2 is split in 32 buckets, so a value is reported within about 3%.
+ * Values of 2<sup>45</sup> ns (about 9.8 hours) and above are counted in the last bucket. <br>
+ * Recording a value increments a single counter and does not allocate. The counters are shared until two threads
+ * collide on one: from then on each thread counts in the stripe picked from its thread id, so recording threads do
+ * not contend, and the snapshots sum the stripes.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values below this one have a bucket each
+     */
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+    private static final int MAX_EXPONENT = 44;
+
+    static final int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * Stripes of counts, a power of 2 of at least the number of processors
+     */
+    private static final int STRIPES = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    /**
+     * Counts recorded before the first collision
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Counts of each stripe, created on the first collision
+     */
+    private volatile AtomicLongArray[] stripes;
+
+    /**
+     * Counts at the previous interval read
+     */
+    private long[] intervalStart = new long[BUCKETS];
+
+    /**
+     * @param nanos latency in nanoseconds, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        int bucket = bucket(nanos);
+        AtomicLongArray[] striped = stripes;
+        if (striped == null) {
+            long count = counts.get(bucket);
+            if (counts.compareAndSet(bucket, count, count + 1)) {
+                return;
+            }
+            striped = stripe();
+        }
+        striped[(int) Thread.currentThread().getId() & (striped.length - 1)].getAndIncrement(bucket);
+    }
+
+    private synchronized AtomicLongArray[] stripe() {
+        if (stripes == null) {
+            AtomicLongArray[] striped = new AtomicLongArray[STRIPES];
+            for (int i = 0; i < striped.length; i++) {
+                striped[i] = new AtomicLongArray(BUCKETS);
+            }
+            stripes = striped;
+        }
+        return stripes;
+    }
+
+    /**
+     * @return values recorded since the histogram was created
+     */
+    public HistogramSnapshot snapshot() {
+        return new HistogramSnapshot(copy());
+    }
+
+    /**
+     * @return values recorded since the previous call of this method (or since the histogram was created)
+     */
+    public synchronized HistogramSnapshot intervalSnapshot() {
+        long[] current = copy();
+        long[] interval = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            interval[i] = current[i] - intervalStart[i];
+        }
+        intervalStart = current;
+        return new HistogramSnapshot(interval);
+    }
+
+    private long[] copy() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        AtomicLongArray[] striped = stripes;
+        if (striped != null) {
+            for (AtomicLongArray stripe : striped) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    copy[i] += stripe.get(i);
+                }
+            }
+        }
+        return copy;
+    }
+
+    static int bucket(long value) {
+        if (value < LINEAR_LIMIT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return lowest value counted in a bucket
+     */
+    static long lowestValue(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return subBucket << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @return highest value counted in a bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        return lowestValue(bucket) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
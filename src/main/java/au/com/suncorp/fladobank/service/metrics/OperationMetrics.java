@@ -0,0 +1,105 @@
+package au.com.suncorp.fladobank.service.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome counts of a FladoBank operation
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+
+    private static final double NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+    private final FladoBankMetrics.Operation operation;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder[] outcomes = new LongAdder[FladoBankMetrics.Outcome.values().length];
+
+    OperationMetrics(FladoBankMetrics.Operation operation) {
+        this.operation = operation;
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    void record(FladoBankMetrics.Outcome outcome, long nanos) {
+        latency.record(nanos);
+        outcomes[outcome.ordinal()].increment();
+    }
+
+    public FladoBankMetrics.Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return latencies in nanoseconds since the metrics were created
+     */
+    public HistogramSnapshot getLatency() {
+        return latency.snapshot();
+    }
+
+    /**
+     * @return latencies in nanoseconds since the previous call of this method
+     */
+    public HistogramSnapshot getIntervalLatency() {
+        return latency.intervalSnapshot();
+    }
+
+    /**
+     * @return number of operations completed with the outcome
+     */
+    public long getCount(FladoBankMetrics.Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    @Override
+    public long getOkCount() {
+        return getCount(FladoBankMetrics.Outcome.OK);
+    }
+
+    @Override
+    public long getNotFoundCount() {
+        return getCount(FladoBankMetrics.Outcome.NOT_FOUND);
+    }
+
+    @Override
+    public long getInsufficientFundsCount() {
+        return getCount(FladoBankMetrics.Outcome.INSUFFICIENT_FUNDS);
+    }
+
+    @Override
+    public long getInvalidCount() {
+        return getCount(FladoBankMetrics.Outcome.INVALID);
+    }
+
+    @Override
+    public long getFailedCount() {
+        return getCount(FladoBankMetrics.Outcome.FAILED);
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.snapshot().getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.snapshot().getValueAtPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.snapshot().getValueAtPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.snapshot().getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.snapshot().getMax() / NANOS_PER_MICRO;
+    }
+}
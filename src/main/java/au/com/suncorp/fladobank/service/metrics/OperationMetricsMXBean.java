@@ -0,0 +1,27 @@
+package au.com.suncorp.fladobank.service.metrics;
+
+/**
+ * JMX view of the metrics of a FladoBank operation, latencies are in microseconds since the service started
+ */
+public interface OperationMetricsMXBean {
+
+    long getOkCount();
+
+    long getNotFoundCount();
+
+    long getInsufficientFundsCount();
+
+    long getInvalidCount();
+
+    long getFailedCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,37 @@
+package au.com.suncorp.fladobank.service.model.request;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Simple bean to be used on batch transfer requests.
+ */
+public final class TransferInstruction {
+
+    private final Long fromAccount;
+
+    private final Long toAccount;
+
+    private final BigDecimal amount;
+
+    public TransferInstruction(Long fromAccount, Long toAccount, BigDecimal amount) {
+        if (Objects.isNull(fromAccount) || Objects.isNull(toAccount) || Objects.isNull(amount)) {
+            throw new IllegalArgumentException();
+        }
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+        this.amount = amount;
+    }
+
+    public Long getFromAccount() {
+        return fromAccount;
+    }
+
+    public Long getToAccount() {
+        return toAccount;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+}
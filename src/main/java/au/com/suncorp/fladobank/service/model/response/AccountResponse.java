@@ -1,6 +1,7 @@
 package au.com.suncorp.fladobank.service.model.response;
 
 import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -13,6 +14,7 @@ import java.util.Objects;
 public final class AccountResponse {
 
     private final Long accountNumber;
+    private final Long customerId;
     private final BigDecimal balance;
     private final LocalDateTime creationDate;
     private final String accountType;
@@ -25,12 +27,14 @@ public final class AccountResponse {
             throw new IllegalArgumentException();
         }
         this.accountNumber = account.getId();
+        this.customerId = account.getCustomer().getId();
         this.balance = account.getBalance();
         this.creationDate = account.getCreationDate();
         this.accountType = account.getType().toString();
-        this.firstName = account.getCustomer().getFirstName();
-        this.lastName = account.getCustomer().getLastName();
-        this.dob = account.getCustomer().getDob();
+        Customer.Details customer = account.getCustomer().getDetails();
+        this.firstName = customer.getFirstName();
+        this.lastName = customer.getLastName();
+        this.dob = customer.getDob();
 
     }
 
@@ -42,6 +46,10 @@ public final class AccountResponse {
         return accountNumber;
     }
 
+    public Long getCustomerId() {
+        return customerId;
+    }
+
     public LocalDateTime getCreationDate() {
         return creationDate;
     }
@@ -0,0 +1,62 @@
+package au.com.suncorp.fladobank.service.model.response;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bean to be used in service facade to return a page of an account transactions.
+ */
+public final class TransactionPageResponse {
+
+    private final Long accountNumber;
+    private final List<TransactionResponse> transactions;
+    private final int pageNumber;
+    private final int pageSize;
+    private final int size;
+    private final String nextCursor;
+
+    /**
+     * @param accountNumber bank account number
+     * @param transactions transactions in this page
+     * @param pageNumber page number starting from 1, 0 when the page was requested with a cursor
+     * @param pageSize requested page size
+     * @param size total number of transactions of the account
+     * @param nextCursor cursor of the next (older) page, null if there are no more transactions
+     */
+    public TransactionPageResponse(Long accountNumber, List<TransactionResponse> transactions, int pageNumber,
+                                   int pageSize, int size, String nextCursor) {
+        if (Objects.isNull(accountNumber) || Objects.isNull(transactions)) {
+            throw new IllegalArgumentException();
+        }
+        this.accountNumber = accountNumber;
+        this.transactions = transactions;
+        this.pageNumber = pageNumber;
+        this.pageSize = pageSize;
+        this.size = size;
+        this.nextCursor = nextCursor;
+    }
+
+    public Long getAccountNumber() {
+        return accountNumber;
+    }
+
+    public List<TransactionResponse> getTransactions() {
+        return transactions;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -1,5 +1,7 @@
 package au.com.suncorp.fladobank.service.model.response;
 
+import au.com.suncorp.fladobank.data.model.Ledger;
+import au.com.suncorp.fladobank.data.model.Money;
 import au.com.suncorp.fladobank.data.model.Transaction;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -22,13 +24,35 @@ public final class TransactionResponse {
             throw new IllegalArgumentException();
         }
         this.txnId = txn.getId();
-        this.fromAccountId = txn.getFromAccount().isPresent() ? txn.getFromAccount().get().getId() : null;
-        this.toAccountId = txn.getToAccount().isPresent() ? txn.getToAccount().get().getId() : null;
+        this.fromAccountId = accountId(txn.getFromAccountId());
+        this.toAccountId = accountId(txn.getToAccountId());
         this.amount = txn.getAmount();
         this.txnDate = txn.getDate();
         this.txnType = txn.getType().toString();
     }
 
+    /**
+     * Build the response from a ledger row without creating the transaction entity
+     *
+     * @param ledger account ledger
+     * @param index ledger row
+     */
+    public TransactionResponse(Ledger ledger, int index) {
+        if (Objects.isNull(ledger)) {
+            throw new IllegalArgumentException();
+        }
+        this.txnId = ledger.getId(index);
+        this.fromAccountId = accountId(ledger.getFromAccountId(index));
+        this.toAccountId = accountId(ledger.getToAccountId(index));
+        this.amount = Money.toBigDecimal(ledger.getAmountMinorUnits(index));
+        this.txnDate = ledger.getDate(index);
+        this.txnType = ledger.getType(index).toString();
+    }
+
+    private static Long accountId(long accountId) {
+        return accountId == 0L ? null : accountId;
+    }
+
     public Long getTxnId() {
         return txnId;
     }
@@ -0,0 +1,37 @@
+package au.com.suncorp.fladobank.service.model.response;
+
+import java.util.Objects;
+
+/**
+ * Bean to be used in service facade to return the outcome of a batch transfer instruction.
+ */
+public final class TransferResult {
+
+    public enum Status {
+        SUCCESS, INSUFFICIENT_FUNDS, ACCOUNT_NOT_FOUND, INVALID_AMOUNT, INVALID_INSTRUCTION
+    }
+
+    private final Status status;
+
+    private final Long txnId;
+
+    /**
+     * @param status transfer outcome
+     * @param txnId source account transaction id, null if the transfer was rejected
+     */
+    public TransferResult(Status status, Long txnId) {
+        if (Objects.isNull(status) || (status == Status.SUCCESS) == Objects.isNull(txnId)) {
+            throw new IllegalArgumentException();
+        }
+        this.status = status;
+        this.txnId = txnId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getTxnId() {
+        return txnId;
+    }
+}
@@ -0,0 +1,67 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account lookup by id in the in-memory datastore index, against a {@code ConcurrentHashMap<Long, Account>}
+ * holding the same accounts. Run with the gc profiler to compare the footprint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class AccountLookupBenchmark {
+
+    @Param({"1000000"})
+    public int noOfAccounts;
+
+    private InMemoryBankDataSource dataSource;
+
+    private Map<Long, Account> map;
+
+    private long[] ids;
+
+    @Setup
+    public void init() {
+        dataSource = new InMemoryBankDataSource();
+        map = new ConcurrentHashMap<>();
+        ids = new long[noOfAccounts];
+        Customer customer = new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+        for (int i = 0; i < noOfAccounts; i++) {
+            Account account = dataSource.createAccount(customer, Account.AccountType.SAVINGS);
+            map.put(account.getId(), account);
+            ids[i] = account.getId();
+        }
+    }
+
+    @Benchmark
+    public Account index() {
+        return dataSource.getAccount(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public Account concurrentHashMap() {
+        return map.get(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+}
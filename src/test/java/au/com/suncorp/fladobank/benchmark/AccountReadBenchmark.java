@@ -0,0 +1,62 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.service.model.response.AccountResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance inquiries on an account being written by other threads: 6 readers building the account response
+ * and 2 depositing writers. The reads do not lock the account, their throughput should not drop with the writes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class AccountReadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean stripedCredits;
+
+    private Account account;
+
+    @Setup
+    public void init() {
+        account = new Account(new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7)), Account.AccountType.SAVINGS);
+        if (stripedCredits) {
+            account.enableStripedCredits();
+        }
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(6)
+    public AccountResponse read() {
+        return new AccountResponse(account);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public long write() {
+        return account.deposit(1L, Optional.empty());
+    }
+}
@@ -0,0 +1,73 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deposits, withdrawals and transfers in minor units on uncontended accounts, each thread writing its own accounts.
+ * The gc profiler reports the bytes allocated per operation ({@code gc.alloc.rate.norm}): only the ledger storage
+ * of the new rows, the operations allocate no transient object. <br>
+ * The {@code LOCK_FREE} engine appends its rows through the claimed slots of {@code Ledger.appendConcurrently}. <br>
+ * The accounts are recreated on every iteration so that their ledgers do not fill the heap.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class AccountWriteBenchmark {
+
+    @Param({"LOCKING", "LOCK_FREE"})
+    public Account.Engine engine;
+
+    private Account account;
+
+    private Account destination;
+
+    private Optional<Account> counterparty;
+
+    @Setup(Level.Iteration)
+    public void init() {
+        Customer customer = new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+        account = new Account(customer, Account.AccountType.SAVINGS, engine, Long.MAX_VALUE / 2);
+        destination = new Account(customer, Account.AccountType.DEPOSIT, engine);
+        counterparty = Optional.of(destination);
+    }
+
+    @Benchmark
+    public long deposit() {
+        return account.deposit(1L, Optional.empty());
+    }
+
+    @Benchmark
+    public long depositFromAccount() {
+        return account.deposit(1L, counterparty);
+    }
+
+    @Benchmark
+    public long withdraw() {
+        return account.widthdraw(1L, Optional.empty());
+    }
+
+    @Benchmark
+    public long transfer() {
+        return account.transfer(1L, destination);
+    }
+}
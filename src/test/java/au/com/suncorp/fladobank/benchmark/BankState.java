@@ -0,0 +1,130 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import au.com.suncorp.fladobank.data.BankDataSource;
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.JournalBankDataSource;
+import au.com.suncorp.fladobank.data.journal.Journal;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.service.FladoBankService;
+import au.com.suncorp.fladobank.service.FladoBankServiceImpl;
+import au.com.suncorp.fladobank.service.ShardedFladoBankService;
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Shared bank state for all benchmark threads. <br>
+ * The bank is re-created on every iteration so the account ledgers do not grow across iterations.
+ */
+@State(Scope.Benchmark)
+public class BankState {
+
+    /**
+     * Opening balance big enough to never run out of funds during an iteration
+     */
+    static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1_000_000_000_000L);
+
+    @Param({"1000"})
+    int noOfAccounts;
+
+    @Param({"UNIFORM", "ZIPFIAN", "PING_PONG"})
+    Workload workload;
+
+    /**
+     * Number of transactions on each account before the measurement starts
+     */
+    @Param({"100"})
+    int ledgerSize;
+
+    /**
+     * IN_MEMORY, IN_MEMORY_LOCK_FREE (accounts using the lock-free engine),
+     * SHARDED (in-memory accounts owned by one shard per available processor),
+     * JOURNAL (durable datastore writing to a temporary directory)
+     * or JOURNAL_GROUP_COMMIT (same, forcing the journal on every operation through group commit)
+     */
+    @Param({"IN_MEMORY", "IN_MEMORY_LOCK_FREE", "SHARDED", "JOURNAL", "JOURNAL_GROUP_COMMIT"})
+    String dataSource;
+
+    FladoBankService bankService;
+
+    Long[] accountNumbers;
+
+    ZipfianGenerator zipfian;
+
+    private Path journalDir;
+
+    private JournalBankDataSource journalDataSource;
+
+    private ShardedFladoBankService shardedService;
+
+    @Setup(Level.Trial)
+    public void initDistribution() {
+        this.zipfian = new ZipfianGenerator(noOfAccounts, 0.99);
+    }
+
+    @Setup(Level.Iteration)
+    public void openAccounts() throws AccountNotFoundException, IOException {
+        if ("SHARDED".equals(dataSource)) {
+            this.shardedService = new ShardedFladoBankService(new InMemoryBankDataSource(Account.Engine.SINGLE_WRITER),
+                    Runtime.getRuntime().availableProcessors(), ShardedFladoBankService.DEFAULT_QUEUE_CAPACITY);
+            this.bankService = shardedService;
+        } else {
+            this.bankService = new FladoBankServiceImpl(newDataSource());
+        }
+        this.accountNumbers = new Long[noOfAccounts];
+        for (int i = 0; i < noOfAccounts; i++) {
+            accountNumbers[i] = bankService.openAccount(new OpenAccountRequest("first" + i, "last" + i,
+                    LocalDate.of(1978, 10, 7), Account.AccountType.DEPOSIT.toString()));
+            bankService.deposit(accountNumbers[i], OPENING_BALANCE);
+            for (int j = 1; j < ledgerSize; j++) {
+                bankService.deposit(accountNumbers[i], BigDecimal.ONE);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeDataSource() throws IOException {
+        if (shardedService != null) {
+            shardedService.close();
+            shardedService = null;
+        }
+        if (journalDataSource != null) {
+            journalDataSource.close();
+            try (Stream<Path> files = Files.walk(journalDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+            journalDataSource = null;
+        }
+    }
+
+    private BankDataSource newDataSource() throws IOException {
+        if ("JOURNAL".equals(dataSource)) {
+            this.journalDir = Files.createTempDirectory("fladobank-journal");
+            this.journalDataSource = new JournalBankDataSource(journalDir, Journal.DEFAULT_SEGMENT_SIZE);
+            return journalDataSource;
+        }
+        if ("JOURNAL_GROUP_COMMIT".equals(dataSource)) {
+            this.journalDir = Files.createTempDirectory("fladobank-journal");
+            this.journalDataSource = new JournalBankDataSource(journalDir, Journal.DEFAULT_SEGMENT_SIZE, 64, 100, TimeUnit.MICROSECONDS);
+            return journalDataSource;
+        }
+        if ("IN_MEMORY_LOCK_FREE".equals(dataSource)) {
+            return new InMemoryBankDataSource(Account.Engine.LOCK_FREE);
+        }
+        return new InMemoryBankDataSource();
+    }
+}
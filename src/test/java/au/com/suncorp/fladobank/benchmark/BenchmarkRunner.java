@@ -0,0 +1,53 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the FladoBank benchmarks for an increasing number of threads (1, 2, 4 ... available processors)
+ * with the gc profiler enabled, so every run reports throughput, latency percentiles and allocation rate. <br>
+ *
+ * Usage: {@code mvn -Pbenchmarks test-compile exec:exec [-Dbenchmarks.include=<regexp>] [-Dbenchmarks.threads=1,2,4]}
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : FladoBankServiceBenchmark.class.getSimpleName();
+        for (int threads : threadCounts(System.getProperty("benchmarks.threads", ""))) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .result("target/jmh-result-" + threads + "-threads.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    private static List<Integer> threadCounts(String threads) {
+        List<Integer> counts = new ArrayList<>();
+        if (!threads.trim().isEmpty()) {
+            for (String count : threads.split(",")) {
+                counts.add(Integer.valueOf(count.trim()));
+            }
+            return counts;
+        }
+        int max = Runtime.getRuntime().availableProcessors();
+        for (int count = 1; count < max; count *= 2) {
+            counts.add(count);
+        }
+        counts.add(max);
+        return counts;
+    }
+}
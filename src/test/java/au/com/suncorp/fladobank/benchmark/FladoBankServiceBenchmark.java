@@ -0,0 +1,98 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import au.com.suncorp.fladobank.service.FladoBankService;
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
+import au.com.suncorp.fladobank.service.model.response.TransactionPageResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the {@code FladoBankService} operations over the in-memory datastore. <br>
+ * The sample time mode reports the latency percentiles (p50, p99...) next to the mean. <br>
+ * Run through {@link BenchmarkRunner} to get the results for 1..N threads with the gc profiler enabled.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FladoBankServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+    private static final int TRANSFER_BATCH_SIZE = 100;
+
+    /**
+     * Per thread account selector for the workload under test
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        Workload.Selector selector;
+
+        @Setup
+        public void init(BankState bank) {
+            this.selector = bank.workload.newSelector(bank.noOfAccounts, bank.zipfian);
+        }
+    }
+
+    @Benchmark
+    public Long deposit(BankState bank, ThreadState thread) throws AccountNotFoundException {
+        return bank.bankService.deposit(bank.accountNumbers[thread.selector.next()], AMOUNT);
+    }
+
+    @Benchmark
+    public Long withdraw(BankState bank, ThreadState thread) throws AccountNotFoundException, InsufficientFundsException {
+        return bank.bankService.withdraw(bank.accountNumbers[thread.selector.next()], AMOUNT);
+    }
+
+    @Benchmark
+    public Long transfer(BankState bank, ThreadState thread) throws AccountNotFoundException, InsufficientFundsException {
+        int from = thread.selector.next();
+        int to = thread.selector.nextOtherThan(from);
+        return bank.bankService.transfer(bank.accountNumbers[from], bank.accountNumbers[to], AMOUNT);
+    }
+
+    /**
+     * Same transfers as {@link #transfer} sent as a batch, the score is per transfer
+     */
+    @Benchmark
+    @OperationsPerInvocation(TRANSFER_BATCH_SIZE)
+    public List<TransferResult> transferBatch(BankState bank, ThreadState thread) {
+        List<TransferInstruction> instructions = new ArrayList<>(TRANSFER_BATCH_SIZE);
+        for (int i = 0; i < TRANSFER_BATCH_SIZE; i++) {
+            int from = thread.selector.next();
+            int to = thread.selector.nextOtherThan(from);
+            instructions.add(new TransferInstruction(bank.accountNumbers[from], bank.accountNumbers[to], AMOUNT));
+        }
+        return bank.bankService.transferBatch(instructions);
+    }
+
+    @Benchmark
+    public List<TransactionResponse> getTransactions(BankState bank, ThreadState thread) throws AccountNotFoundException {
+        return bank.bankService.getTransactions(bank.accountNumbers[thread.selector.next()]);
+    }
+
+    @Benchmark
+    public TransactionPageResponse getTransactionsPage(BankState bank, ThreadState thread) throws AccountNotFoundException {
+        return bank.bankService.getTransactions(bank.accountNumbers[thread.selector.next()], (String) null, FladoBankService.DEFAULT_PAGE_SIZE);
+    }
+}
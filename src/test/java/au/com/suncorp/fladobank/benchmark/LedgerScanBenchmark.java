@@ -0,0 +1,152 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.Ledger;
+import au.com.suncorp.fladobank.data.model.LedgerArchive;
+import au.com.suncorp.fladobank.data.model.Transaction;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Full scan of an account history spilled to a ledger archive in each block format, against the same rows
+ * serialised field by field as transactions (id, amount, type, from and to account ids, timestamp: 41 bytes). <br>
+ * The {@code storage} benchmark reports the archived bytes per transaction of each block format in its
+ * {@code bytesPerTransaction} counter, along with the time of a single scan. <br>
+ * The compressed blocks only save storage: their scan is slower than the {@code plainRows} baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LedgerScanBenchmark {
+
+    private static final int PLAIN_ROW_SIZE = 41;
+
+    private static final Transaction.TransactionType[] TYPES = Transaction.TransactionType.values();
+
+    @Param({"1048576"})
+    public int noOfTransactions;
+
+    @Param({"FIXED", "COMPRESSED"})
+    public LedgerArchive.Format format;
+
+    private Path directory;
+
+    private Ledger ledger;
+
+    private ByteBuffer plain;
+
+    private long archivedBytes;
+
+    private final Checksum checksum = new Checksum();
+
+    private static final class Checksum implements Ledger.RowConsumer {
+
+        private long value;
+
+        @Override
+        public void accept(long id, Transaction.TransactionType type, long amount, long timestamp, long counterpartyId) {
+            value += id ^ amount ^ timestamp ^ counterpartyId ^ type.ordinal();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Storage {
+
+        public double bytesPerTransaction;
+    }
+
+    @Setup(Level.Trial)
+    public void init() throws IOException {
+        Account account = new Account(new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7)), Account.AccountType.SAVINGS);
+        Account[] counterparties = new Account[16];
+        for (int i = 0; i < counterparties.length; i++) {
+            counterparties[i] = new Account(new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7)), Account.AccountType.SAVINGS);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < noOfTransactions; i++) {
+            if (i % 2 == 0) {
+                account.deposit(random.nextInt(100_000), i % 4 == 0 ? Optional.empty() : Optional.of(counterparties[random.nextInt(4)]));
+            } else {
+                account.transfer(random.nextInt(1000), counterparties[random.nextInt(counterparties.length)]);
+            }
+        }
+        directory = Files.createTempDirectory("fladobank-ledger");
+        LedgerArchive archive = new LedgerArchive(directory, 1, LedgerArchive.DEFAULT_SEGMENT_SIZE, format);
+        ledger = account.getLedger();
+        account.spillLedger(archive, 0, Long.MIN_VALUE);
+        archivedBytes = archive.getArchivedBytes();
+
+        plain = ByteBuffer.allocateDirect(ledger.size() * PLAIN_ROW_SIZE);
+        for (int i = 0; i < ledger.size(); i++) {
+            plain.putLong(ledger.getId(i)).putLong(ledger.getAmountMinorUnits(i)).put((byte) ledger.getType(i).ordinal())
+                    .putLong(ledger.getFromAccountId(i)).putLong(ledger.getToAccountId(i)).putLong(ledger.getTimestamp(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long archive() {
+        checksum.value = 0L;
+        ledger.scan(0, ledger.size(), checksum);
+        return checksum.value;
+    }
+
+    /**
+     * A single measurement, the events counters are summed over the iterations
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public long storage(Storage storage) {
+        storage.bytesPerTransaction = (double) archivedBytes / ledger.size();
+        return archive();
+    }
+
+    @Benchmark
+    public long plainRows() {
+        long ownerId = ledger.getOwnerId();
+        long checksum = 0L;
+        for (int offset = 0; offset < plain.capacity(); offset += PLAIN_ROW_SIZE) {
+            Transaction.TransactionType type = TYPES[plain.get(offset + 16)];
+            long counterparty = type == Transaction.TransactionType.CREDIT ? plain.getLong(offset + 17) : plain.getLong(offset + 25);
+            checksum += plain.getLong(offset) ^ plain.getLong(offset + 8) ^ plain.getLong(offset + 33)
+                    ^ (counterparty == ownerId ? 0L : counterparty) ^ type.ordinal();
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,105 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.Transaction;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by the transactions materialised from the ledgers of accounts transferring to each other: the
+ * {@code retainedBytesPerTransaction} counter is the used heap after a full gc, with the transactions kept reachable,
+ * minus the used heap before, per transaction. The accounts themselves are reachable from the datastore in both
+ * measurements, only the transaction objects and the arrays holding them are counted.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TransactionFootprintBenchmark {
+
+    @Param({"1000"})
+    public int noOfAccounts;
+
+    @Param({"200000"})
+    public int noOfTransfers;
+
+    private Account[] accounts;
+
+    /**
+     * Transactions of the last iteration, released before the next measurement
+     */
+    private Transaction[][] retained;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long retainedBytesPerTransaction;
+    }
+
+    @Setup(Level.Trial)
+    public void init() {
+        InMemoryBankDataSource dataSource = new InMemoryBankDataSource();
+        Customer customer = new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+        accounts = new Account[noOfAccounts];
+        for (int i = 0; i < noOfAccounts; i++) {
+            accounts[i] = dataSource.createAccount(customer, Account.AccountType.SAVINGS);
+            accounts[i].deposit(1_000_000L, Optional.empty());
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < noOfTransfers; i++) {
+            accounts[random.nextInt(noOfAccounts)].transfer(1L, accounts[random.nextInt(noOfAccounts)]);
+        }
+    }
+
+    @Benchmark
+    public void retain(Footprint footprint) {
+        retained = null;
+        long before = usedHeap();
+        Transaction[][] transactions = new Transaction[accounts.length][];
+        long count = 0;
+        for (int i = 0; i < accounts.length; i++) {
+            List<Transaction> ledger = accounts[i].getTransactions();
+            transactions[i] = ledger.toArray(new Transaction[0]);
+            count += transactions[i].length;
+        }
+        retained = transactions;
+        footprint.retainedBytesPerTransaction = (usedHeap() - before) / count;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // repeat until the used heap stops shrinking, a single System.gc() may leave garbage behind
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,86 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Account access patterns used to drive the benchmarks. <br>
+ * Each workload picks account indexes in the range {@code [0, noOfAccounts)}:
+ * <ul>
+ *     <li> UNIFORM - every account has the same probability to be picked (low contention) </li>
+ *     <li> ZIPFIAN - a few hot accounts receive most of the traffic (merchant / payroll accounts) </li>
+ *     <li> PING_PONG - all threads hit the same two accounts (worst case contention) </li>
+ * </ul>
+ */
+public enum Workload {
+
+    UNIFORM {
+        @Override
+        int nextIndex(Selector selector) {
+            return ThreadLocalRandom.current().nextInt(selector.noOfAccounts);
+        }
+    },
+
+    ZIPFIAN {
+        @Override
+        int nextIndex(Selector selector) {
+            return selector.zipfian.next(ThreadLocalRandom.current());
+        }
+    },
+
+    PING_PONG {
+        @Override
+        int nextIndex(Selector selector) {
+            selector.toggle ^= 1;
+            return selector.toggle;
+        }
+    };
+
+    abstract int nextIndex(Selector selector);
+
+    /**
+     * Create a new (thread confined) selector for this workload
+     *
+     * @param noOfAccounts number of accounts to select from
+     * @param zipfian shared zipfian distribution, only used by the ZIPFIAN workload
+     * @return a new selector
+     */
+    Selector newSelector(int noOfAccounts, ZipfianGenerator zipfian) {
+        return new Selector(this, this == PING_PONG ? 2 : noOfAccounts, zipfian);
+    }
+
+    /**
+     * Thread confined account selector. Allocation free so it does not pollute the gc profiler results.
+     */
+    static final class Selector {
+
+        private final Workload workload;
+
+        private final int noOfAccounts;
+
+        private final ZipfianGenerator zipfian;
+
+        private int toggle;
+
+        private Selector(Workload workload, int noOfAccounts, ZipfianGenerator zipfian) {
+            this.workload = workload;
+            this.noOfAccounts = noOfAccounts;
+            this.zipfian = zipfian;
+        }
+
+        /**
+         * @return next account index
+         */
+        int next() {
+            return workload.nextIndex(this);
+        }
+
+        /**
+         * @param from index of the source account
+         * @return next account index, always different than {@code from}
+         */
+        int nextOtherThan(int from) {
+            int to = workload.nextIndex(this);
+            return to != from ? to : (from + 1) % noOfAccounts;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package au.com.suncorp.fladobank.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipfian distributed index generator over {@code [0, n)} - index 0 being the hottest one. <br>
+ * The cumulative distribution is computed once, so sampling is a binary search with no allocation.
+ * This class is immutable and can be shared between benchmark threads.
+ */
+final class ZipfianGenerator {
+
+    private final double[] cdf;
+
+    /**
+     * @param n number of items
+     * @param skew zipfian exponent (0.99 is the YCSB default)
+     */
+    ZipfianGenerator(int n, double skew) {
+        if (n <= 0 || skew <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+    }
+
+    int next(Random random) {
+        int idx = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(idx >= 0 ? idx : -idx - 1, cdf.length - 1);
+    }
+}
@@ -0,0 +1,90 @@
+package au.com.suncorp.fladobank.data;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.AccountJournal;
+import au.com.suncorp.fladobank.data.model.Customer;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class AccountIndexTest {
+
+    private final AccountIndex index = new AccountIndex();
+
+    private final Customer customer = new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+
+    private Account account(long id) {
+        return new Account(id, customer, Account.AccountType.SAVINGS, LocalDateTime.now(), AccountJournal.NONE);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        Account account = account(42L);
+        assertNull(index.putIfAbsent(account));
+        assertSame(account, index.get(42L));
+        assertNull(index.get(43L));
+
+        assertSame(account, index.putIfAbsent(account(42L)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testPutAllIsAllOrNothing() {
+        Account existing = account(7L);
+        index.putIfAbsent(existing);
+
+        assertSame(existing, index.putAllIfAbsent(new Account[]{account(1L), account(2L), account(7L), account(8L)}));
+        Account repeated = account(3L);
+        assertSame(repeated, index.putAllIfAbsent(new Account[]{account(4L), repeated, account(5L), account(3L)}));
+        assertEquals(1, index.size());
+        for (long id = 1; id <= 8; id++) {
+            assertEquals(id == 7L, index.get(id) != null);
+        }
+
+        assertNull(index.putAllIfAbsent(new Account[]{account(1L), account(2L)}));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testGrowKeepsAccounts() {
+        for (long id = 1; id <= 10_000; id++) {
+            index.putIfAbsent(account(id << 22));
+        }
+        assertEquals(10_000, index.size());
+        for (long id = 1; id <= 10_000; id++) {
+            assertEquals(Long.valueOf(id << 22), index.get(id << 22).getId());
+        }
+
+        Set<Long> ids = new HashSet<>();
+        index.values().forEach(account -> ids.add(account.getId()));
+        assertEquals(10_000, ids.size());
+    }
+
+    @Test
+    public void testReadersSeeAccountsAddedWhileGrowing() throws InterruptedException {
+        int accounts = 100_000;
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            for (long id = 1; id <= accounts; id++) {
+                while (index.get(id) == null) {
+                    Thread.onSpinWait();
+                }
+                if (index.get(id).getId() != id) {
+                    failure.set("Wrong account for id " + id);
+                }
+            }
+        });
+        reader.start();
+        for (long id = 1; id <= accounts; id++) {
+            index.putIfAbsent(account(id));
+        }
+        reader.join();
+        assertNull(failure.get());
+    }
+}
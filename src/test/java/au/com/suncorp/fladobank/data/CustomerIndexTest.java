@@ -0,0 +1,70 @@
+package au.com.suncorp.fladobank.data;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CustomerIndexTest {
+
+    private final CustomerIndex index = new CustomerIndex();
+
+    @Test
+    public void testFindOrCreateNormalisesDetails() {
+        LocalDate dob = LocalDate.of(1978, 10, 7);
+        Customer customer = index.findOrCreate("Florin", "Adochiei", dob);
+
+        assertSame(customer, index.findOrCreate(" florin", "ADOCHIEI ", dob));
+        assertNotSame(customer, index.findOrCreate("Florin", "Adochiei", dob.plusDays(1)));
+        assertNotSame(customer, index.findOrCreate("Florin", "Adochiei", null));
+        assertTrue(index.accounts(customer.getId()).isEmpty());
+        assertNull(index.accounts(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testAccountsOfCustomerCreatedOutsideTheIndex() {
+        Customer customer = new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+        Account first = new Account(customer, Account.AccountType.SAVINGS);
+        Account second = new Account(customer, Account.AccountType.DEPOSIT);
+        index.add(first);
+        index.add(second);
+
+        assertEquals(2, index.accounts(customer.getId()).size());
+        assertSame(second, index.accounts(customer.getId()).get(1));
+        assertSame(customer, index.findOrCreate("Florin", "Adochiei", LocalDate.of(1978, 10, 7)));
+    }
+
+    @Test
+    public void testConcurrentOpens() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        Customer customer = index.findOrCreate("Customer" + i, "Adochiei", LocalDate.of(1978, 10, 7));
+                        index.add(new Account(customer, Account.AccountType.SAVINGS));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < 1000; i++) {
+            List<Account> accounts = index.accounts(index.findOrCreate("Customer" + i, "Adochiei", LocalDate.of(1978, 10, 7)).getId());
+            assertEquals(8, accounts.size());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package au.com.suncorp.fladobank.data;
 import au.com.suncorp.AppConfig;
 import au.com.suncorp.fladobank.data.model.Account;
 import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.Transaction;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,6 +14,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Optional;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = {AppConfig.class})
@@ -69,7 +71,24 @@ public class InMemoryBankDataSourceTest {
         assertEquals(Account.AccountType.DEPOSIT, acc.getType());
     }
 
+    @Test
+    public void testTransactionsResolveAccountsThroughDatastore() {
+        Account source = dataSource.createAccount(firstCustomer, Account.AccountType.DEPOSIT);
+        Account destination = dataSource.createAccount(newCustomer(), Account.AccountType.SAVINGS);
+        source.deposit(BigDecimal.TEN, Optional.empty());
+        source.transfer(BigDecimal.ONE, destination);
 
+        Transaction credit = destination.getTransactions().get(0);
+        assertEquals(source.getId().longValue(), credit.getFromAccountId());
+        assertEquals(destination.getId().longValue(), credit.getToAccountId());
+        assertSame(source, credit.getFromAccount().get());
+        assertSame(destination, credit.getToAccount().get());
 
-
+        // the ledger only keeps the counterparty id, the account is gone with the datastore entry
+        dataSource.reset();
+        credit = destination.getTransactions().get(0);
+        assertEquals(source.getId().longValue(), credit.getFromAccountId());
+        assertFalse(credit.getFromAccount().isPresent());
+        assertSame(destination, credit.getToAccount().get());
+    }
 }
@@ -0,0 +1,501 @@
+package au.com.suncorp.fladobank.data;
+
+import au.com.suncorp.fladobank.data.journal.Snapshots;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.LedgerArchive;
+import au.com.suncorp.fladobank.data.model.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class JournalBankDataSourceTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path journalDir;
+
+    private JournalBankDataSource dataSource;
+
+    @Before
+    public void init() throws IOException {
+        journalDir = folder.newFolder("journal").toPath();
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE);
+    }
+
+    @After
+    public void close() {
+        dataSource.close();
+    }
+
+    private JournalBankDataSource reopen() throws IOException {
+        dataSource.close();
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE);
+        return dataSource;
+    }
+
+    private Customer newCustomer() {
+        return new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+    }
+
+    @Test
+    public void testRecoverAccountsAndTransactions() throws IOException {
+        Customer customer = newCustomer();
+        Account source = dataSource.createAccount(customer, Account.AccountType.DEPOSIT);
+        Account destination = dataSource.createAccount(customer, Account.AccountType.SAVINGS);
+        source.deposit(BigDecimal.valueOf(1500), Optional.empty());
+        source.widthdraw(new BigDecimal("200.55"), Optional.empty());
+        source.transfer(BigDecimal.valueOf(300), destination);
+
+        Account restoredSource = reopen().getAccount(source.getId());
+        Account restoredDestination = dataSource.getAccount(destination.getId());
+
+        assertNotNull(restoredSource);
+        assertEquals(source.getType(), restoredSource.getType());
+        assertEquals(source.getCreationDate(), restoredSource.getCreationDate());
+        assertEquals(customer.getId(), restoredSource.getCustomer().getId());
+        assertEquals("Florin", restoredSource.getCustomer().getFirstName());
+        assertEquals("Adochiei", restoredSource.getCustomer().getLastName());
+        assertEquals(LocalDate.of(1978, 10, 7), restoredSource.getCustomer().getDob());
+        assertSame(restoredSource.getCustomer(), restoredDestination.getCustomer());
+
+        assertEquals(new BigDecimal("999.45"), restoredSource.getBalance());
+        assertEquals(BigDecimal.valueOf(300), restoredDestination.getBalance());
+        assertTransactionsEqual(source.getTransactions(), restoredSource.getTransactions());
+        assertTransactionsEqual(destination.getTransactions(), restoredDestination.getTransactions());
+
+        Transaction credit = restoredDestination.getTransactions().get(0);
+        assertSame(restoredSource, credit.getFromAccount().get());
+        assertSame(restoredDestination, credit.getToAccount().get());
+    }
+
+    @Test
+    public void testRestoredAccountsAreJournaled() throws IOException {
+        Account account = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        account.deposit(BigDecimal.valueOf(100), Optional.empty());
+
+        reopen().getAccount(account.getId()).deposit(BigDecimal.valueOf(50), Optional.empty());
+
+        Account restored = reopen().getAccount(account.getId());
+        assertEquals(BigDecimal.valueOf(150), restored.getBalance());
+        assertEquals(2, restored.getTransactions().size());
+    }
+
+    @Test
+    public void testRecoverAccountsCreatedInBulk() throws IOException {
+        Customer customer = newCustomer();
+        Account[] accounts = dataSource.createAccounts(new Customer[]{customer, customer},
+                new Account.AccountType[]{Account.AccountType.DEPOSIT, Account.AccountType.SAVINGS}, new long[]{2500, 0}, 2);
+
+        Account restored = reopen().getAccount(accounts[0].getId());
+        assertEquals(BigDecimal.valueOf(25), restored.getBalance());
+        assertEquals(1, restored.getTransactionCount());
+        assertNotNull(dataSource.getAccount(accounts[1].getId()));
+        assertSame(restored.getCustomer(), dataSource.getAccount(accounts[1].getId()).getCustomer());
+    }
+
+    @Test
+    public void testSnapshotStartedBeforeBulkCreation() throws IOException {
+        Account[] accounts = dataSource.createAccounts(new Customer[]{newCustomer()},
+                new Account.AccountType[]{Account.AccountType.DEPOSIT}, new long[]{10000}, 1);
+        // a snapshot whose start position was read before the batch was logged
+        Snapshots.write(journalDir, 0L, dataSource.getAccounts());
+
+        Account restored = reopen().getAccount(accounts[0].getId());
+        assertEquals(BigDecimal.valueOf(100), restored.getBalance());
+        assertEquals(1, restored.getTransactionCount());
+    }
+
+    @Test
+    public void testAccountsCreatedInBulkAwaitOneCommit() throws IOException {
+        dataSource.close();
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE, 8, 1, TimeUnit.MILLISECONDS);
+        int count = 100;
+        Customer[] customers = new Customer[count];
+        Account.AccountType[] types = new Account.AccountType[count];
+        long[] balances = new long[count];
+        for (int i = 0; i < count; i++) {
+            customers[i] = newCustomer();
+            types[i] = Account.AccountType.SAVINGS;
+            balances[i] = i * 100L;
+        }
+        Account[] accounts = dataSource.createAccounts(customers, types, balances, count);
+
+        assertEquals(1, dataSource.getCommitStats().getCommittedOperations());
+        reopen();
+        for (int i = 0; i < count; i++) {
+            Account restored = dataSource.getAccount(accounts[i].getId());
+            assertEquals(BigDecimal.valueOf(i), restored.getBalance());
+            assertEquals(i == 0 ? 0 : 1, restored.getTransactionCount());
+            assertEquals(accounts[i].getTransactions().isEmpty() ? null : accounts[i].getTransactions().get(0).getId(),
+                    restored.getTransactions().isEmpty() ? null : restored.getTransactions().get(0).getId());
+        }
+    }
+
+    @Test
+    public void testRejectedWithdrawalIsNotJournaled() throws IOException {
+        Account account = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        account.deposit(BigDecimal.valueOf(100), Optional.empty());
+        try {
+            account.widthdraw(BigDecimal.valueOf(500), Optional.empty());
+            fail();
+        } catch (InsufficientFundsAccountException e) {
+            // expected
+        }
+
+        Account restored = reopen().getAccount(account.getId());
+        assertEquals(BigDecimal.valueOf(100), restored.getBalance());
+        assertEquals(1, restored.getTransactions().size());
+    }
+
+    @Test
+    public void testRecoverAcrossSegments() throws IOException {
+        Account account = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        for (int i = 0; i < 5000; i++) {
+            account.deposit(BigDecimal.ONE, Optional.empty());
+        }
+        try (Stream<Path> files = Files.list(journalDir)) {
+            assertTrue(files.count() > 1);
+        }
+
+        Account restored = reopen().getAccount(account.getId());
+        assertEquals(BigDecimal.valueOf(5000), restored.getBalance());
+        assertEquals(5000, restored.getTransactions().size());
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws IOException {
+        Account account = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        account.deposit(BigDecimal.valueOf(100), Optional.empty());
+        dataSource.close();
+
+        // simulate a crash in the middle of an append: a header with no valid payload
+        Path segment;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            segment = files.sorted().reduce((first, second) -> second).get();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+            int offset = 0;
+            while (true) {
+                buffer.clear();
+                channel.read(buffer, offset);
+                int length = buffer.getInt(0);
+                if (length == 0) {
+                    break;
+                }
+                offset += 2 * Integer.BYTES + length;
+            }
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 42, 1, 2, 3, 4, 5, 6}), offset);
+        }
+
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE);
+        dataSource.getAccount(account.getId()).deposit(BigDecimal.valueOf(10), Optional.empty());
+
+        Account restored = reopen().getAccount(account.getId());
+        assertEquals(BigDecimal.valueOf(110), restored.getBalance());
+        assertEquals(2, restored.getTransactions().size());
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        dataSource.close();
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE, 8, 1, TimeUnit.MILLISECONDS);
+        assertNotNull(dataSource.getCommitStats());
+
+        int threads = 8;
+        int depositsPerThread = 50;
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            accounts.add(dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Account account : accounts) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < depositsPerThread; i++) {
+                        account.deposit(BigDecimal.ONE, Optional.empty());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long operations = threads + threads * depositsPerThread;
+        assertTrue(dataSource.getCommitStats().getCommits() > 0);
+        assertTrue(dataSource.getCommitStats().getCommits() <= operations);
+        assertTrue(dataSource.getCommitStats().getCommittedOperations() <= operations);
+        assertTrue(dataSource.getCommitStats().getMaxBatchSize() >= 1);
+
+        reopen();
+        for (Account account : accounts) {
+            assertEquals(BigDecimal.valueOf(depositsPerThread), dataSource.getAccount(account.getId()).getBalance());
+        }
+        assertNull(dataSource.getCommitStats());
+    }
+
+    @Test
+    public void testRecoverFromSnapshotAndJournalSuffix() throws IOException {
+        Account source = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        Account destination = dataSource.createAccount(newCustomer(), Account.AccountType.SAVINGS);
+        for (int i = 0; i < 3000; i++) {
+            source.deposit(BigDecimal.ONE, Optional.empty());
+        }
+        source.transfer(BigDecimal.valueOf(1000), destination);
+        try (Stream<Path> files = Files.list(journalDir)) {
+            assertTrue(files.filter(file -> file.toString().endsWith(".journal")).count() > 1);
+        }
+
+        Path snapshot = dataSource.snapshot();
+        // without a ledger archive the journal keeps the history
+        try (Stream<Path> files = Files.list(journalDir)) {
+            assertTrue(files.filter(file -> file.toString().endsWith(".journal")).count() > 1);
+        }
+
+        source.widthdraw(BigDecimal.valueOf(500), Optional.empty());
+        destination.transfer(BigDecimal.valueOf(100), source);
+        Account afterSnapshot = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        afterSnapshot.deposit(BigDecimal.TEN, Optional.empty());
+
+        reopen();
+        assertTrue(Files.exists(snapshot));
+        Account restoredSource = dataSource.getAccount(source.getId());
+        Account restoredDestination = dataSource.getAccount(destination.getId());
+        assertEquals(BigDecimal.valueOf(1600), restoredSource.getBalance());
+        assertEquals(BigDecimal.valueOf(900), restoredDestination.getBalance());
+        assertEquals(BigDecimal.TEN, dataSource.getAccount(afterSnapshot.getId()).getBalance());
+        assertEquals(source.getCreationDate(), restoredSource.getCreationDate());
+        assertEquals(source.getCustomer().getId(), restoredSource.getCustomer().getId());
+
+        assertEquals(3003, restoredSource.getTransactionCount());
+        assertEquals(3003, restoredSource.getTransactions().size());
+        assertEquals(2, restoredDestination.getTransactionCount());
+        assertEquals(2, restoredDestination.getTransactions().size());
+        assertEquals(1, dataSource.getAccount(afterSnapshot.getId()).getTransactionCount());
+    }
+
+    @Test
+    public void testSnapshotKeepsTheTransactionHistory() throws IOException {
+        Account source = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        Account destination = dataSource.createAccount(newCustomer(), Account.AccountType.SAVINGS);
+        source.deposit(BigDecimal.valueOf(100), Optional.empty());
+        source.transfer(BigDecimal.valueOf(30), destination);
+        destination.widthdraw(BigDecimal.TEN, Optional.empty());
+        List<Transaction> sourceHistory = source.getTransactions();
+        List<Transaction> destinationHistory = destination.getTransactions();
+
+        dataSource.snapshot();
+        reopen();
+        // restored accounts are snapshotted with their history too
+        dataSource.getAccount(source.getId()).deposit(BigDecimal.ONE, Optional.empty());
+        dataSource.snapshot();
+        reopen();
+
+        List<Transaction> restoredSource = dataSource.getAccount(source.getId()).getTransactions();
+        assertEquals(3, restoredSource.size());
+        assertTransactionsEqual(sourceHistory, restoredSource.subList(0, 2));
+        assertEquals(100L, restoredSource.get(2).getAmountMinorUnits());
+        List<Transaction> restoredDestination = dataSource.getAccount(destination.getId()).getTransactions();
+        assertTransactionsEqual(destinationHistory, restoredDestination);
+        assertEquals(Optional.of(dataSource.getAccount(source.getId())), restoredDestination.get(0).getFromAccount());
+        assertEquals(BigDecimal.valueOf(20), dataSource.getAccount(destination.getId()).getBalance());
+    }
+
+    @Test
+    public void testRecoverArchivedTransactions() throws IOException {
+        Path ledgerDir = folder.newFolder("ledger").toPath();
+        dataSource.close();
+        LedgerArchive archive = new LedgerArchive(ledgerDir, 2, SEGMENT_SIZE, LedgerArchive.Format.FIXED, true);
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE, archive);
+        Account account = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        for (int i = 0; i < 3000; i++) {
+            account.deposit(BigDecimal.ONE, Optional.empty());
+        }
+        List<Transaction> history = account.getTransactions();
+        assertEquals(2048, account.spillLedger(archive, 0, Long.MIN_VALUE));
+        long journalFiles;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            journalFiles = files.filter(file -> file.toString().endsWith(".journal")).count();
+        }
+
+        Path snapshot = dataSource.snapshot();
+        // the journal is only kept from the first transaction not archived
+        try (Stream<Path> files = Files.list(journalDir)) {
+            assertTrue(files.filter(file -> file.toString().endsWith(".journal")).count() < journalFiles);
+        }
+        assertTrue(Files.size(snapshot) < 1024);
+
+        dataSource.close();
+        archive = new LedgerArchive(ledgerDir, 2, SEGMENT_SIZE, LedgerArchive.Format.FIXED, true);
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE, archive);
+        Account restored = dataSource.getAccount(account.getId());
+        assertEquals(BigDecimal.valueOf(3000), restored.getBalance());
+        assertEquals(3000, restored.getTransactionCount());
+        assertEquals(2048, restored.getLedger().spilled());
+        assertTransactionsEqual(history, restored.getTransactions());
+
+        // restored tail pointers are snapshotted again
+        restored.deposit(BigDecimal.TEN, Optional.empty());
+        dataSource.snapshot();
+        dataSource.close();
+        archive = new LedgerArchive(ledgerDir, 2, SEGMENT_SIZE, LedgerArchive.Format.FIXED, true);
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE, archive);
+        restored = dataSource.getAccount(account.getId());
+        assertEquals(BigDecimal.valueOf(3010), restored.getBalance());
+        assertEquals(3001, restored.getTransactionCount());
+        assertTransactionsEqual(history, restored.getTransactions().subList(0, 3000));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testArchivedTransactionsWithoutArchive() throws IOException {
+        Path ledgerDir = folder.newFolder("ledger").toPath();
+        dataSource.close();
+        LedgerArchive archive = new LedgerArchive(ledgerDir, 1, SEGMENT_SIZE, LedgerArchive.Format.FIXED, true);
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE, archive);
+        Account account = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        for (int i = 0; i < 1024; i++) {
+            account.deposit(BigDecimal.ONE, Optional.empty());
+        }
+        account.spillLedger(archive, 0, Long.MIN_VALUE);
+        dataSource.snapshot();
+
+        reopen();
+    }
+
+    @Test
+    public void testRecoverVersion2Snapshot() throws IOException {
+        dataSource.close();
+        LocalDateTime creationDate = LocalDateTime.of(2020, 1, 2, 3, 4, 5);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.putInt(0x464C4442).putInt(2).putLong(0L);
+        buffer.put((byte) 1).putLong(42L).putLong(creationDate.toEpochSecond(ZoneOffset.UTC)).putInt(0);
+        buffer.put((byte) Account.AccountType.SAVINGS.ordinal()).putLong(7L);
+        for (String name : new String[]{"Florin", "Adochiei"}) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+        buffer.putLong(LocalDate.of(1978, 10, 7).toEpochDay());
+        buffer.putLong(50000L).putLong(3L).putLong(0L);
+        buffer.put((byte) 0).putLong(1L);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        Files.write(journalDir.resolve(String.format("%020d.snapshot", 0L)), Arrays.copyOf(buffer.array(), buffer.position()));
+
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE);
+        Account account = dataSource.getAccount(42L);
+        assertEquals(BigDecimal.valueOf(500), account.getBalance());
+        assertEquals(Account.AccountType.SAVINGS, account.getType());
+        assertEquals(creationDate, account.getCreationDate());
+        assertEquals("Adochiei", account.getCustomer().getLastName());
+
+        account.deposit(BigDecimal.ONE, Optional.empty());
+        reopen();
+        assertEquals(BigDecimal.valueOf(501), dataSource.getAccount(42L).getBalance());
+    }
+
+    @Test
+    public void testSnapshotWhileWriting() throws Exception {
+        int threads = 4;
+        int depositsPerThread = 2000;
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            accounts.add(dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Account account = accounts.get(t);
+                Account next = accounts.get((t + 1) % threads);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < depositsPerThread; i++) {
+                        account.deposit(BigDecimal.valueOf(2), Optional.empty());
+                        account.transfer(BigDecimal.ONE, next);
+                    }
+                }));
+            }
+            for (int i = 0; i < 5; i++) {
+                dataSource.snapshot();
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        reopen();
+        for (Account account : accounts) {
+            Account restored = dataSource.getAccount(account.getId());
+            assertEquals(account.getBalance(), restored.getBalance());
+            assertEquals(account.getTransactionCount(), restored.getTransactionCount());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCorruptedSnapshot() throws IOException {
+        Account account = dataSource.createAccount(newCustomer(), Account.AccountType.DEPOSIT);
+        account.deposit(BigDecimal.TEN, Optional.empty());
+        Path snapshot = dataSource.snapshot();
+        dataSource.close();
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x7F;
+        Files.write(snapshot, bytes);
+
+        dataSource = new JournalBankDataSource(journalDir, SEGMENT_SIZE);
+    }
+
+    private static void assertTransactionsEqual(List<Transaction> expected, List<Transaction> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getAmount(), actual.get(i).getAmount());
+            assertEquals(expected.get(i).getType(), actual.get(i).getType());
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+            assertEquals(ids(expected.get(i)), ids(actual.get(i)));
+        }
+    }
+
+    private static List<Long> ids(Transaction txn) {
+        return Stream.of(txn.getFromAccount(), txn.getToAccount())
+                .map(account -> account.map(Account::getId).orElse(null))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,80 @@
+package au.com.suncorp.fladobank.data;
+
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.LedgerArchive;
+import au.com.suncorp.fladobank.data.model.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LedgerSpillerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSpilledTransactionsAreStillReturned() throws IOException {
+        InMemoryBankDataSource dataSource = new InMemoryBankDataSource();
+        Customer customer = new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+        Account source = dataSource.createAccount(customer, Account.AccountType.SAVINGS);
+        Account destination = dataSource.createAccount(customer, Account.AccountType.DEPOSIT);
+        source.deposit(100_000_000L, Optional.empty());
+        for (int i = 0; i < 5000; i++) {
+            source.transfer(i, destination);
+        }
+        List<Long> ids = ids(source.getTransactions());
+
+        LedgerArchive archive = new LedgerArchive(folder.getRoot().toPath(), 2, LedgerArchive.DEFAULT_SEGMENT_SIZE);
+        LedgerSpiller spiller = new LedgerSpiller(dataSource, archive, 1000, 0);
+        assertEquals(6144, spiller.spill());
+        assertEquals(3072, source.getLedger().spilled());
+        assertEquals(3072, destination.getLedger().spilled());
+
+        List<Transaction> transactions = source.getTransactions();
+        assertEquals(ids, ids(transactions));
+        Transaction transfer = transactions.get(1);
+        assertEquals(Transaction.TransactionType.DEBIT, transfer.getType());
+        assertSame(destination, transfer.getToAccount().get());
+        assertEquals(2999L, destination.getTransactions().get(2999).getAmountMinorUnits());
+        assertEquals(100_000_000L - 4999L * 5000L / 2, source.getBalanceMinorUnits());
+    }
+
+    @Test
+    public void testScheduledSpills() throws IOException, InterruptedException {
+        InMemoryBankDataSource dataSource = new InMemoryBankDataSource();
+        Account account = dataSource.createAccount(new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7)),
+                Account.AccountType.SAVINGS);
+        try (LedgerSpiller spiller = new LedgerSpiller(dataSource,
+                new LedgerArchive(folder.getRoot().toPath(), 1, LedgerArchive.DEFAULT_SEGMENT_SIZE), 0, 0)) {
+            spiller.schedule(10, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < 10_000; i++) {
+                account.deposit(1L, Optional.empty());
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (account.getLedger().spilled() < 9 * 1024 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(9 * 1024, account.getLedger().spilled());
+        assertEquals(10_000, account.getTransactions().size());
+        assertEquals(10_000L, account.getBalanceMinorUnits());
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        List<Long> ids = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            ids.add(transaction.getId());
+        }
+        return ids;
+    }
+}
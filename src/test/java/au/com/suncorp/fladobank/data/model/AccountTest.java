@@ -5,8 +5,15 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AccountTest {
 
@@ -30,6 +37,24 @@ public class AccountTest {
         assertTrue(account.getId() > 0);
     }
 
+    @Test
+    public void testTransactionDatesOutsideUtc() {
+        TimeZone zone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Australia/Sydney"));
+        try {
+            long before = System.currentTimeMillis();
+            account.deposit(BigDecimal.valueOf(100), Optional.empty());
+            long after = System.currentTimeMillis();
+
+            Transaction txn = account.getTransactions().get(0);
+            assertTrue(txn.getTimestamp() >= before && txn.getTimestamp() <= after);
+            assertEquals(LocalDateTime.ofInstant(Instant.ofEpochMilli(txn.getTimestamp()), ZoneId.of("Australia/Sydney")), txn.getDate());
+            assertEquals(txn.getTimestamp(), Timestamps.toEpochMillis(txn.getDate()));
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+    }
+
     @Test
     public void testDeposit() {
         Long txnId = account.deposit(BigDecimal.valueOf(100), Optional.empty());
@@ -95,4 +120,242 @@ public class AccountTest {
         assertEquals(BigDecimal.valueOf(5), txn.getAmount());
         assertEquals(Transaction.TransactionType.CREDIT, txn.getType());
     }
+
+    @Test
+    public void testLockFreeConcurrentOperations() throws InterruptedException {
+        Account source = new Account(customer, Account.AccountType.DEPOSIT, Account.Engine.LOCK_FREE);
+        Account destination = new Account(customer, Account.AccountType.DEPOSIT, Account.Engine.LOCK_FREE);
+        source.deposit(BigDecimal.valueOf(1000), Optional.empty());
+
+        int threads = 4;
+        int operations = 5000;
+        AtomicInteger rejected = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < operations; i++) {
+                    source.deposit(1L, Optional.empty());
+                    try {
+                        source.transfer(3L, destination);
+                    } catch (InsufficientFundsAccountException e) {
+                        rejected.incrementAndGet();
+                    }
+                    destination.widthdraw(0L, Optional.empty());
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long transfers = (long) threads * operations - rejected.get();
+        assertEquals(100000L + threads * operations - 3 * transfers, source.getBalanceMinorUnits());
+        assertEquals(3 * transfers, destination.getBalanceMinorUnits());
+        assertEquals(1 + threads * operations + transfers, source.getTransactions().size());
+        assertEquals(transfers + threads * operations, destination.getTransactions().size());
+    }
+
+    @Test(timeout = 10000)
+    public void testLockFreeAccountWithOpeningBalance() {
+        Account account = new Account(customer, Account.AccountType.DEPOSIT, Account.Engine.LOCK_FREE, 500L);
+        account.deposit(1L, Optional.empty());
+        account.widthdraw(2L, Optional.empty());
+
+        assertEquals(499L, account.getBalanceMinorUnits());
+        assertEquals(3, account.getTransactions().size());
+    }
+
+    @Test(expected = InsufficientFundsAccountException.class)
+    public void testLockFreeWithdrawalWhenInsufficientFunds() {
+        Account lockFree = new Account(customer, Account.AccountType.DEPOSIT, Account.Engine.LOCK_FREE);
+        lockFree.deposit(BigDecimal.valueOf(100), Optional.empty());
+        lockFree.widthdraw(BigDecimal.valueOf(200), Optional.empty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArgumentWhenTransferBetweenEngines() {
+        account.deposit(BigDecimal.valueOf(100), Optional.empty());
+        account.transfer(BigDecimal.valueOf(10), new Account(customer, Account.AccountType.DEPOSIT, Account.Engine.LOCK_FREE));
+    }
+
+    @Test
+    public void testStripedCreditsConcurrentDeposits() throws InterruptedException {
+        Account destination = new Account(customer, Account.AccountType.DEPOSIT);
+        account.enableStripedCredits();
+        assertTrue(account.isStripedCredits());
+
+        int threads = 4;
+        int operations = 5000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < operations; i++) {
+                    account.deposit(2L, Optional.empty());
+                    account.transfer(1L, destination);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * operations, account.getBalanceMinorUnits());
+        assertEquals(threads * operations, destination.getBalanceMinorUnits());
+        assertEquals(2 * threads * operations, account.getTransactions().size());
+        long credits = account.getTransactions().stream()
+                .filter(txn -> txn.getType() == Transaction.TransactionType.CREDIT).count();
+        assertEquals(threads * operations, credits);
+    }
+
+    @Test
+    public void testStripedCreditsAreReconciledForWithdrawal() {
+        account.enableStripedCredits();
+        account.deposit(BigDecimal.valueOf(100), Optional.empty());
+        account.deposit(BigDecimal.valueOf(50), Optional.empty());
+
+        account.widthdraw(BigDecimal.valueOf(120), Optional.empty());
+
+        assertEquals(BigDecimal.valueOf(30), account.getBalance());
+        assertEquals(3, account.getTransactionCount());
+    }
+
+    @Test
+    public void testOptimisticBalanceReadsDuringStripedDeposits() throws InterruptedException {
+        account.enableStripedCredits();
+        AtomicInteger regressions = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    account.deposit(1L, Optional.empty());
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            long last = 0L;
+            while (last < 20000L) {
+                long balance = account.getBalanceMinorUnits();
+                if (balance < last) {
+                    regressions.incrementAndGet();
+                }
+                last = balance;
+            }
+        });
+        threads.forEach(Thread::start);
+        reader.start();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reader.join();
+
+        // the drains never make the balance look smaller
+        assertEquals(0, regressions.get());
+        assertEquals(20000L, account.getBalanceMinorUnits());
+    }
+
+    @Test
+    public void testTransferBatchStatuses() {
+        Account source = new Account(customer, Account.AccountType.DEPOSIT, Account.Engine.LOCKING, 100L);
+        Account full = new Account(customer, Account.AccountType.DEPOSIT, Account.Engine.LOCKING, Long.MAX_VALUE);
+        Account destination = new Account(customer, Account.AccountType.DEPOSIT);
+        IdGenerator defaultGenerator = BaseEntity.getIdGenerator();
+        long[] txnIds = new long[3];
+        Account.TransferStatus[] statuses;
+        try {
+            // a transaction id is not mistaken for a rejection
+            BaseEntity.setIdGenerator(() -> 0L);
+            statuses = Account.transferBatch(new Account[]{source, source, source}, new Account[]{destination, destination, full},
+                    new long[]{40L, 70L, 10L}, txnIds);
+        } finally {
+            BaseEntity.setIdGenerator(defaultGenerator);
+        }
+
+        assertArrayEquals(new Account.TransferStatus[]{Account.TransferStatus.APPLIED, Account.TransferStatus.INSUFFICIENT_FUNDS,
+                Account.TransferStatus.BALANCE_OVERFLOW}, statuses);
+        assertEquals(0L, txnIds[0]);
+        assertEquals(60L, source.getBalanceMinorUnits());
+        assertEquals(40L, destination.getBalanceMinorUnits());
+        assertEquals(Long.MAX_VALUE, full.getBalanceMinorUnits());
+    }
+
+    @Test
+    public void testStripedDepositOverflowIsRejected() {
+        account.enableStripedCredits();
+        account.deposit(Long.MAX_VALUE - 10L, Optional.empty());
+        try {
+            account.deposit(20L, Optional.empty());
+            fail("The balance overflow was not rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        account.deposit(5L, Optional.empty());
+
+        assertEquals(Long.MAX_VALUE - 5L, account.getBalanceMinorUnits());
+        assertEquals(2, account.getTransactionCount());
+    }
+
+    @Test
+    public void testStripedCreditsKeepTheLedgerInOrder() throws InterruptedException {
+        account.enableStripedCredits();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    account.deposit(1L, Optional.empty());
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(20000L, account.getBalanceMinorUnits());
+        assertEquals(0L, account.snapshot().getDisorder());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIllegalStateWhenStripingLockFreeAccount() {
+        new Account(customer, Account.AccountType.DEPOSIT, Account.Engine.LOCK_FREE).enableStripedCredits();
+    }
+
+    @Test
+    public void testCombiningConcurrentOperations() throws InterruptedException {
+        account.enableCombining();
+        assertTrue(account.isCombining());
+        account.deposit(BigDecimal.valueOf(10), Optional.empty());
+
+        int threads = 8;
+        int operations = 5000;
+        AtomicInteger rejected = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < operations; i++) {
+                    assertTrue(account.deposit(1L, Optional.empty()) > 0);
+                    try {
+                        account.widthdraw(2L, Optional.empty());
+                    } catch (InsufficientFundsAccountException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long withdrawals = (long) threads * operations - rejected.get();
+        assertEquals(1000L + threads * operations - 2 * withdrawals, account.getBalanceMinorUnits());
+        List<Transaction> transactions = account.getTransactions();
+        assertEquals(1 + threads * operations + withdrawals, transactions.size());
+        long balance = 0;
+        for (Transaction txn : transactions) { //the ledger order is the order the operations were applied in
+            balance += txn.getType() == Transaction.TransactionType.CREDIT ? txn.getAmountMinorUnits() : -txn.getAmountMinorUnits();
+            assertTrue(balance >= 0);
+        }
+    }
 }
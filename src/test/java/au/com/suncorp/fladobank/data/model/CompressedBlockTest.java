@@ -0,0 +1,198 @@
+package au.com.suncorp.fladobank.data.model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CompressedBlockTest {
+
+    /**
+     * Size of a transaction serialised field by field: id, amount, type, from and to account ids and timestamp
+     */
+    private static final int PLAIN_ROW_SIZE = 41;
+
+    @Test
+    public void testRoundTrip() {
+        Rows rows = new Rows(1000);
+        Random random = new Random(7);
+        long id = (123_456L << TimeOrderedIdGenerator.SEQUENCE_BITS) + 5;
+        long timestamp = 1_600_000_000_000L;
+        for (int i = 0; i < rows.size; i++) {
+            id += random.nextInt(3) == 0 ? 1 : (long) random.nextInt(5) << TimeOrderedIdGenerator.SEQUENCE_BITS;
+            timestamp += random.nextInt(4) - 1;
+            rows.set(i, i % 3 == 0 ? id - 3 : id, random.nextBoolean() ? Ledger.CREDIT : Ledger.DEBIT,
+                    i == 10 ? Long.MAX_VALUE : random.nextInt(100_000), timestamp,
+                    i % 4 == 0 ? 0L : 1000L + random.nextInt(3));
+        }
+        CompressedBlock block = encode(rows, ByteBuffer.allocateDirect(CompressedBlock.maxSize(rows.size) + 10), 10);
+
+        for (int i = 0; i < rows.size; i++) {
+            assertRow(rows, block, i);
+        }
+        for (int i = rows.size - 1; i >= 0; i -= 7) {
+            assertRow(rows, block, i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertRow(rows, block, random.nextInt(rows.size));
+        }
+    }
+
+    @Test
+    public void testConcurrentReaders() throws InterruptedException, ExecutionException {
+        Rows rows = new Rows(Ledger.CHUNK_SIZE);
+        for (int i = 0; i < rows.size; i++) {
+            rows.set(i, i + 1L, Ledger.CREDIT, i, i / 10, i % 2 == 0 ? 0L : i / 100 + 1);
+        }
+        CompressedBlock block = encode(rows, ByteBuffer.allocateDirect(CompressedBlock.maxSize(rows.size)), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int step = t + 1;
+                futures.add(executor.submit(() -> {
+                    for (int pass = 0; pass < 20; pass++) {
+                        for (int i = pass % step; i < rows.size; i += step) {
+                            assertRow(rows, block, i);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCorruptedBlock() {
+        Rows rows = new Rows(100);
+        for (int i = 0; i < rows.size; i++) {
+            rows.set(i, i + 1L, Ledger.DEBIT, 5L, i, 9L);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(CompressedBlock.maxSize(rows.size));
+        CompressedBlock.encode(7L, 0, rows, rows.size, buffer, 0);
+        int last = new CompressedBlock(buffer, 0).length() - 1;
+        buffer.put(last, (byte) (buffer.get(last) ^ 1));
+        try {
+            new CompressedBlock(buffer, 0).amount(99);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Corrupted ledger block at offset 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSizeOfAnAccountHistory() {
+        Account account = new Account(new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7)), Account.AccountType.SAVINGS);
+        Account[] counterparties = new Account[5];
+        for (int i = 0; i < counterparties.length; i++) {
+            counterparties[i] = new Account(new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7)), Account.AccountType.SAVINGS);
+            counterparties[i].deposit(1_000_000L, Optional.empty());
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < Ledger.CHUNK_SIZE; i++) {
+            switch (i % 4) {
+                case 0:
+                    account.deposit(random.nextInt(50_000), Optional.empty());
+                    break;
+                case 1:
+                    account.deposit(random.nextInt(50_000), Optional.of(counterparties[random.nextInt(2)]));
+                    break;
+                default:
+                    account.transfer(random.nextInt(1000), counterparties[random.nextInt(counterparties.length)]);
+            }
+        }
+        Ledger ledger = account.getLedger();
+        Rows rows = new Rows(Ledger.CHUNK_SIZE);
+        for (int i = 0; i < rows.size; i++) {
+            rows.set(i, ledger.getId(i), ledger.getType(i) == Transaction.TransactionType.CREDIT ? Ledger.CREDIT : Ledger.DEBIT,
+                    ledger.getAmountMinorUnits(i), ledger.getTimestamp(i), ledger.getCounterpartyId(i));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(CompressedBlock.maxSize(rows.size));
+        int length = CompressedBlock.encode(account.getId(), 0, rows, rows.size, buffer, 0);
+
+        assertTrue("block of " + length + " bytes", length * 4 <= rows.size * PLAIN_ROW_SIZE);
+        assertRow(rows, new CompressedBlock(buffer, 0), rows.size - 1);
+    }
+
+    private static CompressedBlock encode(Rows rows, ByteBuffer buffer, int offset) {
+        int length = CompressedBlock.encode(42L, 0, rows, rows.size, buffer, offset);
+        CompressedBlock block = new CompressedBlock(buffer, offset);
+        assertEquals(length, block.length());
+        assertTrue(length <= CompressedBlock.maxSize(rows.size));
+        return block;
+    }
+
+    private static void assertRow(Rows rows, CompressedBlock block, int row) {
+        assertEquals(rows.ids[row], block.id(row));
+        assertEquals(rows.types[row], block.type(row));
+        assertEquals(rows.amounts[row], block.amount(row));
+        assertEquals(rows.timestamps[row], block.timestamp(row));
+        assertEquals(rows.counterparties[row], block.counterparty(row));
+    }
+
+    private static final class Rows extends Ledger.Chunk {
+
+        final int size;
+        final long[] ids;
+        final byte[] types;
+        final long[] amounts;
+        final long[] timestamps;
+        final long[] counterparties;
+
+        Rows(int size) {
+            this.size = size;
+            ids = new long[size];
+            types = new byte[size];
+            amounts = new long[size];
+            timestamps = new long[size];
+            counterparties = new long[size];
+        }
+
+        void set(int row, long id, byte type, long amount, long timestamp, long counterparty) {
+            ids[row] = id;
+            types[row] = type;
+            amounts[row] = amount;
+            timestamps[row] = timestamp;
+            counterparties[row] = counterparty;
+        }
+
+        @Override
+        long id(int offset) {
+            return ids[offset];
+        }
+
+        @Override
+        byte type(int offset) {
+            return types[offset];
+        }
+
+        @Override
+        long amount(int offset) {
+            return amounts[offset];
+        }
+
+        @Override
+        long timestamp(int offset) {
+            return timestamps[offset];
+        }
+
+        @Override
+        long counterparty(int offset) {
+            return counterparties[offset];
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package au.com.suncorp.fladobank.data.model;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ContentionTrackerTest {
+
+    private final Customer customer = new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+
+    @After
+    public void stopTracking() {
+        Account.setContentionTracker(null);
+    }
+
+    @Test
+    public void testSketchKeepsHottestAccounts() {
+        ContentionTracker tracker = new ContentionTracker(4);
+        for (int i = 0; i < 100; i++) {
+            tracker.record(1L, 1_000, 3);
+            tracker.record(2L, 500, 2);
+            tracker.record(100L + i, 10, 1); // cold accounts seen once
+        }
+
+        List<ContentionTracker.HotAccount> hottest = tracker.getHotAccounts(2);
+        assertEquals(2, hottest.size());
+        assertEquals(1L, hottest.get(0).getAccountId());
+        assertEquals(100, hottest.get(0).getContendedLocks());
+        assertEquals(100_000, hottest.get(0).getWaitNanos());
+        assertEquals(3, hottest.get(0).getMaxQueueLength());
+        assertEquals(2L, hottest.get(1).getAccountId());
+        assertEquals(300, tracker.getContendedLocks());
+        assertTrue(tracker.getHotAccounts(10).size() <= 4);
+
+        tracker.reset();
+        assertEquals(0, tracker.getContendedLocks());
+        assertTrue(tracker.getHotAccounts(10).isEmpty());
+    }
+
+    @Test
+    public void testContendedAccountIsReported() throws InterruptedException {
+        ContentionTracker tracker = new ContentionTracker(8);
+        Account.setContentionTracker(tracker);
+        Account hot = new Account(customer, Account.AccountType.DEPOSIT);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Account own = new Account(customer, Account.AccountType.DEPOSIT);
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    hot.deposit(1L, Optional.empty());
+                    own.deposit(1L, Optional.empty());
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(160_000L, hot.getBalanceMinorUnits());
+        assertTrue(tracker.getContendedLocks() > 0);
+        ContentionTracker.HotAccount hottest = tracker.getHotAccounts(1).get(0);
+        assertEquals(hot.getId().longValue(), hottest.getAccountId());
+        assertTrue(hottest.getMaxQueueLength() >= 1);
+    }
+}
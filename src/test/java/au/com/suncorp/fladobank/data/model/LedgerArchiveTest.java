@@ -0,0 +1,169 @@
+package au.com.suncorp.fladobank.data.model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class LedgerArchiveTest {
+
+    private static final long OWNER_ID = 42L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSpillKeepsTheRows() throws IOException {
+        LedgerArchive archive = new LedgerArchive(folder.getRoot().toPath(), 2, LedgerArchive.DEFAULT_SEGMENT_SIZE);
+        Ledger ledger = new Ledger(OWNER_ID);
+        append(ledger, 0, 5000);
+
+        assertEquals(3 * Ledger.CHUNK_SIZE, ledger.spill(archive, 1000, Long.MIN_VALUE));
+        assertEquals(3 * Ledger.CHUNK_SIZE, ledger.spilled());
+        assertEquals(0, ledger.spill(archive, 1000, Long.MIN_VALUE));
+        assertEquals(3L * LedgerArchive.BLOCK_SIZE, archive.getArchivedBytes());
+        verify(ledger, 5000);
+        assertEquals(2000, ledger.lowerBound(timestamp(2000), 5000));
+        assertEquals(4500, ledger.lowerBound(timestamp(4500), 5000));
+
+        append(ledger, 5000, 1000);
+        assertEquals(Ledger.CHUNK_SIZE, ledger.spill(archive, 1000, Long.MIN_VALUE));
+        verify(ledger, 6000);
+    }
+
+    @Test
+    public void testCompressedSpill() throws IOException {
+        LedgerArchive archive = new LedgerArchive(folder.getRoot().toPath(), 2, LedgerArchive.DEFAULT_SEGMENT_SIZE,
+                LedgerArchive.Format.COMPRESSED);
+        Ledger ledger = new Ledger(OWNER_ID);
+        append(ledger, 0, 5000);
+
+        assertEquals(4 * Ledger.CHUNK_SIZE, ledger.spill(archive, 0, Long.MIN_VALUE));
+        assertTrue(archive.getArchivedBytes() * 3 < 4L * LedgerArchive.BLOCK_SIZE);
+        verify(ledger, 5000);
+        assertEquals(2000, ledger.lowerBound(timestamp(2000), 5000));
+        assertEquals(4500, ledger.lowerBound(timestamp(4500), 5000));
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        for (LedgerArchive.Format format : LedgerArchive.Format.values()) {
+            LedgerArchive archive = new LedgerArchive(folder.newFolder().toPath(), 1, LedgerArchive.DEFAULT_SEGMENT_SIZE, format);
+            Ledger ledger = new Ledger(OWNER_ID);
+            append(ledger, 0, 5000);
+            ledger.spill(archive, 1000, Long.MIN_VALUE);
+
+            int[] next = {100};
+            ledger.scan(100, 4900, (id, type, amount, timestamp, counterpartyId) -> {
+                int i = next[0]++;
+                assertEquals(i + 1L, id);
+                assertEquals(i % 3 == 0 ? Transaction.TransactionType.DEBIT : Transaction.TransactionType.CREDIT, type);
+                assertEquals(i, amount);
+                assertEquals(timestamp(i), timestamp);
+                assertEquals(i % 5 == 0 ? 0L : 1000L + i, counterpartyId);
+            });
+            assertEquals(4900, next[0]);
+        }
+    }
+
+    @Test
+    public void testSpillByAge() throws IOException {
+        LedgerArchive archive = new LedgerArchive(folder.getRoot().toPath(), 1, LedgerArchive.DEFAULT_SEGMENT_SIZE);
+        Ledger ledger = new Ledger(OWNER_ID);
+        append(ledger, 0, 4000);
+
+        // the chunk holding the row 2047 is the last one entirely dated before the row 2500
+        assertEquals(2 * Ledger.CHUNK_SIZE, ledger.spill(archive, Integer.MAX_VALUE, timestamp(2500)));
+        verify(ledger, 4000);
+    }
+
+    @Test
+    public void testConcurrentSpills() throws IOException, InterruptedException {
+        // two blocks per segment, the shards roll over to new segment files
+        LedgerArchive archive = new LedgerArchive(folder.getRoot().toPath(), 3, 2 * LedgerArchive.BLOCK_SIZE);
+        Ledger ledger = new Ledger(OWNER_ID);
+        int rows = 50 * Ledger.CHUNK_SIZE;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> append(ledger, 0, rows));
+        Thread reader = new Thread(() -> {
+            try {
+                while (ledger.size() < rows) {
+                    int size = ledger.size();
+                    for (int i = 0; i < size; i += 97) {
+                        assertEquals(i + 1L, ledger.getId(i));
+                        assertEquals(i, ledger.getAmountMinorUnits(i));
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        reader.start();
+        while (writer.isAlive()) {
+            ledger.spill(archive, 0, Long.MIN_VALUE);
+        }
+        writer.join();
+        reader.join();
+        assertNull(failure.get());
+        ledger.spill(archive, 0, Long.MIN_VALUE);
+
+        assertEquals(rows, ledger.spilled());
+        verify(ledger, rows);
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(25, files.count());
+        }
+    }
+
+    @Test
+    public void testOpenDeletesPreviousSegments() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Ledger ledger = new Ledger(OWNER_ID);
+        append(ledger, 0, 2 * Ledger.CHUNK_SIZE);
+        ledger.spill(new LedgerArchive(directory, 1, LedgerArchive.BLOCK_SIZE), 0, Long.MIN_VALUE);
+
+        new LedgerArchive(directory, 1, LedgerArchive.BLOCK_SIZE);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testInvalidArchive() throws IOException {
+        try {
+            new LedgerArchive(folder.getRoot().toPath(), 1, LedgerArchive.BLOCK_SIZE - 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void append(Ledger ledger, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            ledger.append(i + 1L, i % 3 == 0 ? Transaction.TransactionType.DEBIT : Transaction.TransactionType.CREDIT,
+                    i, timestamp(i), i % 5 == 0 ? 0L : 1000L + i);
+        }
+    }
+
+    private static void verify(Ledger ledger, int count) {
+        assertEquals(count, ledger.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i + 1L, ledger.getId(i));
+            assertEquals(i % 3 == 0 ? Transaction.TransactionType.DEBIT : Transaction.TransactionType.CREDIT, ledger.getType(i));
+            assertEquals(i, ledger.getAmountMinorUnits(i));
+            assertEquals(timestamp(i), ledger.getTimestamp(i));
+            assertEquals(i % 5 == 0 ? 0L : 1000L + i, ledger.getCounterpartyId(i));
+        }
+    }
+
+    private static long timestamp(int row) {
+        return 1_600_000_000_000L + row * 1000L;
+    }
+}
@@ -0,0 +1,199 @@
+package au.com.suncorp.fladobank.data.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LedgerTest {
+
+    private static final long OWNER_ID = 42L;
+
+    private Ledger ledger;
+
+    @Before
+    public void init() {
+        ledger = new Ledger(OWNER_ID);
+    }
+
+    @Test
+    public void testAppend() {
+        LocalDateTime date = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        ledger.append(1L, Transaction.TransactionType.CREDIT, 10050L, date, 0L);
+        ledger.append(2L, Transaction.TransactionType.DEBIT, 50L, date, 7L);
+
+        assertEquals(2, ledger.size());
+        assertEquals(1L, ledger.getId(0));
+        assertEquals(Transaction.TransactionType.CREDIT, ledger.getType(0));
+        assertEquals(10050L, ledger.getAmountMinorUnits(0));
+        assertEquals(date, ledger.getDate(0));
+        assertEquals(0L, ledger.getFromAccountId(0));
+        assertEquals(OWNER_ID, ledger.getToAccountId(0));
+
+        assertEquals(Transaction.TransactionType.DEBIT, ledger.getType(1));
+        assertEquals(OWNER_ID, ledger.getFromAccountId(1));
+        assertEquals(7L, ledger.getToAccountId(1));
+        assertEquals(7L, ledger.getCounterpartyId(1));
+    }
+
+    @Test
+    public void testAppendAcrossChunks() {
+        LocalDateTime date = LocalDateTime.now();
+        int count = Ledger.CHUNK_SIZE * 3 + 5;
+        for (int i = 0; i < count; i++) {
+            ledger.append(i + 1, i % 2 == 0 ? Transaction.TransactionType.CREDIT : Transaction.TransactionType.DEBIT, i, date, 0L);
+        }
+        assertEquals(count, ledger.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i + 1, ledger.getId(i));
+            assertEquals(i, ledger.getAmountMinorUnits(i));
+            assertEquals(i % 2 == 0 ? Transaction.TransactionType.CREDIT : Transaction.TransactionType.DEBIT, ledger.getType(i));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        ledger.append(1L, Transaction.TransactionType.CREDIT, 1L, LocalDateTime.now(), 0L);
+        ledger.getId(1);
+    }
+
+    @Test
+    public void testListView() {
+        ledger.append(1L, Transaction.TransactionType.CREDIT, 100L, LocalDateTime.now(), 0L);
+        List<Long> ids = ledger.asList(Ledger::getId);
+        ledger.append(2L, Transaction.TransactionType.CREDIT, 100L, LocalDateTime.now(), 0L);
+
+        assertEquals(1, ids.size()); // transactions appended after the view was taken are not visible
+        assertEquals(Long.valueOf(1L), ids.get(0));
+        assertEquals(2, ledger.asList(Ledger::getId).size());
+        try {
+            ids.add(3L);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLowerBound() {
+        LocalDateTime date = LocalDateTime.of(2020, 1, 1, 0, 0);
+        int count = Ledger.CHUNK_SIZE * 2 + 5;
+        for (int i = 0; i < count; i++) {
+            ledger.append(i + 1, Transaction.TransactionType.CREDIT, 1L, date.plusSeconds(i / 2), 0L);
+        }
+        long start = ledger.getTimestamp(0);
+
+        assertEquals(0, ledger.lowerBound(start - 1, count));
+        assertEquals(0, ledger.lowerBound(start, count));
+        assertEquals(2, ledger.lowerBound(start + 1, count));
+        assertEquals(1000, ledger.lowerBound(start + 500_000, count));
+        assertEquals(count, ledger.lowerBound(start + 10_000_000, count));
+        assertEquals(10, ledger.lowerBound(start + 500_000, 10));
+    }
+
+    @Test
+    public void testOutOfOrderTimestampsAreKept() {
+        LocalDateTime date = LocalDateTime.of(2020, 1, 1, 0, 0);
+        ledger.append(1L, Transaction.TransactionType.CREDIT, 1L, date, 0L);
+        ledger.append(2L, Transaction.TransactionType.CREDIT, 1L, date.minusSeconds(1), 0L);
+        ledger.append(3L, Transaction.TransactionType.CREDIT, 1L, date.plusSeconds(1), 0L);
+
+        assertEquals(date.minusSeconds(1), ledger.getDate(1));
+        assertEquals(date.plusSeconds(1), ledger.getDate(2));
+        long timestamp = ledger.getTimestamp(1);
+        assertEquals(0, ledger.lowerBound(timestamp, 3));
+        assertEquals(2, ledger.upperBound(timestamp + 1, 3));
+    }
+
+    @Test
+    public void testBoundsWithOutOfOrderTimestamps() {
+        Random random = new Random(7);
+        long start = 1_600_000_000_000L;
+        int count = Ledger.CHUNK_SIZE * 3;
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            // mostly in order, some rows dated up to 5 seconds before the previous ones
+            timestamps[i] = start + i * 100L - (random.nextInt(10) == 0 ? random.nextInt(5000) : 0);
+            ledger.append(i + 1, Transaction.TransactionType.CREDIT, 1L, timestamps[i], 0L);
+        }
+        for (int query = 0; query < 200; query++) {
+            long from = start + random.nextInt(count * 100);
+            long to = from + random.nextInt(20_000);
+            int lower = ledger.lowerBound(from, count);
+            int upper = ledger.upperBound(to, count);
+            for (int i = 0; i < count; i++) {
+                boolean inRange = timestamps[i] >= from && timestamps[i] < to;
+                assertTrue(!inRange || (i >= lower && i < upper));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentReader() throws InterruptedException {
+        int count = Ledger.CHUNK_SIZE * 20;
+        AtomicReference<AssertionError> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            int size;
+            do {
+                size = ledger.size();
+                for (int i = 0; i < size; i++) {
+                    if (ledger.getId(i) != i + 1 || ledger.getAmountMinorUnits(i) != i) {
+                        failure.set(new AssertionError("Row " + i + " not fully visible"));
+                        return;
+                    }
+                }
+            } while (size < count);
+        });
+        reader.start();
+        LocalDateTime date = LocalDateTime.now();
+        for (int i = 0; i < count; i++) {
+            ledger.append(i + 1, Transaction.TransactionType.CREDIT, i, date, 0L);
+        }
+        reader.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    @Test
+    public void testAppendConcurrently() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            ledger.append(i + 1, Transaction.TransactionType.CREDIT, i, start, 0L);
+        }
+        int threads = 4;
+        int perThread = Ledger.CHUNK_SIZE * 3 + 7;
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long first = (t + 1) * 1_000_000L;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ledger.appendConcurrently(first + i, Transaction.TransactionType.DEBIT, i, System.currentTimeMillis(), 7L);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(3 + threads * perThread, ledger.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, ledger.getId(i));
+        }
+        // the rows of each writer are in its order and every row is found by a search on its date
+        long[] expected = {1_000_000L, 2_000_000L, 3_000_000L, 4_000_000L};
+        for (int i = 3; i < ledger.size(); i++) {
+            int writer = (int) (ledger.getId(i) / 1_000_000L) - 1;
+            assertEquals(expected[writer]++, ledger.getId(i));
+            assertEquals(7L, ledger.getCounterpartyId(i));
+            assertTrue(ledger.lowerBound(ledger.getTimestamp(i), ledger.size()) <= i);
+            assertTrue(ledger.upperBound(ledger.getTimestamp(i) + 1, ledger.size()) > i);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package au.com.suncorp.fladobank.data.model;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class MoneyTest {
+
+    @Test
+    public void testToMinorUnits() {
+        assertEquals(10000L, Money.toMinorUnits(BigDecimal.valueOf(100)));
+        assertEquals(10050L, Money.toMinorUnits(new BigDecimal("100.5")));
+        assertEquals(1L, Money.toMinorUnits(new BigDecimal("0.01")));
+        assertEquals(10000L, Money.toMinorUnits(new BigDecimal("100.000")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testToMinorUnitsRejectsFractionOfCent() {
+        Money.toMinorUnits(new BigDecimal("0.001"));
+    }
+
+    @Test
+    public void testToMinorUnitsWithRounding() {
+        assertEquals(1L, Money.toMinorUnits(new BigDecimal("0.005"), RoundingMode.HALF_UP));
+        assertEquals(0L, Money.toMinorUnits(new BigDecimal("0.005"), RoundingMode.HALF_EVEN));
+    }
+
+    @Test
+    public void testToBigDecimal() {
+        assertEquals(BigDecimal.valueOf(100), Money.toBigDecimal(10000L));
+        assertEquals(new BigDecimal("100.50"), Money.toBigDecimal(10050L));
+        assertEquals(BigDecimal.ZERO, Money.toBigDecimal(0L));
+    }
+
+    @Test
+    public void testOverflow() {
+        assertEquals(Long.MAX_VALUE, Money.add(Long.MAX_VALUE - 1, 1));
+        try {
+            Money.add(Long.MAX_VALUE, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            Money.subtract(Long.MIN_VALUE, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
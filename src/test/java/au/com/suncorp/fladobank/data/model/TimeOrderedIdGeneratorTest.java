@@ -0,0 +1,119 @@
+package au.com.suncorp.fladobank.data.model;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TimeOrderedIdGeneratorTest {
+
+    private final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+
+    @Test
+    public void testIdsAreIncreasingAndCarryCreationTime() {
+        Instant before = Instant.ofEpochMilli(System.currentTimeMillis());
+        long previous = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        Instant after = Instant.ofEpochMilli(System.currentTimeMillis());
+
+        Instant created = TimeOrderedIdGenerator.getTimestamp(previous);
+        assertFalse(created.isBefore(before));
+        assertFalse(created.isAfter(after));
+    }
+
+    @Test
+    public void testIdsAreUniqueAcrossThreads() throws InterruptedException {
+        int threads = 8;
+        long[][] ids = new long[threads][200_000];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long[] threadIds = ids[t];
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < threadIds.length; i++) {
+                    threadIds[i] = generator.nextId();
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Set<Long> unique = new HashSet<>();
+        for (long[] threadIds : ids) {
+            for (long id : threadIds) {
+                assertTrue(id > 0);
+                assertTrue(unique.add(id));
+            }
+        }
+    }
+
+    @Test
+    public void testIdsDoNotRunAheadOfTheClock() {
+        long previous = 0;
+        for (int i = 0; i < 2_000_000; i++) {
+            previous = generator.nextId();
+        }
+        Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+
+        assertFalse(TimeOrderedIdGenerator.getTimestamp(previous).isAfter(now));
+    }
+
+    @Test
+    public void testIdsOfDifferentNodesAreDistinct() {
+        TimeOrderedIdGenerator other = new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE);
+        Set<Long> unique = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            long otherId = other.nextId();
+            assertEquals(0, TimeOrderedIdGenerator.getNode(id));
+            assertEquals(TimeOrderedIdGenerator.MAX_NODE, TimeOrderedIdGenerator.getNode(otherId));
+            assertTrue(unique.add(id));
+            assertTrue(unique.add(otherId));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeOutOfRange() {
+        new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE + 1);
+    }
+
+    @Test
+    public void testShortLivedThreadsDoNotWasteIds() throws InterruptedException {
+        long[] ids = new long[1000];
+        for (int t = 0; t < ids.length; t++) {
+            int index = t;
+            Thread thread = new Thread(() -> ids[index] = generator.nextId());
+            thread.start();
+            thread.join();
+        }
+
+        Set<Long> unique = new HashSet<>();
+        for (long id : ids) {
+            assertTrue(unique.add(id));
+            // at most one sequence number per id in a millisecond
+            assertTrue((id & (1L << TimeOrderedIdGenerator.COUNTER_BITS) - 1) < ids.length);
+        }
+    }
+
+    @Test
+    public void testEntitiesUseTheIdGenerator() {
+        IdGenerator defaultGenerator = BaseEntity.getIdGenerator();
+        try {
+            BaseEntity.setIdGenerator(() -> 42L);
+            assertEquals(Long.valueOf(42L), new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7)).getId());
+        } finally {
+            BaseEntity.setIdGenerator(defaultGenerator);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.data.model.Customer;
+import au.com.suncorp.fladobank.data.model.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AccountImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryBankDataSource dataSource;
+
+    private AccountImporter importer;
+
+    @Before
+    public void init() {
+        dataSource = new InMemoryBankDataSource();
+        // small chunks so that rows cross the chunk boundaries
+        importer = new AccountImporter(dataSource, 4, 1000);
+    }
+
+    @After
+    public void close() {
+        importer.close();
+    }
+
+    @Test
+    public void testCsvImport() throws IOException {
+        StringBuilder csv = new StringBuilder("customerRef,firstName,lastName,dob,accountType,openingBalance\n");
+        for (int i = 0; i < 3000; i++) {
+            csv.append(i / 2).append(",Florin,Adochiei").append(i).append(',')
+                    .append(i % 3 == 0 ? "" : "1978-10-07").append(',')
+                    .append(i % 2 == 0 ? "SAVINGS" : "DEPOSIT").append(',')
+                    .append(i).append(".0").append(i % 10).append(i % 5 == 0 ? "\r\n" : "\n");
+        }
+        Path file = folder.newFile("accounts.csv").toPath();
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<AccountImporter.Progress> progress = Collections.synchronizedList(new ArrayList<>());
+        AccountImporter.Progress result = importer.importAccounts(file, AccountImporter.Format.CSV, progress::add);
+
+        assertEquals(3000, result.getAccounts());
+        assertEquals(Files.size(file), result.getBytesRead());
+        assertFalse(progress.isEmpty());
+        assertEquals(3000, dataSource.getAccounts().size());
+        Map<Long, Long> accountsByCustomer = new HashMap<>();
+        long total = 0;
+        for (Account account : dataSource.getAccounts()) {
+            accountsByCustomer.merge(account.getCustomer().getId(), 1L, Long::sum);
+            total += account.getBalanceMinorUnits();
+            // the customer is created from the first row read, of either of its accounts
+            int row = Integer.parseInt(account.getCustomer().getLastName().substring("Adochiei".length()));
+            assertEquals(row % 3 == 0 ? null : LocalDate.of(1978, 10, 7), account.getCustomer().getDob());
+            if (account.getBalanceMinorUnits() > 0) {
+                assertEquals(1, account.getTransactionCount());
+                assertEquals(Transaction.TransactionType.CREDIT, account.getLedger().getType(0));
+                assertEquals(0L, account.getLedger().getCounterpartyId(0));
+            }
+        }
+        assertEquals(1500, accountsByCustomer.size());
+        assertTrue(accountsByCustomer.values().stream().allMatch(count -> count == 2));
+        long expected = 0;
+        for (int i = 0; i < 3000; i++) {
+            expected += i * 100L + i % 10;
+        }
+        assertEquals(expected, total);
+    }
+
+    @Test
+    public void testBinaryImport() throws IOException {
+        Path file = folder.newFile("accounts.bin").toPath();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+             AccountImporter.BinaryWriter writer = new AccountImporter.BinaryWriter(channel)) {
+            for (int i = 0; i < 20000; i++) {
+                writer.write(i, "Florin", "Adochiei", i % 2 == 0 ? null : LocalDate.of(1978, 10, 7),
+                        Account.AccountType.DEPOSIT, 100);
+            }
+        }
+
+        assertEquals(20000, importer.importAccounts(file, AccountImporter.Format.BINARY, null).getAccounts());
+        HashSet<Long> customers = new HashSet<>();
+        for (Account account : dataSource.getAccounts()) {
+            customers.add(account.getCustomer().getId());
+            assertEquals(BigDecimal.ONE, account.getBalance());
+            assertEquals(Account.AccountType.DEPOSIT, account.getType());
+        }
+        assertEquals(20000, customers.size());
+    }
+
+    @Test
+    public void testMalformedRow() throws IOException {
+        Path file = folder.newFile("accounts.csv").toPath();
+        Files.write(file, ("customerRef,firstName,lastName,dob,accountType,openingBalance\n"
+                + "1,Florin,Adochiei,1978-10-07,SAVINGS,10\n"
+                + "2,Florin,Adochiei,1978-10-07,CHEQUE,10\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            importer.importAccounts(file, AccountImporter.Format.CSV, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Malformed row at offset 102", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testOverflowingAmountIsMalformed() throws IOException {
+        Path file = folder.newFile("accounts.csv").toPath();
+        Files.write(file, ("customerRef,firstName,lastName,dob,accountType,openingBalance\n"
+                + "1,Florin,Adochiei,1978-10-07,SAVINGS,10\n"
+                + "2,Florin,Adochiei,1978-10-07,SAVINGS,999999999999999999.99\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            importer.importAccounts(file, AccountImporter.Format.CSV, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Malformed row at offset 102", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCreateAccounts() {
+        Customer customer = new Customer("Florin", "Adochiei", LocalDate.of(1978, 10, 7));
+        Account[] accounts = dataSource.createAccounts(new Customer[]{customer, customer, null},
+                new Account.AccountType[]{Account.AccountType.SAVINGS, Account.AccountType.DEPOSIT, null},
+                new long[]{150, 0, 0}, 2);
+
+        assertEquals(2, accounts.length);
+        assertSame(accounts[0], dataSource.getAccount(accounts[0].getId()));
+        assertEquals(new BigDecimal("1.50"), accounts[0].getBalance());
+        assertEquals(1, accounts[0].getTransactionCount());
+        assertEquals(0, accounts[1].getTransactionCount());
+    }
+}
@@ -0,0 +1,136 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
+import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncFladoBankServiceImplTest {
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private AsyncFladoBankServiceImpl fladoService;
+
+    @Before
+    public void init() {
+        // records how many deposits run at the same time
+        FladoBankService blockingService = new FladoBankServiceImpl(new InMemoryBankDataSource()) {
+            @Override
+            public Long deposit(Long accountNumber, BigDecimal amount) throws AccountNotFoundException {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.yield();
+                    return super.deposit(accountNumber, amount);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+        fladoService = new AsyncFladoBankServiceImpl(blockingService, AsyncFladoBankServiceImpl.newExecutor(8), 1);
+    }
+
+    @After
+    public void close() {
+        fladoService.close();
+    }
+
+    private Long openAccount() {
+        return fladoService.openAccount(new OpenAccountRequest("Florin", "Adochiei", LocalDate.of(1978, 10, 7), Account.AccountType.SAVINGS.toString())).join();
+    }
+
+    @Test
+    public void testOperations() {
+        Long source = openAccount();
+        Long destination = openAccount();
+
+        fladoService.deposit(source, BigDecimal.valueOf(1500))
+                .thenCompose(txnId -> fladoService.withdraw(source, BigDecimal.valueOf(200)))
+                .thenCompose(txnId -> fladoService.transfer(source, destination, BigDecimal.valueOf(300)))
+                .join();
+
+        assertEquals(BigDecimal.valueOf(1000), fladoService.getAccount(source).join().getBalance());
+        assertEquals(BigDecimal.valueOf(300), fladoService.getAccount(destination).join().getBalance());
+        assertEquals(3, fladoService.getTransactions(source).join().size());
+        assertEquals(1, fladoService.getTransactions(destination, 1, 10).join().getTransactions().size());
+    }
+
+    @Test
+    public void testFailuresCompleteExceptionally() {
+        Long source = openAccount();
+        try {
+            fladoService.withdraw(source, BigDecimal.ONE).join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof InsufficientFundsException);
+        }
+        try {
+            fladoService.deposit(Long.MAX_VALUE, BigDecimal.ONE).join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof AccountNotFoundException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArgumentExceptionWhenDepositingNull() {
+        fladoService.deposit(null, BigDecimal.ONE);
+    }
+
+    @Test
+    public void testAccountParallelism() {
+        Long account = openAccount();
+        List<CompletableFuture<Long>> deposits = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            deposits.add(fladoService.deposit(account, BigDecimal.ONE));
+        }
+        CompletableFuture.allOf(deposits.toArray(new CompletableFuture<?>[0])).join();
+
+        assertEquals(1, maxRunning.get());
+        assertEquals(BigDecimal.valueOf(1000), fladoService.getAccount(account).join().getBalance());
+    }
+
+    @Test
+    public void testConcurrentTransfersKeepTotalBalance() {
+        Long[] accounts = new Long[16];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = openAccount();
+            fladoService.deposit(accounts[i], BigDecimal.valueOf(1000)).join();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<CompletableFuture<Long>> transfers = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            transfers.add(fladoService.transfer(accounts[random.nextInt(accounts.length)],
+                    accounts[random.nextInt(accounts.length)], BigDecimal.valueOf(random.nextInt(1, 100))));
+        }
+        for (CompletableFuture<Long> transfer : transfers) {
+            try {
+                transfer.join();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof InsufficientFundsException);
+            }
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long account : accounts) {
+            total = total.add(fladoService.getAccount(account).join().getBalance());
+        }
+        assertEquals(BigDecimal.valueOf(16000), total);
+    }
+}
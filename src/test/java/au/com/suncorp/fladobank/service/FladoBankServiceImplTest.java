@@ -7,11 +7,15 @@ import static org.junit.Assert.*;
 import static org.junit.Assert.assertNotNull;
 
 import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.CustomerNotFoundException;
 import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
 import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
 import au.com.suncorp.fladobank.service.model.response.AccountResponse;
 import au.com.suncorp.fladobank.service.model.response.AccountTransferResponse;
+import au.com.suncorp.fladobank.service.model.response.TransactionPageResponse;
 import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,7 +23,10 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -173,4 +180,163 @@ public class FladoBankServiceImplTest {
         assertEquals(sourceAccountNumber, destTxns.get(0).getFromAccountId());
         assertEquals(destinationAccountNumber, destTxns.get(0).getToAccountId());
     }
+
+    @Test
+    public void testTransactionPages() throws AccountNotFoundException {
+        Long accountNumber = fladoService.openAccount(newOpenAccountRequest());
+        for (int i = 1; i <= 25; i++) {
+            fladoService.deposit(accountNumber, BigDecimal.valueOf(i));
+        }
+
+        TransactionPageResponse page = fladoService.getTransactions(accountNumber, 3, 10);
+        assertEquals(accountNumber, page.getAccountNumber());
+        assertEquals(25, page.getSize());
+        assertEquals(3, page.getPageNumber());
+        assertEquals(10, page.getPageSize());
+        assertEquals(5, page.getTransactions().size());
+        assertEquals(BigDecimal.valueOf(21), page.getTransactions().get(0).getAmount());
+        assertNull(page.getNextCursor());
+
+        assertTrue(fladoService.getTransactions(accountNumber, 4, 10).getTransactions().isEmpty());
+        assertTrue(fladoService.getTransactions(accountNumber, Integer.MAX_VALUE, FladoBankService.MAX_PAGE_SIZE).getTransactions().isEmpty());
+    }
+
+    @Test
+    public void testTransactionCursor() throws AccountNotFoundException {
+        Long accountNumber = fladoService.openAccount(newOpenAccountRequest());
+        for (int i = 1; i <= 25; i++) {
+            fladoService.deposit(accountNumber, BigDecimal.valueOf(i));
+        }
+
+        TransactionPageResponse page = fladoService.getTransactions(accountNumber, (String) null, 10);
+        assertEquals(10, page.getTransactions().size());
+        assertEquals(BigDecimal.valueOf(25), page.getTransactions().get(0).getAmount());
+        assertEquals(BigDecimal.valueOf(16), page.getTransactions().get(9).getAmount());
+        assertNotNull(page.getNextCursor());
+
+        // new transactions do not shift the next pages
+        fladoService.deposit(accountNumber, BigDecimal.valueOf(100));
+
+        page = fladoService.getTransactions(accountNumber, page.getNextCursor(), 10);
+        assertEquals(26, page.getSize());
+        assertEquals(BigDecimal.valueOf(15), page.getTransactions().get(0).getAmount());
+
+        page = fladoService.getTransactions(accountNumber, page.getNextCursor(), 10);
+        assertEquals(5, page.getTransactions().size());
+        assertEquals(BigDecimal.valueOf(1), page.getTransactions().get(4).getAmount());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArgumentWhenCursorIssuedForAnotherAccount() throws AccountNotFoundException {
+        Long accountNumber = fladoService.openAccount(newOpenAccountRequest());
+        Long otherAccountNumber = fladoService.openAccount(newOpenAccountRequest());
+        fladoService.deposit(accountNumber, BigDecimal.valueOf(1));
+        fladoService.deposit(accountNumber, BigDecimal.valueOf(2));
+
+        String cursor = fladoService.getTransactions(accountNumber, (String) null, 1).getNextCursor();
+        fladoService.getTransactions(otherAccountNumber, cursor, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArgumentWhenPageSizeTooLarge() throws AccountNotFoundException {
+        Long accountNumber = fladoService.openAccount(newOpenAccountRequest());
+        fladoService.getTransactions(accountNumber, 1, FladoBankService.MAX_PAGE_SIZE + 1);
+    }
+
+    @Test
+    public void testOpenAccountsForSameCustomer() throws AccountNotFoundException, CustomerNotFoundException {
+        LocalDate dob = LocalDate.of(1980, 2, 29);
+        Long first = fladoService.openAccount(new OpenAccountRequest("Jane", "Citizen", dob, Account.AccountType.SAVINGS.toString()));
+        Long second = fladoService.openAccount(new OpenAccountRequest(" JANE", "citizen ", dob, Account.AccountType.DEPOSIT.toString()));
+        Long other = fladoService.openAccount(new OpenAccountRequest("Jane", "Citizen", dob.plusDays(1), Account.AccountType.DEPOSIT.toString()));
+
+        List<AccountResponse> accounts = fladoService.findAccountsByCustomer(fladoService.getAccount(first).getCustomerId());
+        assertEquals(2, accounts.size());
+        assertEquals(first, accounts.get(0).getAccountNumber());
+        assertEquals(second, accounts.get(1).getAccountNumber());
+        assertEquals("Jane", accounts.get(1).getFirstName());
+        assertNotEquals(accounts.get(0).getCustomerId(), fladoService.getAccount(other).getCustomerId());
+    }
+
+    @Test(expected = CustomerNotFoundException.class)
+    public void testCustomerNotFound() throws CustomerNotFoundException {
+        fladoService.findAccountsByCustomer(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testTransactionsInTimeRange() throws AccountNotFoundException {
+        Long accountNumber = fladoService.openAccount(newOpenAccountRequest());
+        for (int i = 1; i <= 5; i++) {
+            fladoService.deposit(accountNumber, BigDecimal.valueOf(i));
+        }
+        List<TransactionResponse> all = fladoService.getTransactions(accountNumber);
+        LocalDateTime first = all.get(0).getTxnDate();
+        LocalDateTime last = all.get(4).getTxnDate();
+
+        List<TransactionResponse> transactions = fladoService.getTransactions(accountNumber, first, last.plusNanos(1_000_000), 3);
+        assertEquals(3, transactions.size());
+        assertEquals(BigDecimal.valueOf(1), transactions.get(0).getAmount());
+        assertEquals(BigDecimal.valueOf(3), transactions.get(2).getAmount());
+        assertEquals(5, fladoService.getTransactions(accountNumber, first, last.plusNanos(1_000_000), 10).size());
+        assertTrue(fladoService.getTransactions(accountNumber, first.minusDays(1), first, 10).isEmpty());
+        assertTrue(fladoService.getTransactions(accountNumber, last.plusNanos(1_000_000), last.plusDays(1), 10).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArgumentWhenTimeRangeReversed() throws AccountNotFoundException {
+        Long accountNumber = fladoService.openAccount(newOpenAccountRequest());
+        LocalDateTime now = LocalDateTime.now();
+        fladoService.getTransactions(accountNumber, now, now.minusDays(1), 10);
+    }
+
+    // batch transfer
+
+    @Test
+    public void testTransferBatch() throws AccountNotFoundException, InsufficientFundsException {
+        Long first = fladoService.openAccount(newOpenAccountRequest());
+        Long second = fladoService.openAccount(newOpenAccountRequest());
+        fladoService.deposit(first, BigDecimal.valueOf(100));
+
+        List<TransferResult> results = fladoService.transferBatch(Arrays.asList(
+                new TransferInstruction(first, second, BigDecimal.valueOf(60)),
+                new TransferInstruction(first, second, BigDecimal.valueOf(60)),
+                new TransferInstruction(second, first, BigDecimal.valueOf(10)),
+                new TransferInstruction(first, Long.MAX_VALUE, BigDecimal.valueOf(1)),
+                new TransferInstruction(first, second, new BigDecimal("0.001")),
+                null));
+
+        assertEquals(6, results.size());
+        assertEquals(TransferResult.Status.SUCCESS, results.get(0).getStatus());
+        assertNotNull(results.get(0).getTxnId());
+        assertEquals(TransferResult.Status.INSUFFICIENT_FUNDS, results.get(1).getStatus());
+        assertNull(results.get(1).getTxnId());
+        assertEquals(TransferResult.Status.SUCCESS, results.get(2).getStatus());
+        assertEquals(TransferResult.Status.ACCOUNT_NOT_FOUND, results.get(3).getStatus());
+        assertEquals(TransferResult.Status.INVALID_AMOUNT, results.get(4).getStatus());
+        assertEquals(TransferResult.Status.INVALID_INSTRUCTION, results.get(5).getStatus());
+
+        assertEquals(BigDecimal.valueOf(50), fladoService.getAccount(first).getBalance());
+        assertEquals(BigDecimal.valueOf(50), fladoService.getAccount(second).getBalance());
+        assertEquals(results.get(0).getTxnId(), fladoService.getTransactions(first).get(1).getTxnId());
+    }
+
+    @Test
+    public void testTransferBatchLargerThanLockWindow() throws AccountNotFoundException {
+        Long first = fladoService.openAccount(newOpenAccountRequest());
+        Long second = fladoService.openAccount(newOpenAccountRequest());
+        fladoService.deposit(first, BigDecimal.valueOf(5000));
+
+        List<TransferInstruction> instructions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            instructions.add(i % 2 == 0
+                    ? new TransferInstruction(first, second, BigDecimal.valueOf(2))
+                    : new TransferInstruction(second, first, BigDecimal.ONE));
+        }
+        List<TransferResult> results = fladoService.transferBatch(instructions);
+
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == TransferResult.Status.SUCCESS));
+        assertEquals(BigDecimal.valueOf(2500), fladoService.getAccount(first).getBalance());
+        assertEquals(BigDecimal.valueOf(2500), fladoService.getAccount(second).getBalance());
+    }
 }
@@ -0,0 +1,95 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.AppConfig;
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
+import au.com.suncorp.fladobank.service.metrics.FladoBankMetrics;
+import au.com.suncorp.fladobank.service.metrics.FladoBankMetrics.Operation;
+import au.com.suncorp.fladobank.service.metrics.FladoBankMetrics.Outcome;
+import au.com.suncorp.fladobank.service.metrics.OperationMetrics;
+import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedFladoBankServiceTest {
+
+    private final FladoBankMetrics metrics = new FladoBankMetrics();
+
+    private final InstrumentedFladoBankService fladoService =
+            new InstrumentedFladoBankService(new FladoBankServiceImpl(new InMemoryBankDataSource()), metrics);
+
+    private Long openAccount(FladoBankService service) {
+        return service.openAccount(new OpenAccountRequest("Florin", "Adochiei", LocalDate.of(1978, 10, 7), Account.AccountType.SAVINGS.toString()));
+    }
+
+    @Test
+    public void testOutcomesAreCounted() throws AccountNotFoundException {
+        Long account = openAccount(fladoService);
+        fladoService.deposit(account, BigDecimal.TEN);
+        try {
+            fladoService.withdraw(account, BigDecimal.valueOf(20));
+            fail();
+        } catch (InsufficientFundsException e) {
+            // expected
+        }
+        try {
+            fladoService.deposit(Long.MAX_VALUE, BigDecimal.ONE);
+            fail();
+        } catch (AccountNotFoundException e) {
+            // expected
+        }
+        try {
+            fladoService.deposit(account, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        OperationMetrics deposits = metrics.get(Operation.DEPOSIT);
+        assertEquals(1, deposits.getCount(Outcome.OK));
+        assertEquals(1, deposits.getCount(Outcome.NOT_FOUND));
+        assertEquals(1, deposits.getCount(Outcome.INVALID));
+        assertEquals(3, deposits.getLatency().getCount());
+        assertEquals(1, metrics.get(Operation.WITHDRAW).getCount(Outcome.INSUFFICIENT_FUNDS));
+        assertEquals(1, metrics.get(Operation.OPEN_ACCOUNT).getCount(Outcome.OK));
+        assertEquals(0, metrics.get(Operation.TRANSFER).getLatency().getCount());
+    }
+
+    @Test
+    public void testMetricsAreExportedThroughJmx() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.register(server);
+        fladoService.deposit(openAccount(fladoService), BigDecimal.TEN);
+
+        ObjectName deposits = new ObjectName("au.com.suncorp.fladobank:type=Metrics,operation=deposit");
+        assertEquals(1L, server.getAttribute(deposits, "OkCount"));
+        assertTrue((Double) server.getAttribute(deposits, "MaxMicros") > 0);
+
+        metrics.close();
+        assertFalse(server.isRegistered(deposits));
+    }
+
+    @Test
+    public void testMetricsProfileInstrumentsTheServices() throws AccountNotFoundException {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().setActiveProfiles("metrics");
+            context.register(AppConfig.class);
+            context.refresh();
+
+            FladoBankService service = context.getBean(FladoBankService.class);
+            assertTrue(service instanceof InstrumentedFladoBankService);
+            service.getAccount(openAccount(service));
+            assertEquals(1, context.getBean(FladoBankMetrics.class).get(Operation.GET_ACCOUNT).getCount(Outcome.OK));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.AppConfig;
+import au.com.suncorp.fladobank.data.BankDataSource;
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.LedgerSpiller;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
+import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import au.com.suncorp.fladobank.service.model.request.TransferInstruction;
+import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import au.com.suncorp.fladobank.service.model.response.TransferResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ShardedFladoBankServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ShardedFladoBankService fladoService;
+
+    @Before
+    public void init() {
+        // small queues so that the shards run out of space and use their outbox
+        fladoService = new ShardedFladoBankService(new InMemoryBankDataSource(Account.Engine.SINGLE_WRITER), 4, 8);
+    }
+
+    @After
+    public void close() {
+        fladoService.close();
+    }
+
+    private Long openAccount() {
+        return fladoService.openAccount(new OpenAccountRequest("Florin", "Adochiei", LocalDate.of(1978, 10, 7), Account.AccountType.SAVINGS.toString()));
+    }
+
+    @Test
+    public void testOperations() throws AccountNotFoundException, InsufficientFundsException {
+        Long source = openAccount();
+        Long destination = openAccount();
+
+        fladoService.deposit(source, BigDecimal.valueOf(1500));
+        fladoService.withdraw(source, BigDecimal.valueOf(200));
+        Long txnId = fladoService.transfer(source, destination, BigDecimal.valueOf(300));
+
+        assertEquals(BigDecimal.valueOf(1000), fladoService.getAccount(source).getBalance());
+        assertEquals(BigDecimal.valueOf(300), fladoService.getAccount(destination).getBalance());
+
+        List<TransactionResponse> sourceTxns = fladoService.getTransactions(source);
+        assertEquals(3, sourceTxns.size());
+        assertEquals(txnId, sourceTxns.get(2).getTxnId());
+        assertEquals(destination, sourceTxns.get(2).getToAccountId());
+        List<TransactionResponse> destTxns = fladoService.getTransactions(destination);
+        assertEquals(1, destTxns.size());
+        assertEquals("CREDIT", destTxns.get(0).getTxnType());
+        assertEquals(source, destTxns.get(0).getFromAccountId());
+    }
+
+    @Test(expected = InsufficientFundsException.class)
+    public void testInsufficientFundsExceptionWhenTransferring() throws AccountNotFoundException, InsufficientFundsException {
+        Long source = openAccount();
+        fladoService.deposit(source, BigDecimal.valueOf(100));
+        fladoService.transfer(source, openAccount(), BigDecimal.valueOf(200));
+    }
+
+    @Test(expected = AccountNotFoundException.class)
+    public void testAccountNotFoundExceptionWhenDepositing() throws AccountNotFoundException {
+        fladoService.deposit(Long.MAX_VALUE, BigDecimal.ONE);
+    }
+
+    @Test
+    public void testConcurrentTransfersKeepTotalBalance() throws Exception {
+        Long[] accounts = new Long[16];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = openAccount();
+            fladoService.deposit(accounts[i], BigDecimal.valueOf(1000));
+        }
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            workers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    try {
+                        fladoService.transfer(accounts[random.nextInt(accounts.length)],
+                                accounts[random.nextInt(accounts.length)], BigDecimal.valueOf(random.nextInt(1, 100)));
+                    } catch (InsufficientFundsException e) {
+                        // expected
+                    } catch (Exception e) {
+                        failure.set(e);
+                    }
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertNull(failure.get());
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long account : accounts) {
+            total = total.add(fladoService.getAccount(account).getBalance());
+        }
+        assertEquals(BigDecimal.valueOf(16000), total);
+    }
+
+    @Test
+    public void testCloseCompletesPendingTransfers() throws Exception {
+        Long[] accounts = new Long[16];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = openAccount();
+            fladoService.deposit(accounts[i], BigDecimal.valueOf(1000));
+        }
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            workers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (true) {
+                    try {
+                        fladoService.transfer(accounts[random.nextInt(accounts.length)],
+                                accounts[random.nextInt(accounts.length)], BigDecimal.valueOf(random.nextInt(1, 100)));
+                    } catch (InsufficientFundsException e) {
+                        // expected
+                    } catch (RejectedExecutionException e) {
+                        return;
+                    } catch (Exception e) {
+                        failure.set(e);
+                        return;
+                    }
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        Thread.sleep(50);
+        fladoService.close();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertNull(failure.get());
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long account : accounts) {
+            total = total.add(fladoService.getAccount(account).getBalance());
+        }
+        assertEquals(BigDecimal.valueOf(16000), total);
+    }
+
+    @Test
+    public void testShardedProfileSharesTheDatastore() throws IOException, AccountNotFoundException {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("fladobank.ledger.dir", folder.newFolder("ledger").toString());
+            properties.put("fladobank.ledger.hotTransactions", 0);
+            properties.put("fladobank.ledger.spillIntervalSeconds", 3600);
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+            context.getEnvironment().setActiveProfiles("sharded", "tiered");
+            context.register(AppConfig.class);
+            context.refresh();
+
+            Path file = folder.newFile("accounts.csv").toPath();
+            Files.write(file, ("customerRef,firstName,lastName,dob,accountType,openingBalance\n"
+                    + "1,Florin,Adochiei,1978-10-07,SAVINGS,10.00\n").getBytes(StandardCharsets.UTF_8));
+            context.getBean(AccountImporter.class).importAccounts(file, AccountImporter.Format.CSV, null);
+
+            // the imported account is visible to the shards
+            Collection<Account> accounts = context.getBean(BankDataSource.class).getAccounts();
+            assertEquals(1, accounts.size());
+            Long account = accounts.iterator().next().getId();
+            FladoBankService service = context.getBean(FladoBankService.class);
+            assertTrue(service instanceof ShardedFladoBankService);
+            for (int i = 0; i < 1024; i++) {
+                service.deposit(account, BigDecimal.ONE);
+            }
+            assertEquals(BigDecimal.valueOf(10 + 1024), service.getAccount(account).getBalance());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(1024 + 1, context.getBean(StatementExporter.class)
+                    .export(account, StatementExporter.Format.BINARY, Channels.newChannel(out)));
+            assertEquals(1024, context.getBean(LedgerSpiller.class).spill());
+        }
+    }
+
+    @Test
+    public void testTransferBatch() throws AccountNotFoundException {
+        Long first = openAccount();
+        Long second = openAccount();
+        fladoService.deposit(first, BigDecimal.valueOf(100));
+
+        List<TransferResult> results = fladoService.transferBatch(Arrays.asList(
+                new TransferInstruction(first, second, BigDecimal.valueOf(60)),
+                new TransferInstruction(first, second, BigDecimal.valueOf(60)),
+                new TransferInstruction(first, Long.MAX_VALUE, BigDecimal.ONE),
+                new TransferInstruction(first, second, new BigDecimal("0.001")),
+                null));
+
+        assertEquals(TransferResult.Status.SUCCESS, results.get(0).getStatus());
+        assertEquals(TransferResult.Status.INSUFFICIENT_FUNDS, results.get(1).getStatus());
+        assertEquals(TransferResult.Status.ACCOUNT_NOT_FOUND, results.get(2).getStatus());
+        assertEquals(TransferResult.Status.INVALID_AMOUNT, results.get(3).getStatus());
+        assertEquals(TransferResult.Status.INVALID_INSTRUCTION, results.get(4).getStatus());
+        assertEquals(BigDecimal.valueOf(60), fladoService.getAccount(second).getBalance());
+    }
+}
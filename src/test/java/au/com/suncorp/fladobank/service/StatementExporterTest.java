@@ -0,0 +1,119 @@
+package au.com.suncorp.fladobank.service;
+
+import au.com.suncorp.fladobank.data.InMemoryBankDataSource;
+import au.com.suncorp.fladobank.data.model.Account;
+import au.com.suncorp.fladobank.service.error.AccountNotFoundException;
+import au.com.suncorp.fladobank.service.error.InsufficientFundsException;
+import au.com.suncorp.fladobank.service.model.request.OpenAccountRequest;
+import au.com.suncorp.fladobank.service.model.response.TransactionResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StatementExporterTest {
+
+    private final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    private FladoBankService fladoService;
+
+    private StatementExporter exporter;
+
+    @Before
+    public void init() {
+        InMemoryBankDataSource dataSource = new InMemoryBankDataSource();
+        fladoService = new FladoBankServiceImpl(dataSource);
+        exporter = new StatementExporter(dataSource, 4);
+    }
+
+    @After
+    public void close() {
+        exporter.close();
+    }
+
+    private Long openAccount() {
+        return fladoService.openAccount(new OpenAccountRequest("Florin", "Adochiei", LocalDate.of(1978, 10, 7), Account.AccountType.SAVINGS.toString()));
+    }
+
+    @Test
+    public void testCsvExport() throws AccountNotFoundException, InsufficientFundsException, IOException {
+        Long source = openAccount();
+        Long destination = openAccount();
+        fladoService.deposit(source, new BigDecimal("1500.05"));
+        fladoService.withdraw(source, new BigDecimal("0.5"));
+        fladoService.transfer(source, destination, BigDecimal.valueOf(300));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, exporter.export(source, StatementExporter.Format.CSV, Channels.newChannel(out)));
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.US_ASCII).split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("accountNumber,txnId,txnType,amount,date,fromAccountId,toAccountId", lines[0]);
+        List<TransactionResponse> transactions = fladoService.getTransactions(source);
+        String[] amounts = {"1500.05", "0.50", "300.00"};
+        for (int i = 0; i < transactions.size(); i++) {
+            TransactionResponse txn = transactions.get(i);
+            assertEquals(source + "," + txn.getTxnId() + "," + txn.getTxnType() + "," + amounts[i] + ","
+                    + dateFormat.format(txn.getTxnDate()) + "," + nullToEmpty(txn.getFromAccountId()) + ","
+                    + nullToEmpty(txn.getToAccountId()), lines[i + 1]);
+        }
+    }
+
+    @Test
+    public void testBinaryExportAll() throws AccountNotFoundException, IOException {
+        Map<Long, Long> expectedBalances = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            Long account = openAccount();
+            // enough rows to fill a few buffers
+            for (int j = 1; j <= 100; j++) {
+                fladoService.deposit(account, BigDecimal.valueOf(j));
+            }
+            expectedBalances.put(account, 5050_00L);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(5000, exporter.exportAll(StatementExporter.Format.BINARY, Channels.newChannel(out)));
+
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(StatementExporter.MAGIC, buffer.getInt());
+        assertEquals(StatementExporter.VERSION, buffer.get());
+        assertEquals(5000 * StatementExporter.BINARY_ROW_SIZE, buffer.remaining());
+        Map<Long, Long> balances = new HashMap<>();
+        Map<Long, Long> lastAmounts = new HashMap<>();
+        while (buffer.hasRemaining()) {
+            long account = buffer.getLong();
+            assertTrue(buffer.getLong() > 0);
+            assertEquals(StatementExporter.CREDIT, buffer.get());
+            long amount = buffer.getLong();
+            assertTrue(buffer.getLong() <= System.currentTimeMillis());
+            assertEquals(0L, buffer.getLong());
+            // the rows of an account are in ledger order
+            assertEquals(lastAmounts.getOrDefault(account, 0L) + 100, amount);
+            lastAmounts.put(account, amount);
+            balances.merge(account, amount, Long::sum);
+        }
+        assertEquals(expectedBalances, balances);
+    }
+
+    @Test(expected = AccountNotFoundException.class)
+    public void testAccountNotFound() throws AccountNotFoundException, IOException {
+        exporter.export(Long.MAX_VALUE, StatementExporter.Format.CSV, Channels.newChannel(new ByteArrayOutputStream()));
+    }
+
+    private static String nullToEmpty(Long accountId) {
+        return accountId == null ? "" : accountId.toString();
+    }
+}
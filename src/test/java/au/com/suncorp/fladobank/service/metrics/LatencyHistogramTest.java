@@ -0,0 +1,76 @@
+package au.com.suncorp.fladobank.service.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void testBucketsCoverValues() {
+        for (long value : new long[]{0, 1, 63, 64, 65, 127, 128, 1_000, 123_456_789L, 1L << 44, (1L << 45) - 1}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(LatencyHistogram.lowestValue(bucket) <= value);
+            assertTrue(LatencyHistogram.highestValue(bucket) >= value);
+            // 2 significant digits
+            assertTrue(LatencyHistogram.highestValue(bucket) - LatencyHistogram.lowestValue(bucket) <= Math.max(1, value / 32));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_000, snapshot.getValueAtPercentile(50), 500_000 / 32);
+        assertEquals(990_000, snapshot.getValueAtPercentile(99), 990_000 / 32);
+        assertEquals(1_000_000, snapshot.getMax(), 1_000_000 / 32);
+        assertEquals(500_500, snapshot.getMean(), 500_500 / 32);
+    }
+
+    @Test
+    public void testIntervalSnapshots() {
+        histogram.record(10);
+        histogram.record(20);
+        assertEquals(2, histogram.intervalSnapshot().getCount());
+
+        histogram.record(30);
+        HistogramSnapshot interval = histogram.intervalSnapshot();
+        assertEquals(1, interval.getCount());
+        assertEquals(30, interval.getMax());
+        assertEquals(3, histogram.snapshot().getCount());
+        assertEquals(0, histogram.intervalSnapshot().getCount());
+    }
+
+    @Test
+    public void testConcurrentRecords() throws InterruptedException {
+        int threads = 8;
+        int records = 100_000;
+        List<Thread> recorders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            recorders.add(new Thread(() -> {
+                for (int i = 0; i < records; i++) {
+                    histogram.record(i % 1000);
+                }
+            }));
+        }
+        recorders.forEach(Thread::start);
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals((long) threads * records, snapshot.getCount());
+        assertEquals(999, snapshot.getMax(), 999 / 32);
+        assertEquals((long) threads * records, histogram.intervalSnapshot().getCount());
+    }
+}